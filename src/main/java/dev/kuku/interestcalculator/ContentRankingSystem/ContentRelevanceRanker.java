@@ -0,0 +1,56 @@
+package dev.kuku.interestcalculator.ContentRankingSystem;
+
+import dev.kuku.interestcalculator.UserTopicScoringSystem.TopicDecayer.subSystem.TopicScoreTemporalExponentialDecayer;
+import dev.kuku.interestcalculator.fakeDatabase.TopicDb;
+import dev.kuku.interestcalculator.fakeDatabase.UserTopicScoreDb;
+import dev.kuku.interestcalculator.util.TimeProvider;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ranks content for a user by the dot product of the user's interest vector and each content's topic vector.
+ * The user vector is built from the stored profile with decay applied at query time in closed form, so ranking
+ * never writes, and is cut down to the strongest {@link #MAX_QUERY_TOPICS} topics to bound the postings walked.
+ */
+@Service
+@RequiredArgsConstructor
+public class ContentRelevanceRanker {
+    private static final int MAX_QUERY_TOPICS = 32;
+
+    private final ContentTopicIndex contentTopicIndex;
+    private final TopicDb topicDb;
+    private final TopicScoreTemporalExponentialDecayer exponentialDecayer;
+    private final TimeProvider timeProvider;
+
+    public List<RankedContent> rank(List<UserTopicScoreDb.UserTopicScoreRow> profile, int limit) {
+        long currentTime = timeProvider.nowMillis();
+        int[] topicIds = new int[MAX_QUERY_TOPICS];
+        float[] weights = new float[MAX_QUERY_TOPICS];
+        int size = 0;
+        for (UserTopicScoreDb.UserTopicScoreRow row : profile) {
+            float weight = (float) exponentialDecayer.decayedScore(row, currentTime);
+            if (weight <= 0f) continue;
+            int topicId = topicDb.getTopicId(row.topic);
+            if (topicId < 0) continue;
+            // Keep the strongest topics, sorted descending, by insertion into the fixed size query
+            if (size < MAX_QUERY_TOPICS) size++;
+            else if (weight <= weights[size - 1]) continue;
+            int pos = size - 1;
+            while (pos > 0 && weights[pos - 1] < weight) {
+                topicIds[pos] = topicIds[pos - 1];
+                weights[pos] = weights[pos - 1];
+                pos--;
+            }
+            topicIds[pos] = topicId;
+            weights[pos] = weight;
+        }
+        if (size < MAX_QUERY_TOPICS) {
+            topicIds = Arrays.copyOf(topicIds, size);
+            weights = Arrays.copyOf(weights, size);
+        }
+        return contentTopicIndex.topN(topicIds, weights, limit);
+    }
+}
@@ -0,0 +1,234 @@
+package dev.kuku.interestcalculator.ContentRankingSystem;
+
+import dev.kuku.interestcalculator.fakeDatabase.ContentDb;
+import dev.kuku.interestcalculator.fakeDatabase.TopicDb;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted topic to content index over dense ids.
+ * Each content item is a sparse binary vector over {@link TopicDb} topic ids, normalised by 1/sqrt(topic count) so
+ * content tagged with many topics does not win on breadth alone. Ranking only walks the posting lists of the query
+ * topics, content sharing no topic with the user is never touched.
+ */
+@Component
+@RequiredArgsConstructor
+public class ContentTopicIndex {
+    private final ContentDb contentDb;
+    private final TopicDb topicDb;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> contentIndexes = new HashMap<>();
+    private String[] contentIds = new String[1024];
+    private int[][] contentTopics = new int[1024][];
+    private float[] contentWeights = new float[1024];
+    private int contentCount;
+    private int[][] postings = new int[64][];
+    private int[] postingSizes = new int[64];
+    // Per thread score accumulator indexed by content index, plus the list of entries to reset afterwards
+    private final ThreadLocal<Accumulator> accumulators = ThreadLocal.withInitial(Accumulator::new);
+
+    @PostConstruct
+    private void init() {
+        contentDb.getAllContents().forEach(content -> index(content.getContentId(), content.getTopics()));
+    }
+
+    @EventListener
+    public void onContentTagged(ContentDb.ContentTaggedEvent event) {
+        index(event.contentId(), event.topics());
+    }
+
+    public void index(String contentId, Collection<String> topics) {
+        int[] topicIds = topics == null ? new int[0] : topics.stream().mapToInt(topicDb::getOrCreateTopicId).distinct().toArray();
+        lock.writeLock().lock();
+        try {
+            Integer existing = contentIndexes.get(contentId);
+            int index;
+            if (existing != null) {
+                index = existing;
+                for (int topicId : contentTopics[index]) removePosting(topicId, index);
+            } else {
+                index = contentCount++;
+                if (index == contentIds.length) {
+                    contentIds = Arrays.copyOf(contentIds, index * 2);
+                    contentTopics = Arrays.copyOf(contentTopics, index * 2);
+                    contentWeights = Arrays.copyOf(contentWeights, index * 2);
+                }
+                contentIds[index] = contentId;
+                contentIndexes.put(contentId, index);
+            }
+            contentTopics[index] = topicIds;
+            contentWeights[index] = topicIds.length == 0 ? 0f : (float) (1.0 / Math.sqrt(topicIds.length));
+            for (int topicId : topicIds) addPosting(topicId, index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Weighted dot product of the query against every content vector sharing at least one topic with it.
+     *
+     * @param queryTopicIds topic ids of the query vector
+     * @param queryWeights  weight of each query topic, non positive weights are ignored
+     * @return the best limit content items, highest score first
+     */
+    public List<RankedContent> topN(int[] queryTopicIds, float[] queryWeights, int limit) {
+        if (limit <= 0) return List.of();
+        lock.readLock().lock();
+        try {
+            Accumulator accumulator = accumulators.get();
+            accumulator.ensureCapacity(contentCount);
+            float[] scores = accumulator.scores;
+            for (int q = 0; q < queryTopicIds.length; q++) {
+                int topicId = queryTopicIds[q];
+                if (topicId < 0 || topicId >= postings.length || postings[topicId] == null) continue;
+                float weight = queryWeights[q];
+                // Zero marks an untouched accumulator slot, so only positive weights are accumulated
+                if (weight <= 0f) continue;
+                int[] posting = postings[topicId];
+                for (int i = 0, size = postingSizes[topicId]; i < size; i++) {
+                    int content = posting[i];
+                    if (scores[content] == 0f) accumulator.touch(content);
+                    scores[content] += weight * contentWeights[content];
+                }
+            }
+            TopN top = new TopN(limit);
+            for (int i = 0; i < accumulator.touchedCount; i++) {
+                int content = accumulator.touched[i];
+                top.offer(content, scores[content]);
+                scores[content] = 0f;
+            }
+            accumulator.touchedCount = 0;
+            return top.drain(contentIds);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return contentCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addPosting(int topicId, int contentIndex) {
+        if (topicId >= postings.length) {
+            int newLength = Math.max(topicId + 1, postings.length * 2);
+            postings = Arrays.copyOf(postings, newLength);
+            postingSizes = Arrays.copyOf(postingSizes, newLength);
+        }
+        int[] posting = postings[topicId];
+        if (posting == null) {
+            posting = new int[4];
+        } else if (postingSizes[topicId] == posting.length) {
+            posting = Arrays.copyOf(posting, posting.length * 2);
+        }
+        posting[postingSizes[topicId]++] = contentIndex;
+        postings[topicId] = posting;
+    }
+
+    private void removePosting(int topicId, int contentIndex) {
+        int[] posting = postings[topicId];
+        int size = postingSizes[topicId];
+        for (int i = 0; i < size; i++) {
+            if (posting[i] == contentIndex) {
+                // Posting order does not matter, move the last entry into the hole
+                posting[i] = posting[size - 1];
+                postingSizes[topicId] = size - 1;
+                return;
+            }
+        }
+    }
+
+    private static final class Accumulator {
+        private float[] scores = new float[0];
+        private int[] touched = new int[0];
+        private int touchedCount;
+
+        private void ensureCapacity(int contentCount) {
+            if (scores.length >= contentCount) return;
+            scores = Arrays.copyOf(scores, contentCount * 2);
+            touched = Arrays.copyOf(touched, contentCount * 2);
+        }
+
+        private void touch(int content) {
+            touched[touchedCount++] = content;
+        }
+    }
+
+    /**
+     * Bounded min heap over parallel primitive arrays, the root is the weakest of the current best entries.
+     */
+    private static final class TopN {
+        private final int[] contents;
+        private final float[] scores;
+        private int size;
+
+        private TopN(int limit) {
+            contents = new int[limit];
+            scores = new float[limit];
+        }
+
+        private void offer(int content, float score) {
+            if (size < contents.length) {
+                contents[size] = content;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (score > scores[0]) {
+                contents[0] = content;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        private List<RankedContent> drain(String[] contentIds) {
+            RankedContent[] result = new RankedContent[size];
+            while (size > 0) {
+                result[size - 1] = new RankedContent(contentIds[contents[0]], scores[0]);
+                size--;
+                contents[0] = contents[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+            return Arrays.asList(result);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (scores[parent] <= scores[i]) return;
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= size) return;
+                int smallest = left + 1 < size && scores[left + 1] < scores[left] ? left + 1 : left;
+                if (scores[i] <= scores[smallest]) return;
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int content = contents[a];
+            contents[a] = contents[b];
+            contents[b] = content;
+            float score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+}
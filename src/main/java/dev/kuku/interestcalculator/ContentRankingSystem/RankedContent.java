@@ -0,0 +1,4 @@
+package dev.kuku.interestcalculator.ContentRankingSystem;
+
+public record RankedContent(String contentId, double score) {
+}
@@ -0,0 +1,254 @@
+package dev.kuku.interestcalculator.TrendingSystem;
+
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ScoringParameters.ScoringParameterRegistry;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.TopicScorer.subSystem.InteractionScorer;
+import dev.kuku.interestcalculator.fakeDatabase.ContentDb;
+import dev.kuku.interestcalculator.fakeDatabase.TopicDb;
+import dev.kuku.interestcalculator.fakeDatabase.UserInteractionsDb;
+import dev.kuku.interestcalculator.util.TimeProvider;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Streaming per topic interaction counts and score mass over sliding windows.
+ * <p>
+ * Interactions land in time buckets: one minute buckets for the last hour and one hour buckets for the last week.
+ * Running totals for every window live in dense arrays indexed by topic id, so recording an event is a constant
+ * number of array writes per topic of the content. When the clock moves into a new bucket, the bucket leaving a window
+ * is subtracted from that window's totals. Buckets are sparse and only hold the topics that were seen in them, so
+ * expiring one costs as much as the events that filled it.
+ */
+@Component
+@RequiredArgsConstructor
+public class TrendingTopicAggregator {
+    private static final long MINUTE_MILLIS = 60_000;
+    private static final long HOUR_MILLIS = 3_600_000;
+    private static final int MINUTE_BUCKETS = 60;
+    private static final int HOUR_BUCKETS = 168;
+    private static final int DAY_HOURS = 24;
+
+    private final ContentDb contentDb;
+    private final TopicDb topicDb;
+    private final InteractionScorer interactionScorer;
+    // Mass uses the base parameters, trends are shared by every cohort
+    private final ScoringParameterRegistry scoringParameterRegistry;
+    private final TimeProvider timeProvider;
+
+    private final Bucket[] minuteBuckets = newBuckets(MINUTE_BUCKETS);
+    private final Bucket[] hourBuckets = newBuckets(HOUR_BUCKETS);
+    private final WindowTotals[] totals = {new WindowTotals(), new WindowTotals(), new WindowTotals()};
+    private long currentMinute = Long.MIN_VALUE;
+    private long currentHour = Long.MIN_VALUE;
+    private long latestEventTime = Long.MIN_VALUE;
+
+    private static Bucket[] newBuckets(int count) {
+        Bucket[] buckets = new Bucket[count];
+        for (int i = 0; i < count; i++) buckets[i] = new Bucket();
+        return buckets;
+    }
+
+    @EventListener
+    public void onInteractionAdded(UserInteractionsDb.InteractionAddedEvent event) {
+        UserInteractionsDb.UserInteractionRow interaction = event.interaction();
+        ContentDb.ContentRow content = contentDb.getContentById(interaction.contentId);
+        if (content == null || content.getTopics() == null) return;
+        double mass = interactionScorer.calculateInteractionScoreDelta(scoringParameterRegistry.getDefaults(), interaction.contentDiscovery, interaction.interactionType);
+        for (String topic : content.getTopics()) {
+            record(topicDb.getOrCreateTopicId(topic), interaction.interactionTime, (float) mass);
+        }
+    }
+
+    public synchronized void record(int topicId, long time, float mass) {
+        latestEventTime = Math.max(latestEventTime, time);
+        advanceTo(time);
+        long minute = Math.floorDiv(time, MINUTE_MILLIS);
+        long hour = Math.floorDiv(time, HOUR_MILLIS);
+        // Late events are still counted while their bucket is part of a window
+        Bucket minuteBucket = minuteBuckets[(int) Math.floorMod(minute, MINUTE_BUCKETS)];
+        if (minuteBucket.epoch == minute) {
+            minuteBucket.add(topicId, mass);
+            totals[TrendingWindow.LAST_HOUR.ordinal()].add(topicId, 1, mass);
+        }
+        Bucket hourBucket = hourBuckets[(int) Math.floorMod(hour, HOUR_BUCKETS)];
+        if (hourBucket.epoch == hour) {
+            hourBucket.add(topicId, mass);
+            if (hour > currentHour - DAY_HOURS) totals[TrendingWindow.LAST_DAY.ordinal()].add(topicId, 1, mass);
+            totals[TrendingWindow.LAST_WEEK.ordinal()].add(topicId, 1, mass);
+        }
+    }
+
+    public synchronized List<TrendingTopic> getTrendingTopics(TrendingWindow window, int limit) {
+        advanceToNow();
+        WindowTotals windowTotals = totals[window.ordinal()];
+        PriorityQueue<Integer> top = new PriorityQueue<>(limit + 1,
+                (a, b) -> Integer.compare(windowTotals.counts[a], windowTotals.counts[b]));
+        for (int topicId = 0; topicId < windowTotals.counts.length; topicId++) {
+            if (windowTotals.counts[topicId] <= 0) continue;
+            top.add(topicId);
+            if (top.size() > limit) top.poll();
+        }
+        List<TrendingTopic> result = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            int topicId = top.poll();
+            result.add(new TrendingTopic(topicDb.getTopicById(topicId), windowTotals.counts[topicId], windowTotals.mass[topicId]));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    public synchronized int getTopicCount(String topic, TrendingWindow window) {
+        advanceToNow();
+        int topicId = topicDb.getTopicId(topic);
+        int[] counts = totals[window.ordinal()].counts;
+        return topicId < 0 || topicId >= counts.length ? 0 : counts[topicId];
+    }
+
+    public synchronized long getTotalCount(TrendingWindow window) {
+        advanceToNow();
+        return totals[window.ordinal()].totalCount;
+    }
+
+    private void advanceToNow() {
+        advanceTo(Math.max(timeProvider.nowMillis(), latestEventTime));
+    }
+
+    private void advanceTo(long time) {
+        long minute = Math.floorDiv(time, MINUTE_MILLIS);
+        if (minute > currentMinute) {
+            WindowTotals lastHour = totals[TrendingWindow.LAST_HOUR.ordinal()];
+            if (currentMinute == Long.MIN_VALUE || minute - currentMinute >= MINUTE_BUCKETS) {
+                lastHour.clear();
+                for (Bucket bucket : minuteBuckets) bucket.clear();
+            }
+            for (long m = Math.max(currentMinute + 1, minute - MINUTE_BUCKETS + 1); m <= minute; m++) {
+                Bucket bucket = minuteBuckets[(int) Math.floorMod(m, MINUTE_BUCKETS)];
+                bucket.subtractFrom(lastHour);
+                bucket.clear();
+                bucket.epoch = m;
+            }
+            currentMinute = minute;
+        }
+
+        long hour = Math.floorDiv(time, HOUR_MILLIS);
+        if (hour > currentHour) {
+            WindowTotals lastDay = totals[TrendingWindow.LAST_DAY.ordinal()];
+            WindowTotals lastWeek = totals[TrendingWindow.LAST_WEEK.ordinal()];
+            if (currentHour == Long.MIN_VALUE || hour - currentHour >= HOUR_BUCKETS) {
+                lastDay.clear();
+                lastWeek.clear();
+                for (Bucket bucket : hourBuckets) bucket.clear();
+            }
+            for (long h = Math.max(currentHour + 1, hour - HOUR_BUCKETS + 1); h <= hour; h++) {
+                // The bucket from a day ago leaves the day window but stays in the week
+                Bucket dayOld = hourBuckets[(int) Math.floorMod(h - DAY_HOURS, HOUR_BUCKETS)];
+                if (dayOld.epoch == h - DAY_HOURS) dayOld.subtractFrom(lastDay);
+                Bucket bucket = hourBuckets[(int) Math.floorMod(h, HOUR_BUCKETS)];
+                bucket.subtractFrom(lastWeek);
+                bucket.clear();
+                bucket.epoch = h;
+            }
+            currentHour = hour;
+        }
+    }
+
+    public record TrendingTopic(String topic, int interactions, double scoreMass) {
+    }
+
+    private static final class WindowTotals {
+        private int[] counts = new int[64];
+        private float[] mass = new float[64];
+        private long totalCount;
+
+        private void add(int topicId, int count, float topicMass) {
+            if (topicId >= counts.length) {
+                int newLength = Math.max(topicId + 1, counts.length * 2);
+                counts = Arrays.copyOf(counts, newLength);
+                mass = Arrays.copyOf(mass, newLength);
+            }
+            counts[topicId] += count;
+            mass[topicId] += topicMass;
+            totalCount += count;
+        }
+
+        private void clear() {
+            Arrays.fill(counts, 0);
+            Arrays.fill(mass, 0f);
+            totalCount = 0;
+        }
+    }
+
+    /**
+     * Sparse topic id to (count, mass) map for one time bucket, open addressing with linear probing.
+     */
+    private static final class Bucket {
+        private static final int EMPTY = -1;
+        private long epoch = Long.MIN_VALUE;
+        private int[] topicIds = newKeys(16);
+        private int[] counts = new int[16];
+        private float[] mass = new float[16];
+        private int size;
+
+        private static int[] newKeys(int capacity) {
+            int[] keys = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+
+        private void add(int topicId, float topicMass) {
+            if ((size + 1) * 2 > topicIds.length) rehash(topicIds.length * 2);
+            int slot = find(topicIds, topicId);
+            if (topicIds[slot] == EMPTY) {
+                topicIds[slot] = topicId;
+                size++;
+            }
+            counts[slot]++;
+            mass[slot] += topicMass;
+        }
+
+        private void subtractFrom(WindowTotals windowTotals) {
+            if (size == 0) return;
+            for (int slot = 0; slot < topicIds.length; slot++) {
+                if (topicIds[slot] != EMPTY) windowTotals.add(topicIds[slot], -counts[slot], -mass[slot]);
+            }
+        }
+
+        private void clear() {
+            if (size == 0) return;
+            Arrays.fill(topicIds, EMPTY);
+            Arrays.fill(counts, 0);
+            Arrays.fill(mass, 0f);
+            size = 0;
+        }
+
+        private static int find(int[] keys, int topicId) {
+            int mask = keys.length - 1;
+            int hash = topicId * 0x9E3779B9;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (keys[slot] != EMPTY && keys[slot] != topicId) slot = (slot + 1) & mask;
+            return slot;
+        }
+
+        private void rehash(int capacity) {
+            int[] oldIds = topicIds;
+            int[] oldCounts = counts;
+            float[] oldMass = mass;
+            topicIds = newKeys(capacity);
+            counts = new int[capacity];
+            mass = new float[capacity];
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldIds[i] == EMPTY) continue;
+                int slot = find(topicIds, oldIds[i]);
+                topicIds[slot] = oldIds[i];
+                counts[slot] = oldCounts[i];
+                mass[slot] = oldMass[i];
+            }
+        }
+    }
+}
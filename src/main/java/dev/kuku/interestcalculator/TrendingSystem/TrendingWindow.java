@@ -0,0 +1,20 @@
+package dev.kuku.interestcalculator.TrendingSystem;
+
+import java.util.Arrays;
+
+public enum TrendingWindow {
+    LAST_HOUR("1h"), LAST_DAY("24h"), LAST_WEEK("7d");
+
+    public final String label;
+
+    TrendingWindow(String label) {
+        this.label = label;
+    }
+
+    public static TrendingWindow fromLabel(String label) {
+        return Arrays.stream(values())
+                .filter(window -> window.label.equalsIgnoreCase(label) || window.name().equalsIgnoreCase(label))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown trending window " + label));
+    }
+}
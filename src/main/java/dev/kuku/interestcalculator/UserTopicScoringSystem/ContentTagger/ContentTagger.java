@@ -0,0 +1,84 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.ContentTagger;
+
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ContentTagger.subSystem.ContentDeduplicator;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ContentTagger.subSystem.LocalTopicClassifier;
+import dev.kuku.interestcalculator.fakeDatabase.ContentDb;
+import dev.kuku.interestcalculator.fakeDatabase.TopicDb;
+import dev.kuku.interestcalculator.services.ResilientTopicExtractor;
+import dev.kuku.interestcalculator.services.TopicExtractionException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds topics for untagged content, cheapest source first. Reposts and near copies of already tagged content reuse
+ * its topics, then the local classifier answers for content it is confident about, only what is left goes to the LLM.
+ * Every LLM answer trains the classifier, in the background.
+ * <p>
+ * Concurrent requests to tag the same content share one tagging, the first caller tags and the others wait for its
+ * topics or its failure.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ContentTagger {
+    private final ContentDeduplicator contentDeduplicator;
+    private final LocalTopicClassifier localTopicClassifier;
+    private final ResilientTopicExtractor topicExtractor;
+    private final TopicDb topicDb;
+    // Taggings in progress by content id, removed once they finish
+    private final ConcurrentHashMap<String, CompletableFuture<Set<String>>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @throws TopicExtractionException if the content needs the LLM and it is not available right now
+     */
+    public Set<String> tag(ContentDb.ContentRow content) {
+        CompletableFuture<Set<String>> tagging = new CompletableFuture<>();
+        CompletableFuture<Set<String>> running = inFlight.putIfAbsent(content.getContentId(), tagging);
+        if (running != null) return awaitTagging(running);
+        try {
+            Set<String> topics = findTopics(content);
+            tagging.complete(topics);
+            return topics;
+        } catch (RuntimeException e) {
+            tagging.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(content.getContentId(), tagging);
+        }
+    }
+
+    private static Set<String> awaitTagging(CompletableFuture<Set<String>> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            // The tagging caller's own exception, a TopicExtractionException when the LLM was not available
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    private Set<String> findTopics(ContentDb.ContentRow content) {
+        Optional<ContentDeduplicator.Duplicate> duplicate = contentDeduplicator.findDuplicate(content.getContent());
+        if (duplicate.isPresent()) {
+            log.info("Content {} duplicates {} (distance {}), reusing its topics {}", content.getContentId(),
+                    duplicate.get().contentId(), duplicate.get().hammingDistance(), duplicate.get().topics());
+            return duplicate.get().topics();
+        }
+        Optional<LocalTopicClassifier.Classification> classification = localTopicClassifier.classify(content.getContent());
+        if (classification.isPresent()) {
+            log.info("Classified content {} locally as {} (confidence {})", content.getContentId(),
+                    classification.get().topics(), classification.get().confidence());
+            return classification.get().topics();
+        }
+        Set<String> topics = topicExtractor.getTopics(topicDb.topics, content.getContent());
+        localTopicClassifier.trainLater(content.getContent(), topics);
+        return topics;
+    }
+}
@@ -0,0 +1,233 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.ContentTagger.subSystem;
+
+import dev.kuku.interestcalculator.fakeDatabase.ContentDb;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Finds already tagged content that is the same as, or nearly the same as, a new text.
+ * <p>
+ * Every tagged text is reduced to a 64 bit SimHash over character shingles of its normalised form, plus an exact hash
+ * of that form. SimHash keeps similar texts close in Hamming distance. The signature is split into {@link #BANDS}
+ * bands of 16 bits and every band value points to the entries sharing it, so a lookup only compares against entries
+ * agreeing on at least one band. Two signatures within {@link #BANDS} - 1 bits of each other always share a band,
+ * larger distances up to {@link #MAX_HAMMING_DISTANCE} are found most of the time.
+ * <p>
+ * Entries live in a fixed ring of {@link #CAPACITY} slots, the oldest one is overwritten when it is full.
+ */
+@Component
+@RequiredArgsConstructor
+public class ContentDeduplicator {
+    static final int CAPACITY = 100_000;
+    private static final int BANDS = 4;
+    private static final int BAND_BITS = 16;
+    private static final int MAX_HAMMING_DISTANCE = 6;
+    private static final int SHINGLE_LENGTH = 4;
+    // Shorter texts have too few shingles for a meaningful SimHash, only exact matches count for them
+    private static final int MIN_NEAR_DUPLICATE_LENGTH = 24;
+    private static final int NONE = -1;
+
+    private final ContentDb contentDb;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final long[] signatures = new long[CAPACITY];
+    private final long[] exactHashes = new long[CAPACITY];
+    private final String[] contentIds = new String[CAPACITY];
+    private final Set<String>[] topics = newTopicSlots();
+    // Per band doubly linked chains through the slots, heads indexed by band value
+    private final int[][] bandHeads = newBandHeads();
+    private final int[][] bandNext = new int[BANDS][CAPACITY];
+    private final int[][] bandPrevious = new int[BANDS][CAPACITY];
+    private final Map<Long, Integer> exactIndex = new HashMap<>();
+    private int nextSlot;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    private static Set<String>[] newTopicSlots() {
+        return new Set[CAPACITY];
+    }
+
+    private static int[][] newBandHeads() {
+        int[][] heads = new int[BANDS][1 << BAND_BITS];
+        for (int[] bandHeads : heads) Arrays.fill(bandHeads, NONE);
+        return heads;
+    }
+
+    @PostConstruct
+    private void init() {
+        contentDb.getAllContents().forEach(content -> index(content.getContentId(), content.getContent(), content.getTopics()));
+    }
+
+    @EventListener
+    public void onContentTagged(ContentDb.ContentTaggedEvent event) {
+        index(event.contentId(), event.content(), event.topics());
+    }
+
+    public void index(String contentId, String content, Set<String> contentTopics) {
+        if (content == null || contentTopics == null || contentTopics.isEmpty()) return;
+        String normalized = normalize(content);
+        // Nothing but emoji or punctuation, every such post would look the same
+        if (normalized.isEmpty()) return;
+        long exactHash = exactHash(normalized);
+        long signature = simHash(normalized);
+        Set<String> topicsCopy = Set.copyOf(contentTopics);
+        lock.writeLock().lock();
+        try {
+            Integer existing = exactIndex.get(exactHash);
+            if (existing != null) {
+                // Same text tagged again, the newer topics win
+                contentIds[existing] = contentId;
+                topics[existing] = topicsCopy;
+                return;
+            }
+            int slot = nextSlot;
+            nextSlot = (nextSlot + 1) % CAPACITY;
+            if (contentIds[slot] != null) {
+                unlink(slot);
+                exactIndex.remove(exactHashes[slot]);
+            } else {
+                size++;
+            }
+            signatures[slot] = signature;
+            exactHashes[slot] = exactHash;
+            contentIds[slot] = contentId;
+            topics[slot] = topicsCopy;
+            exactIndex.put(exactHash, slot);
+            for (int band = 0; band < BANDS; band++) {
+                int head = bandHeads[band][bandValue(signature, band)];
+                bandPrevious[band][slot] = NONE;
+                bandNext[band][slot] = head;
+                if (head != NONE) bandPrevious[band][head] = slot;
+                bandHeads[band][bandValue(signature, band)] = slot;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the closest already tagged content, empty when nothing is within {@link #MAX_HAMMING_DISTANCE}
+     */
+    public Optional<Duplicate> findDuplicate(String content) {
+        if (content == null) return Optional.empty();
+        String normalized = normalize(content);
+        if (normalized.isEmpty()) return Optional.empty();
+        long exactHash = exactHash(normalized);
+        boolean nearDuplicates = normalized.length() >= MIN_NEAR_DUPLICATE_LENGTH;
+        long signature = nearDuplicates ? simHash(normalized) : 0;
+        lock.readLock().lock();
+        try {
+            Integer exact = exactIndex.get(exactHash);
+            if (exact != null) return Optional.of(new Duplicate(contentIds[exact], topics[exact], 0));
+            if (!nearDuplicates) return Optional.empty();
+            int best = NONE;
+            int bestDistance = MAX_HAMMING_DISTANCE + 1;
+            for (int band = 0; band < BANDS; band++) {
+                for (int slot = bandHeads[band][bandValue(signature, band)]; slot != NONE; slot = bandNext[band][slot]) {
+                    int distance = Long.bitCount(signatures[slot] ^ signature);
+                    if (distance < bestDistance) {
+                        best = slot;
+                        bestDistance = distance;
+                    }
+                }
+            }
+            return best == NONE ? Optional.empty() : Optional.of(new Duplicate(contentIds[best], topics[best], bestDistance));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void unlink(int slot) {
+        for (int band = 0; band < BANDS; band++) {
+            int previous = bandPrevious[band][slot];
+            int next = bandNext[band][slot];
+            if (previous == NONE) bandHeads[band][bandValue(signatures[slot], band)] = next;
+            else bandNext[band][previous] = next;
+            if (next != NONE) bandPrevious[band][next] = previous;
+        }
+    }
+
+    private static int bandValue(long signature, int band) {
+        return (int) (signature >>> (band * BAND_BITS)) & ((1 << BAND_BITS) - 1);
+    }
+
+    /**
+     * Lower case letters and digits separated by single spaces, so reposts differing in punctuation, case, emoji or
+     * spacing normalise to the same text.
+     */
+    private static String normalize(String content) {
+        StringBuilder normalized = new StringBuilder(content.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && !normalized.isEmpty()) normalized.append(' ');
+                normalized.append(Character.toLowerCase(c));
+                pendingSpace = false;
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static long exactHash(String normalized) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < normalized.length(); i++) {
+            hash ^= normalized.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long simHash(String normalized) {
+        int[] bitCounts = new int[64];
+        int length = normalized.length();
+        int shingles = Math.max(1, length - SHINGLE_LENGTH + 1);
+        for (int start = 0; start < shingles; start++) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = start, end = Math.min(length, start + SHINGLE_LENGTH); i < end; i++) {
+                hash ^= normalized.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            hash = mix(hash);
+            for (int bit = 0; bit < 64; bit++) {
+                bitCounts[bit] += (int) (hash >>> bit) & 1;
+            }
+        }
+        // A bit is set when most shingles voted for it
+        long signature = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (bitCounts[bit] * 2 > shingles) signature |= 1L << bit;
+        }
+        return signature;
+    }
+
+    // murmur3 fmix64, FNV alone leaves the high bits poorly mixed for short inputs
+    static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    public record Duplicate(String contentId, Set<String> topics, int hammingDistance) {
+    }
+}
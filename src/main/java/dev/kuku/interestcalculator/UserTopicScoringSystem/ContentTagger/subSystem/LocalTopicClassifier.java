@@ -0,0 +1,242 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.ContentTagger.subSystem;
+
+import dev.kuku.interestcalculator.fakeDatabase.ContentDb;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In process topic classifier, one logistic regression per topic over hashed word unigrams and bigrams.
+ * <p>
+ * Weights are label conjoined: the weight of feature f for topic k lives at hash(f, k) in a single float array of
+ * 2^{@value #WEIGHT_BITS} entries, collisions are tolerated like with any hashing trick. Each topic has its own bias.
+ * Classifying a text costs features times known topics multiply-adds, so at most {@code maxLabels} topics are known.
+ * A new topic beyond that replaces the one that was least recently a positive example, under a fresh hash so the
+ * replaced topic's weights are only collision noise to it.
+ * <p>
+ * Trained online with one SGD step per example, on the seeded hand tagged content at startup and afterwards on every
+ * text the LLM tagged, queued to a trainer thread. Its own answers and reused duplicate topics are never trained on,
+ * so it cannot reinforce its own mistakes. Only topics reaching the confidence threshold are returned, anything less
+ * goes to the LLM.
+ * <p>
+ * Training steps are serialized, classify never waits for them: it reads the weights while a step may be writing
+ * them, and a read mixing weights from before and after one step is well within the noise of online training.
+ */
+@Slf4j
+@Component
+public class LocalTopicClassifier {
+    private static final int WEIGHT_BITS = 20;
+    private static final int WEIGHT_MASK = (1 << WEIGHT_BITS) - 1;
+    // A topic seen for the first time starts out unlikely for everything else, p about 0.02
+    private static final float INITIAL_BIAS = -4f;
+    private static final long LABEL_SALT = 0x9E3779B97F4A7C15L;
+    private static final long BIGRAM_SALT = 0xC2B2AE3D27D4EB4FL;
+    // Examples waiting for the trainer, more are dropped, the LLM keeps tagging that content meanwhile
+    private static final int MAX_QUEUED_EXAMPLES = 1_000;
+
+    private final ContentDb contentDb;
+    private final double confidenceThreshold;
+    private final float learningRate;
+    private final int minTrainingExamples;
+    private final int maxLabels;
+
+    // Written by training steps only, which hold the training lock
+    private final Object trainingLock = new Object();
+    private final float[] weights = new float[1 << WEIGHT_BITS];
+    private final float[] biases;
+    // Example count at which each label was last a positive, picks the label a new topic replaces
+    private final long[] lastPositive;
+    private long nextLabelSalt;
+    private volatile Labels labels = new Labels(new String[0], new long[0], Map.of());
+    private volatile long trainedExamples;
+    private final ExecutorService trainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(MAX_QUEUED_EXAMPLES), r -> {
+        Thread thread = new Thread(r, "topic-classifier-trainer");
+        thread.setDaemon(true);
+        return thread;
+    }, new ThreadPoolExecutor.DiscardPolicy());
+
+    public LocalTopicClassifier(ContentDb contentDb,
+                                @Value("${tagging.classifier.confidence-threshold:0.9}") double confidenceThreshold,
+                                @Value("${tagging.classifier.learning-rate:1.0}") double learningRate,
+                                @Value("${tagging.classifier.min-training-examples:50}") int minTrainingExamples,
+                                @Value("${tagging.classifier.max-labels:256}") int maxLabels) {
+        this.contentDb = contentDb;
+        this.confidenceThreshold = confidenceThreshold;
+        this.learningRate = (float) learningRate;
+        this.minTrainingExamples = minTrainingExamples;
+        this.maxLabels = maxLabels;
+        this.biases = new float[maxLabels];
+        this.lastPositive = new long[maxLabels];
+    }
+
+    @PostConstruct
+    private void init() {
+        contentDb.getAllContents().forEach(content -> train(content.getContent(), content.getTopics()));
+        log.info("Topic classifier trained on {} seeded posts, {} topics", trainedExamples, labels.names().length);
+    }
+
+    /**
+     * @return topics the model is confident about, empty when it is not confident about any or is not trained enough
+     */
+    public Optional<Classification> classify(String content) {
+        if (trainedExamples < minTrainingExamples) return Optional.empty();
+        long[] features = features(content);
+        if (features.length == 0) return Optional.empty();
+        float scale = (float) (1 / Math.sqrt(features.length));
+        Labels known = labels;
+        Set<String> topics = new HashSet<>();
+        double confidence = 1;
+        for (int label = 0; label < known.names().length; label++) {
+            double probability = sigmoid(score(features, scale, label, known.salts()[label]));
+            if (probability >= confidenceThreshold) {
+                topics.add(known.names()[label]);
+                confidence = Math.min(confidence, probability);
+            }
+        }
+        return topics.isEmpty() ? Optional.empty() : Optional.of(new Classification(topics, confidence));
+    }
+
+    /**
+     * Queues the example for {@link #train} on the trainer thread, dropping it if too many are waiting already.
+     */
+    public void trainLater(String content, Set<String> topics) {
+        try {
+            trainer.execute(() -> train(content, topics));
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    /**
+     * One SGD step on the example for every known topic, the example's topics as positives and all others as
+     * negatives.
+     */
+    public void train(String content, Set<String> topics) {
+        if (topics == null || topics.isEmpty()) return;
+        long[] features = features(content);
+        if (features.length == 0) return;
+        float scale = (float) (1 / Math.sqrt(features.length));
+        synchronized (trainingLock) {
+            for (String topic : topics) lastPositive[labelId(topic)] = trainedExamples;
+            Labels known = labels;
+            for (int label = 0; label < known.names().length; label++) {
+                long salt = known.salts()[label];
+                float target = topics.contains(known.names()[label]) ? 1f : 0f;
+                float gradient = (float) sigmoid(score(features, scale, label, salt)) - target;
+                // Already right, skipping keeps training cost down to the topics that are still wrong
+                if (Math.abs(gradient) < 1e-3f) continue;
+                float step = learningRate * gradient;
+                biases[label] -= step;
+                for (long feature : features) weights[weightIndex(feature, salt)] -= step * scale;
+            }
+            trainedExamples++;
+        }
+    }
+
+    public long getTrainedExamples() {
+        return trainedExamples;
+    }
+
+    // Package private for tests
+    int getLabelCount() {
+        return labels.names().length;
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        trainer.shutdownNow();
+    }
+
+    private double score(long[] features, float scale, int label, long salt) {
+        float sum = 0;
+        for (long feature : features) sum += weights[weightIndex(feature, salt)];
+        return biases[label] + sum * scale;
+    }
+
+    // Caller holds the training lock
+    private int labelId(String topic) {
+        Labels known = labels;
+        Integer id = known.ids().get(topic);
+        if (id != null) return id;
+        int count = known.names().length;
+        int newId = count;
+        if (count == maxLabels) {
+            newId = 0;
+            for (int label = 1; label < count; label++) {
+                if (lastPositive[label] < lastPositive[newId]) newId = label;
+            }
+            log.debug("Topic classifier replaces topic {} with {}", known.names()[newId], topic);
+        }
+        String[] names = Arrays.copyOf(known.names(), Math.max(count, newId + 1));
+        long[] salts = Arrays.copyOf(known.salts(), names.length);
+        Map<String, Integer> ids = new HashMap<>(known.ids());
+        if (newId < count) ids.remove(names[newId]);
+        names[newId] = topic;
+        salts[newId] = nextLabelSalt++ * LABEL_SALT;
+        ids.put(topic, newId);
+        biases[newId] = INITIAL_BIAS;
+        labels = new Labels(names, salts, ids);
+        return newId;
+    }
+
+    private static int weightIndex(long feature, long labelSalt) {
+        return (int) ContentDeduplicator.mix(feature + labelSalt) & WEIGHT_MASK;
+    }
+
+    private static double sigmoid(double z) {
+        return 1 / (1 + Math.exp(-z));
+    }
+
+    /**
+     * Hashes of the lower cased words (runs of letters and digits) and of every pair of adjacent words.
+     */
+    static long[] features(String content) {
+        if (content == null) return new long[0];
+        long[] features = new long[16];
+        int count = 0;
+        long word = 0;
+        long previousWord = 0;
+        boolean inWord = false;
+        boolean hasPrevious = false;
+        for (int i = 0; i <= content.length(); i++) {
+            char c = i < content.length() ? content.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (!inWord) word = 0xcbf29ce484222325L;
+                word ^= Character.toLowerCase(c);
+                word *= 0x100000001b3L;
+                inWord = true;
+            } else if (inWord) {
+                if (count + 2 > features.length) features = Arrays.copyOf(features, features.length * 2);
+                features[count++] = word;
+                if (hasPrevious) features[count++] = (previousWord * 31 + word) ^ BIGRAM_SALT;
+                previousWord = word;
+                hasPrevious = true;
+                inWord = false;
+            }
+        }
+        return Arrays.copyOf(features, count);
+    }
+
+    /**
+     * @param confidence probability of the least certain returned topic
+     */
+    public record Classification(Set<String> topics, double confidence) {
+    }
+
+    /**
+     * Known topics, replaced whenever one is added. A label's salt is never reused, so a replaced topic's weights do
+     * not carry over to its successor.
+     */
+    private record Labels(String[] names, long[] salts, Map<String, Integer> ids) {
+    }
+}
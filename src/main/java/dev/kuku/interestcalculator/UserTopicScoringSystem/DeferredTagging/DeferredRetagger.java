@@ -0,0 +1,131 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.DeferredTagging;
+
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ContentTagger.ContentTagger;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.UserTopicScoringSystem;
+import dev.kuku.interestcalculator.fakeDatabase.ContentDb;
+import dev.kuku.interestcalculator.fakeDatabase.TopicDb;
+import dev.kuku.interestcalculator.fakeDatabase.UserInteractionsDb;
+import dev.kuku.interestcalculator.services.TopicExtractionException;
+import dev.kuku.interestcalculator.sharding.ShardRouter;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Works off the {@link DeferredTaggingQueue} in the background. Deferred content is tagged oldest first and the
+ * interactions waiting on it are scored retroactively. Every pass goes through the full {@link ContentTagger}, so a
+ * near duplicate or a confident classifier tags content even while the circuit is open, a pass only stops at the
+ * first content that needs the LLM while the circuit refuses calls. The first attempt after the open period is the
+ * breaker's trial call. Content tagged in the meantime, for example by a later interaction on it, is not tagged
+ * again.
+ * <p>
+ * A profile rebuild pauses the retagger until its swap, scoring a deferred interaction onto a profile that is about
+ * to be replaced would lose it, and the rebuild leaves every queued interaction to the retagger.
+ * <p>
+ * Interactions of users moved to another node since they were deferred are dropped, the queue does not move with
+ * the user, see {@link ShardRouter}.
+ */
+@Slf4j
+@Service
+public class DeferredRetagger {
+    private final DeferredTaggingQueue deferredTaggingQueue;
+    private final ContentDb contentDb;
+    private final TopicDb topicDb;
+    private final ContentTagger contentTagger;
+    private final UserTopicScoringSystem userTopicScoringSystem;
+    private final ShardRouter shardRouter;
+    private final ScheduledExecutorService retryExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "deferred-retagger");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private boolean paused;
+
+    public DeferredRetagger(DeferredTaggingQueue deferredTaggingQueue, ContentDb contentDb, TopicDb topicDb,
+                            ContentTagger contentTagger, UserTopicScoringSystem userTopicScoringSystem, ShardRouter shardRouter,
+                            @Value("${tagging.retry-interval-millis:5000}") long retryIntervalMillis) {
+        this.deferredTaggingQueue = deferredTaggingQueue;
+        this.contentDb = contentDb;
+        this.topicDb = topicDb;
+        this.contentTagger = contentTagger;
+        this.userTopicScoringSystem = userTopicScoringSystem;
+        this.shardRouter = shardRouter;
+        retryExecutor.scheduleWithFixedDelay(this::retrySafely, retryIntervalMillis, retryIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * One pass over the queue, stops at the first content that needs the LLM while the circuit is open. Content that
+     * failed for another reason stays queued for the next pass.
+     *
+     * @return number of deferred interactions scored
+     */
+    public synchronized int retryDeferred() {
+        if (paused) return 0;
+        int scored = 0;
+        for (String contentId : deferredTaggingQueue.getContentIds()) {
+            ContentDb.ContentRow content = contentDb.getContentById(contentId);
+            if (content == null) {
+                log.warn("Deferred content {} no longer exists, dropping its interactions", contentId);
+                deferredTaggingQueue.take(contentId);
+                continue;
+            }
+            Set<String> topics = content.getTopics();
+            if (topics == null || topics.isEmpty()) {
+                try {
+                    topics = contentTagger.tag(content);
+                } catch (TopicExtractionException e) {
+                    log.info("Deferred tagging of {} failed again ({})", contentId, e.getReason());
+                    if (e.getReason() == TopicExtractionException.Reason.CIRCUIT_OPEN) break;
+                    continue;
+                }
+                contentDb.setTopicsOfContent(topics, contentId);
+                topicDb.topics.addAll(topics);
+            }
+            Set<String> contentTopics = topics;
+            for (UserInteractionsDb.UserInteractionRow interaction : deferredTaggingQueue.take(contentId)) {
+                boolean applied = shardRouter.ifLocalOwner(interaction.userId, () -> {
+                    userTopicScoringSystem.applyDeferredInteraction(interaction.userId, contentTopics, interaction);
+                    return true;
+                }).isPresent();
+                if (applied) {
+                    scored++;
+                } else {
+                    log.warn("Dropping deferred interaction {}, its user moved to another node", interaction);
+                }
+            }
+        }
+        if (scored > 0) log.info("Scored {} deferred interactions", scored);
+        return scored;
+    }
+
+    /**
+     * Waits for a running pass to finish, later passes do nothing until {@link #resume()}.
+     */
+    public synchronized void pause() {
+        paused = true;
+    }
+
+    public synchronized void resume() {
+        paused = false;
+    }
+
+    // An exception escaping a scheduled task cancels all its later runs
+    private void retrySafely() {
+        try {
+            retryDeferred();
+        } catch (Exception e) {
+            log.error("Deferred tagging pass failed", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retryExecutor.shutdownNow();
+    }
+}
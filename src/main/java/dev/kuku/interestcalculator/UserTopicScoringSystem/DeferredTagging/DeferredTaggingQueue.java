@@ -0,0 +1,77 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.DeferredTagging;
+
+import dev.kuku.interestcalculator.fakeDatabase.UserInteractionsDb;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Interactions on content that could not be tagged yet, grouped by content so one successful tagging releases all of
+ * them. Content is handed out in the order it was first deferred.
+ * <p>
+ * Bounded by the number of interactions. A full queue drops new interactions, they stay in the interaction log and a
+ * profile rebuild still picks them up. Interactions still queued are left to the {@link DeferredRetagger} by a
+ * rebuild, see {@link #getInteractions()}.
+ */
+@Slf4j
+@Component
+public class DeferredTaggingQueue {
+    private final Map<String, List<UserInteractionsDb.UserInteractionRow>> byContent = new LinkedHashMap<>();
+    private final int capacity;
+    private int size;
+    private long dropped;
+
+    public DeferredTaggingQueue(@Value("${tagging.deferred.capacity:100000}") int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return false if the queue is full and the interaction was dropped
+     */
+    public synchronized boolean defer(UserInteractionsDb.UserInteractionRow interaction) {
+        if (size >= capacity) {
+            dropped++;
+            log.warn("Deferred tagging queue is full, dropping interaction {}", interaction);
+            return false;
+        }
+        byContent.computeIfAbsent(interaction.contentId, id -> new ArrayList<>()).add(interaction);
+        size++;
+        return true;
+    }
+
+    /**
+     * Content with deferred interactions, oldest first.
+     */
+    public synchronized List<String> getContentIds() {
+        return new ArrayList<>(byContent.keySet());
+    }
+
+    /**
+     * Removes and returns the interactions deferred for the content, in the order they were deferred.
+     */
+    public synchronized List<UserInteractionsDb.UserInteractionRow> take(String contentId) {
+        List<UserInteractionsDb.UserInteractionRow> interactions = byContent.remove(contentId);
+        if (interactions == null) return List.of();
+        size -= interactions.size();
+        return interactions;
+    }
+
+    /**
+     * Every queued interaction. An interaction is queued before it is logged, so a copy taken after reading the log
+     * length holds every deferred interaction up to that position.
+     */
+    public synchronized Set<UserInteractionsDb.UserInteractionRow> getInteractions() {
+        Set<UserInteractionsDb.UserInteractionRow> interactions = new HashSet<>(size);
+        byContent.values().forEach(interactions::addAll);
+        return interactions;
+    }
+
+    public synchronized QueueStats getStats() {
+        return new QueueStats(byContent.size(), size, capacity, dropped);
+    }
+
+    public record QueueStats(int contents, int interactions, int capacity, long dropped) {
+    }
+}
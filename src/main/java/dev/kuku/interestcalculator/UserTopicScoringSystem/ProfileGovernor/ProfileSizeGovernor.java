@@ -0,0 +1,117 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.ProfileGovernor;
+
+import dev.kuku.interestcalculator.UserTopicScoringSystem.TopicScorer.subSystem.ProfileScoreBuffer;
+import dev.kuku.interestcalculator.fakeDatabase.UserTopicScoreDb;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps every profile small. Entries whose score fell below {@code minScore} are dropped, and a profile above
+ * {@code maxTopicsPerUser} loses its lowest scored entries, except the topics the write just set so a new interest
+ * is not dropped the moment it appears. Runs after every write and every decay, so a profile never holds more than
+ * the cap between interactions, which also bounds the cost of decaying it.
+ */
+@Component
+public class ProfileSizeGovernor {
+    // Power of two histogram buckets, the last one is open ended
+    private static final int HISTOGRAM_BUCKETS = 12;
+
+    @Getter
+    private final int maxTopicsPerUser;
+    @Getter
+    private final double minScore;
+    private final AtomicLong prunedEntries = new AtomicLong();
+    private final AtomicLong evictedEntries = new AtomicLong();
+    // Profiles over a limit are governed in a per thread buffer, with the same cut as a profile being scored
+    private final ThreadLocal<ProfileScoreBuffer> buffers = ThreadLocal.withInitial(ProfileScoreBuffer::new);
+
+    public ProfileSizeGovernor(@Value("${profiles.max-topics-per-user:64}") int maxTopicsPerUser,
+                               @Value("${profiles.min-score:0.001}") double minScore) {
+        this.maxTopicsPerUser = maxTopicsPerUser;
+        this.minScore = minScore;
+    }
+
+    /**
+     * Applies both limits to the profile in place. Caller holds the user's lock.
+     */
+    public void govern(Map<String, UserTopicScoreDb.UserTopicScoreRow> profile) {
+        govern(profile, Set.of());
+    }
+
+    /**
+     * Applies both limits to the profile in place, the topics of the write being governed are never evicted unless
+     * they alone exceed the cap. Caller holds the user's lock.
+     *
+     * @param written topics the current write set, they may still be pruned
+     */
+    public void govern(Map<String, UserTopicScoreDb.UserTopicScoreRow> profile, Set<String> written) {
+        if (withinLimits(profile)) return;
+        ProfileScoreBuffer buffer = buffers.get();
+        buffer.load(profile.values());
+        govern(buffer, written);
+        profile.keySet().removeIf(topic -> !buffer.contains(topic));
+    }
+
+    // Most writes leave the profile within both limits, they are checked without copying it
+    private boolean withinLimits(Map<String, UserTopicScoreDb.UserTopicScoreRow> profile) {
+        if (profile.size() > maxTopicsPerUser) return false;
+        for (UserTopicScoreDb.UserTopicScoreRow row : profile.values()) {
+            if (Math.abs(row.interestScore) < minScore) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Same limits on a profile being scored in a buffer.
+     */
+    public void govern(ProfileScoreBuffer profile) {
+        govern(profile, Set.of());
+    }
+
+    /**
+     * Same limits on a profile being scored in a buffer, sparing the written topics from eviction.
+     */
+    public void govern(ProfileScoreBuffer profile, Set<String> written) {
+        int pruned = profile.prune(minScore);
+        if (pruned > 0) prunedEntries.addAndGet(pruned);
+        int evicted = profile.keepHighest(maxTopicsPerUser, written);
+        if (evicted > 0) evictedEntries.addAndGet(evicted);
+    }
+
+    public ProfileSizeDistribution describe(int[] profileSizes) {
+        long[] buckets = new long[HISTOGRAM_BUCKETS];
+        long totalTopics = 0;
+        int largest = 0;
+        for (int size : profileSizes) {
+            // 0 -> bucket 0, 1 -> 1, 2..3 -> 2, 4..7 -> 3, ...
+            int bucket = size == 0 ? 0 : 32 - Integer.numberOfLeadingZeros(size);
+            buckets[Math.min(bucket, HISTOGRAM_BUCKETS - 1)]++;
+            totalTopics += size;
+            largest = Math.max(largest, size);
+        }
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int bucket = 0; bucket < HISTOGRAM_BUCKETS; bucket++) {
+            String label;
+            if (bucket <= 1) label = String.valueOf(bucket);
+            else if (bucket == HISTOGRAM_BUCKETS - 1) label = (1 << (bucket - 1)) + "+";
+            else label = (1 << (bucket - 1)) + "-" + ((1 << bucket) - 1);
+            histogram.put(label, buckets[bucket]);
+        }
+        double meanTopics = profileSizes.length == 0 ? 0 : (double) totalTopics / profileSizes.length;
+        return new ProfileSizeDistribution(profileSizes.length, meanTopics, largest, maxTopicsPerUser, minScore, histogram,
+                prunedEntries.get(), evictedEntries.get());
+    }
+
+    /**
+     * @param prunedEntries  entries dropped for falling below the minimum score since startup
+     * @param evictedEntries entries dropped for exceeding the per user cap since startup
+     */
+    public record ProfileSizeDistribution(int users, double meanTopics, int largestProfile, int maxTopicsPerUser,
+                                          double minScore, Map<String, Long> histogram, long prunedEntries,
+                                          long evictedEntries) {
+    }
+}
@@ -0,0 +1,251 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.ProfileRebuild;
+
+import dev.kuku.interestcalculator.UserTopicScoringSystem.DeferredTagging.DeferredRetagger;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.DeferredTagging.DeferredTaggingQueue;
+import dev.kuku.interestcalculator.fakeDatabase.ColdProfileStore;
+import dev.kuku.interestcalculator.fakeDatabase.UserInteractionsDb;
+import dev.kuku.interestcalculator.fakeDatabase.UserTopicScoreDb;
+import dev.kuku.interestcalculator.sharding.ShardRouter;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Regenerates every profile from the interaction log, used after scoring parameters change. Old interactions are
+ * scored against today's content topics, co-occurrence graph and popularity, see {@link ProfileReplayer}.
+ * <p>
+ * The log up to its length at the start of the job (the snapshot) is replayed on a fork-join pool sized to the
+ * available cores. Users are split into hash partitions so that one partition holds about {@code maxGroupedEvents}
+ * interactions, the log is scanned once per partition and only that partition's users are grouped in memory. Each finished user is written to a shadow {@link ColdProfileStore} next to
+ * the live one and never touches the live store or its locks, online traffic keeps going against the old profiles.
+ * <p>
+ * The shadow store doubles as the checkpoint: a manifest holds the snapshot length, and a restarted job skips every
+ * user already written. That only works if the shadow store survives a restart, so rebuilds need a configured
+ * {@code profiles.cold-dir}. Interactions logged after the snapshot are then replayed on top of the shadow profiles in
+ * passes until the remaining tail is small. Profiles the log can not rebuild are copied into the shadow store before
+ * that. Only the last tail, and the few profiles written since the copy, are handled with every user lock held,
+ * right before the shadow store is swapped in for the live one.
+ * <p>
+ * Interactions waiting in the {@link DeferredTaggingQueue} are in the log but not replayed, even if their content got
+ * its topics by now. The {@link DeferredRetagger} is paused for the whole job and scores them onto the swapped in
+ * profiles afterwards, each of them exactly once.
+ * <p>
+ * Only a node holding every user's whole history can rebuild. Moving a user between shard nodes leaves its log
+ * behind, so rebuilds are refused on sharded nodes.
+ */
+@Slf4j
+@Service
+public class ProfileRebuildJob {
+    private static final String SHADOW_STORE = "rebuild";
+    private static final String MANIFEST = "rebuild.manifest";
+    private static final int READ_CHUNK = 65_536;
+    // Tail small enough to replay while every user is locked
+    private static final int FINAL_CATCH_UP_MAX_EVENTS = 1_000;
+
+    private final UserInteractionsDb userInteractionsDb;
+    private final UserTopicScoreDb userTopicScoreDb;
+    private final ColdProfileStore coldProfileStore;
+    private final ProfileReplayer profileReplayer;
+    private final DeferredTaggingQueue deferredTaggingQueue;
+    private final DeferredRetagger deferredRetagger;
+    private final ShardRouter shardRouter;
+    // Interactions grouped in memory at once on average, more only if a single user has more
+    private final int maxGroupedEvents;
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "profile-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicInteger rebuiltUsers = new AtomicInteger();
+    private final AtomicLong tailEvents = new AtomicLong();
+    private volatile State state = State.IDLE;
+    private volatile int snapshotEvents;
+    private volatile int totalUsers;
+    private volatile int resumedUsers;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private volatile String error;
+
+    public ProfileRebuildJob(UserInteractionsDb userInteractionsDb, UserTopicScoreDb userTopicScoreDb, ColdProfileStore coldProfileStore,
+                             ProfileReplayer profileReplayer, DeferredTaggingQueue deferredTaggingQueue, DeferredRetagger deferredRetagger, ShardRouter shardRouter,
+                             @Value("${profiles.rebuild.max-grouped-events:1000000}") int maxGroupedEvents) {
+        this.userInteractionsDb = userInteractionsDb;
+        this.userTopicScoreDb = userTopicScoreDb;
+        this.coldProfileStore = coldProfileStore;
+        this.profileReplayer = profileReplayer;
+        this.deferredTaggingQueue = deferredTaggingQueue;
+        this.deferredRetagger = deferredRetagger;
+        this.shardRouter = shardRouter;
+        this.maxGroupedEvents = maxGroupedEvents;
+    }
+
+    /**
+     * @return false if a rebuild is already running
+     * @throws IllegalStateException if the cold profiles live in a temporary directory or the node is sharded
+     */
+    public boolean start() {
+        if (coldProfileStore.isTemporary()) {
+            throw new IllegalStateException("Profile rebuilds need profiles.cold-dir, a temporary directory can not be resumed from");
+        }
+        if (shardRouter.isSharded()) {
+            throw new IllegalStateException("Profile rebuilds replay the local log only, it lacks the history of users moved between shards");
+        }
+        if (!running.compareAndSet(false, true)) return false;
+        state = State.REPLAYING;
+        rebuiltUsers.set(0);
+        tailEvents.set(0);
+        snapshotEvents = 0;
+        totalUsers = 0;
+        resumedUsers = 0;
+        startedAt = System.currentTimeMillis();
+        finishedAt = 0;
+        error = null;
+        runner.execute(this::run);
+        return true;
+    }
+
+    public RebuildStatus getStatus() {
+        return new RebuildStatus(state, snapshotEvents, totalUsers, resumedUsers, rebuiltUsers.get(), tailEvents.get(),
+                startedAt, finishedAt, error);
+    }
+
+    private void run() {
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            // Nothing leaves the deferred queue until the swap, what is queued when a log range is read is skipped
+            deferredRetagger.pause();
+            ColdProfileStore shadow = coldProfileStore.sibling(SHADOW_STORE);
+            Path manifest = shadow.getDirectory().resolve(MANIFEST);
+            Set<String> checkpointed;
+            if (Files.exists(manifest)) {
+                snapshotEvents = Integer.parseInt(Files.readString(manifest).trim());
+                checkpointed = shadow.getUserIds();
+                log.info("Resuming profile rebuild of {} events, {} users already rebuilt", snapshotEvents, checkpointed.size());
+            } else {
+                shadow.clear();
+                snapshotEvents = userInteractionsDb.getInteractionCount();
+                Files.writeString(manifest, String.valueOf(snapshotEvents));
+                checkpointed = Set.of();
+                log.info("Starting profile rebuild of {} events", snapshotEvents);
+            }
+
+            resumedUsers = checkpointed.size();
+            totalUsers = checkpointed.size();
+            // Grows partition by partition, the users of a partition are known once it is grouped
+            replayPartitioned(pool, 0, snapshotEvents, checkpointed, users -> totalUsers += users, (userId, interactions) -> {
+                shadow.write(userId, profileReplayer.replay(userId, List.of(), interactions));
+                rebuiltUsers.incrementAndGet();
+            });
+
+            // Catch-up writes are not tracked by the manifest, a failure from here on starts over
+            Files.delete(manifest);
+            state = State.CATCHING_UP;
+            // Users without history are copied as they are. Whatever was logged for them before the copy is in the
+            // copy, so catch-up skips them, and anything written after it is copied again at the swap
+            userTopicScoreDb.startTrackingChanges();
+            Set<String> copied = userTopicScoreDb.copyMissingProfiles(shadow);
+            int replayed = snapshotEvents;
+            for (int end = userInteractionsDb.getInteractionCount(); end - replayed > FINAL_CATCH_UP_MAX_EVENTS;
+                 end = userInteractionsDb.getInteractionCount()) {
+                catchUp(pool, shadow, replayed, end, copied);
+                replayed = end;
+            }
+            state = State.SWAPPING;
+            int finalFrom = replayed;
+            userTopicScoreDb.replaceAllProfiles(shadow, copied,
+                    () -> catchUp(pool, shadow, finalFrom, userInteractionsDb.getInteractionCount(), copied));
+            state = State.COMPLETED;
+            log.info("Profile rebuild finished, {} users rebuilt, {} tail events", totalUsers, tailEvents.get());
+        } catch (Exception e) {
+            log.error("Profile rebuild failed", e);
+            error = e.getMessage();
+            state = State.FAILED;
+        } finally {
+            userTopicScoreDb.stopTrackingChanges();
+            deferredRetagger.resume();
+            pool.shutdown();
+            finishedAt = System.currentTimeMillis();
+            running.set(false);
+        }
+    }
+
+    /**
+     * Replays log positions [from, to) on top of the shadow profiles of every user but the skipped ones.
+     */
+    private void catchUp(ForkJoinPool pool, ColdProfileStore shadow, int from, int to, Set<String> skippedUsers) {
+        if (from >= to) return;
+        try {
+            replayPartitioned(pool, from, to, skippedUsers, users -> {
+            }, (userId, interactions) -> {
+                List<UserTopicScoreDb.UserTopicScoreRow> rows = shadow.read(userId);
+                shadow.write(userId, profileReplayer.replay(userId, rows == null ? List.of() : rows, interactions));
+            });
+        } catch (Exception e) {
+            throw new IllegalStateException("Catch-up of events " + from + " to " + to + " failed", e);
+        }
+        tailEvents.addAndGet(to - from);
+    }
+
+    /**
+     * Hands every user's interactions at log positions [from, to) to replayUser, one hash partition of users at a
+     * time, the users of a partition in parallel. Deferred interactions are left out.
+     *
+     * @param usersGrouped told the number of users of each partition before they are replayed
+     */
+    private void replayPartitioned(ForkJoinPool pool, int from, int to, Set<String> skippedUsers, IntConsumer usersGrouped,
+                                   BiConsumer<String, List<UserInteractionsDb.UserInteractionRow>> replayUser) throws Exception {
+        Set<UserInteractionsDb.UserInteractionRow> deferred = deferredTaggingQueue.getInteractions();
+        int partitions = Math.max(1, (int) Math.ceil((double) (to - from) / maxGroupedEvents));
+        for (int partition = 0; partition < partitions; partition++) {
+            Map<String, List<UserInteractionsDb.UserInteractionRow>> byUser = groupByUser(from, to, skippedUsers, deferred,
+                    partitions, partition);
+            usersGrouped.accept(byUser.size());
+            pool.submit(() -> byUser.entrySet().parallelStream().forEach(entry -> replayUser.accept(entry.getKey(), entry.getValue()))).get();
+        }
+    }
+
+    /**
+     * Reads the log in chunks, the log's monitor is only held for one chunk at a time so appends are not stalled.
+     * Only interactions of users in the given partition are kept.
+     */
+    private Map<String, List<UserInteractionsDb.UserInteractionRow>> groupByUser(int from, int to, Set<String> skippedUsers,
+                                                                              Set<UserInteractionsDb.UserInteractionRow> deferred,
+                                                                              int partitions, int partition) {
+        Map<String, List<UserInteractionsDb.UserInteractionRow>> byUser = new HashMap<>();
+        for (int chunkStart = from; chunkStart < to; chunkStart += READ_CHUNK) {
+            for (UserInteractionsDb.UserInteractionRow interaction : userInteractionsDb.getInteractions(chunkStart, Math.min(to, chunkStart + READ_CHUNK))) {
+                if (Math.floorMod(interaction.userId.hashCode(), partitions) != partition) continue;
+                if (skippedUsers.contains(interaction.userId) || deferred.contains(interaction)) continue;
+                byUser.computeIfAbsent(interaction.userId, id -> new ArrayList<>()).add(interaction);
+            }
+        }
+        return byUser;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runner.shutdownNow();
+    }
+
+    public enum State {
+        IDLE, REPLAYING, CATCHING_UP, SWAPPING, COMPLETED, FAILED
+    }
+
+    public record RebuildStatus(State state, int snapshotEvents, int totalUsers, int resumedUsers, int rebuiltUsers,
+                                long tailEvents, long startedAt, long finishedAt, String error) {
+    }
+}
@@ -0,0 +1,38 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.ProfileRebuild;
+
+import dev.kuku.interestcalculator.UserTopicScoringSystem.TopicScorer.UserTopicInteractionScorer;
+import dev.kuku.interestcalculator.fakeDatabase.UserInteractionsDb;
+import dev.kuku.interestcalculator.fakeDatabase.UserTopicScoreDb;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Recomputes a profile from interactions entirely in memory, the same steps the online path takes per interaction:
+ * every score decays up to the interaction time, then the interaction's topics are scored and saturated, and the
+ * profile is governed after both steps. The scorer does this in its reusable working buffer, the same code the online
+ * batch path runs.
+ * The interaction time stands in for the clock. Interactions on content without topics are skipped, that is deleted
+ * or re-tagged content and content whose interactions are still deferred.
+ * <p>
+ * Only the log is replayed, not the state around it. Content topics, the topic co-occurrence graph behind propagation
+ * and the trending counts behind popularity dampening are read as they are at replay time. A rebuilt profile matches
+ * the online one only as long as none of those moved: re-tagged content, new co-occurrences, or with dampening
+ * enabled any change in popularity shift what the old interactions score.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProfileReplayer {
+    private final UserTopicInteractionScorer userTopicInteractionScorer;
+
+    /**
+     * @param startRows    profile to continue from, empty to rebuild from scratch
+     * @param interactions the user's interactions in log order
+     * @return the profile after the last interaction
+     */
+    public List<UserTopicScoreDb.UserTopicScoreRow> replay(String userId, List<UserTopicScoreDb.UserTopicScoreRow> startRows,
+                                                          List<UserInteractionsDb.UserInteractionRow> interactions) {
+        return userTopicInteractionScorer.replayInteractions(userId, startRows, interactions);
+    }
+}
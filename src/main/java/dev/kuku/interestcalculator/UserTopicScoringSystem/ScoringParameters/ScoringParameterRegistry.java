@@ -0,0 +1,255 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.ScoringParameters;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scoring parameters per user cohort, reloadable while running.
+ * <p>
+ * Base parameters come from the {@code scoring.*} application properties. The optional parameters file, a properties
+ * file with the same keys, overrides them and defines cohorts:
+ * <pre>
+ * scoring.decay-rate=0.7
+ * scoring.cohort.slow-decay.buckets=0-9
+ * scoring.cohort.slow-decay.decay-rate=0.8
+ * </pre>
+ * Users are hashed into {@code scoring.cohort-buckets} buckets, a cohort owns a range of them and overrides any of
+ * the base parameters for its users.
+ * <p>
+ * Everything is resolved into an immutable snapshot holding the parameters of every bucket in an array. Readers get
+ * their parameters with one volatile read and an array index, a reload builds a new snapshot and swaps it in. The file
+ * is polled for changes, an invalid file is logged and the current snapshot stays.
+ * Decay is evaluated in closed form, so a changed decay applies to the whole elapsed time of existing scores.
+ */
+@Slf4j
+@Component
+public class ScoringParameterRegistry {
+    private static final String PREFIX = "scoring.";
+    private static final String COHORT_PREFIX = "scoring.cohort.";
+    // Registry settings, not scoring parameters, allowed in the file but ignored
+    private static final Set<String> SETTINGS = Set.of("parameters-file", "cohort-buckets", "reload-interval-millis");
+
+    private final Environment environment;
+    private final Path parametersFile;
+    private final int cohortBuckets;
+    private final ScheduledExecutorService reloadExecutor;
+    private volatile Snapshot snapshot;
+    // Modification time of the file the current snapshot was built from, only touched by reload
+    private long loadedModifiedTime = Long.MIN_VALUE;
+
+    @Autowired
+    public ScoringParameterRegistry(Environment environment,
+                                    @Value("${scoring.parameters-file:}") String parametersFile,
+                                    @Value("${scoring.cohort-buckets:100}") int cohortBuckets,
+                                    @Value("${scoring.reload-interval-millis:5000}") long reloadIntervalMillis) {
+        if (cohortBuckets <= 0) throw new IllegalArgumentException("scoring.cohort-buckets must be positive");
+        this.environment = environment;
+        this.parametersFile = parametersFile.isBlank() ? null : Path.of(parametersFile);
+        this.cohortBuckets = cohortBuckets;
+        reload();
+        if (this.parametersFile == null) {
+            this.reloadExecutor = null;
+            return;
+        }
+        this.reloadExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "scoring-parameters-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reloadExecutor.scheduleWithFixedDelay(this::reloadIfChanged, reloadIntervalMillis, reloadIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private ScoringParameterRegistry(ScoringParameters parameters) {
+        this.environment = null;
+        this.parametersFile = null;
+        this.cohortBuckets = 1;
+        this.reloadExecutor = null;
+        this.snapshot = new Snapshot(1, System.currentTimeMillis(), parameters, List.of(),
+                new ScoringParameters[]{parameters}, new String[1]);
+    }
+
+    /**
+     * Registry that always hands out the same parameters, for code running outside the application context.
+     */
+    public static ScoringParameterRegistry fixed(ScoringParameters parameters) {
+        return new ScoringParameterRegistry(parameters);
+    }
+
+    public ScoringParameters forUser(String userId) {
+        Snapshot current = snapshot;
+        return current.byBucket[bucketOf(userId, current.byBucket.length)];
+    }
+
+    /**
+     * Base parameters, for everything not tied to a user.
+     */
+    public ScoringParameters getDefaults() {
+        return snapshot.defaults;
+    }
+
+    public UserParameters describeUser(String userId) {
+        Snapshot current = snapshot;
+        int bucket = bucketOf(userId, current.byBucket.length);
+        return new UserParameters(userId, bucket, current.cohortByBucket[bucket], current.byBucket[bucket]);
+    }
+
+    public RegistryStatus getStatus() {
+        Snapshot current = snapshot;
+        return new RegistryStatus(current.version, current.loadedAt, parametersFile == null ? null : parametersFile.toString(),
+                cohortBuckets, current.defaults, current.cohorts);
+    }
+
+    /**
+     * Rebuilds the snapshot from the properties and the file.
+     *
+     * @throws IllegalArgumentException if the file has unknown keys, bad values or overlapping cohorts, the current
+     *                                  snapshot stays in that case
+     */
+    public synchronized RegistryStatus reload() {
+        if (environment == null) return getStatus();
+        Properties file = new Properties();
+        long modifiedTime = Long.MIN_VALUE;
+        if (parametersFile != null) {
+            try {
+                modifiedTime = Files.getLastModifiedTime(parametersFile).toMillis();
+                try (Reader reader = Files.newBufferedReader(parametersFile)) {
+                    file.load(reader);
+                }
+            } catch (NoSuchFileException e) {
+                log.warn("Scoring parameters file {} does not exist, using application properties only", parametersFile);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read " + parametersFile, e);
+            }
+        }
+        Snapshot previous = snapshot;
+        snapshot = build(file, previous == null ? 1 : previous.version + 1);
+        loadedModifiedTime = modifiedTime;
+        log.info("Scoring parameters version {} loaded, {} cohorts", snapshot.version, snapshot.cohorts.size());
+        return getStatus();
+    }
+
+    private Snapshot build(Properties file, long version) {
+        Map<String, Map<String, String>> cohortValues = new TreeMap<>();
+        for (String key : file.stringPropertyNames()) {
+            if (key.startsWith(COHORT_PREFIX)) {
+                String rest = key.substring(COHORT_PREFIX.length());
+                int dot = rest.indexOf('.');
+                if (dot <= 0) throw new IllegalArgumentException("Cohort key without a parameter: " + key);
+                String name = rest.substring(0, dot);
+                String parameter = rest.substring(dot + 1);
+                if (!parameter.equals("buckets") && !ScoringParameters.KEYS.contains(parameter)) {
+                    throw new IllegalArgumentException("Unknown scoring parameter " + key);
+                }
+                cohortValues.computeIfAbsent(name, n -> new HashMap<>()).put(parameter, file.getProperty(key));
+            } else if (!key.startsWith(PREFIX) || !(ScoringParameters.KEYS.contains(key.substring(PREFIX.length()))
+                    || SETTINGS.contains(key.substring(PREFIX.length())))) {
+                // A typo would otherwise silently run the experiment with the defaults
+                throw new IllegalArgumentException("Unknown scoring parameter " + key);
+            }
+        }
+        ScoringParameters defaults = ScoringParameters.from(
+                key -> file.getProperty(PREFIX + key, environment.getProperty(PREFIX + key)), ScoringParameters.DEFAULTS);
+
+        ScoringParameters[] byBucket = new ScoringParameters[cohortBuckets];
+        String[] cohortByBucket = new String[cohortBuckets];
+        Arrays.fill(byBucket, defaults);
+        List<Cohort> cohorts = new ArrayList<>();
+        cohortValues.forEach((name, values) -> {
+            String buckets = values.get("buckets");
+            if (buckets == null) throw new IllegalArgumentException("Cohort " + name + " has no buckets");
+            int[] range = parseRange(name, buckets.trim());
+            ScoringParameters parameters = ScoringParameters.from(values::get, defaults);
+            for (int bucket = range[0]; bucket <= range[1]; bucket++) {
+                if (cohortByBucket[bucket] != null) {
+                    throw new IllegalArgumentException("Cohorts " + cohortByBucket[bucket] + " and " + name + " share bucket " + bucket);
+                }
+                cohortByBucket[bucket] = name;
+                byBucket[bucket] = parameters;
+            }
+            cohorts.add(new Cohort(name, range[0], range[1], parameters));
+        });
+        return new Snapshot(version, System.currentTimeMillis(), defaults, List.copyOf(cohorts), byBucket, cohortByBucket);
+    }
+
+    private int[] parseRange(String cohort, String buckets) {
+        try {
+            int dash = buckets.indexOf('-');
+            int from = Integer.parseInt((dash < 0 ? buckets : buckets.substring(0, dash)).trim());
+            int to = dash < 0 ? from : Integer.parseInt(buckets.substring(dash + 1).trim());
+            if (from < 0 || to < from || to >= cohortBuckets) {
+                throw new IllegalArgumentException("Buckets of cohort " + cohort + " must be within 0-" + (cohortBuckets - 1) + ": " + buckets);
+            }
+            return new int[]{from, to};
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Buckets of cohort " + cohort + " must look like 0-9: " + buckets);
+        }
+    }
+
+    private void reloadIfChanged() {
+        try {
+            long modifiedTime = Files.exists(parametersFile) ? Files.getLastModifiedTime(parametersFile).toMillis() : Long.MIN_VALUE;
+            synchronized (this) {
+                if (modifiedTime == loadedModifiedTime) return;
+            }
+            reload();
+        } catch (Exception e) {
+            log.error("Scoring parameters not reloaded, keeping version {}", snapshot.version, e);
+            // Not retried until the file changes again
+            synchronized (this) {
+                try {
+                    loadedModifiedTime = Files.getLastModifiedTime(parametersFile).toMillis();
+                } catch (IOException ignored) {
+                    loadedModifiedTime = Long.MIN_VALUE;
+                }
+            }
+        }
+    }
+
+    // fmix32 on the string hash, so cohorts do not line up with anything else keyed by the plain hash
+    private static int bucketOf(String userId, int buckets) {
+        int hash = userId.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, buckets);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (reloadExecutor != null) reloadExecutor.shutdownNow();
+    }
+
+    private record Snapshot(long version, long loadedAt, ScoringParameters defaults, List<Cohort> cohorts,
+                            ScoringParameters[] byBucket, String[] cohortByBucket) {
+    }
+
+    public record Cohort(String name, int fromBucket, int toBucket, ScoringParameters parameters) {
+    }
+
+    /**
+     * @param cohort null for users on the base parameters
+     */
+    public record UserParameters(String userId, int bucket, String cohort, ScoringParameters parameters) {
+    }
+
+    public record RegistryStatus(long version, long loadedAt, String parametersFile, int cohortBuckets,
+                                 ScoringParameters defaults, List<Cohort> cohorts) {
+    }
+}
@@ -0,0 +1,147 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.ScoringParameters;
+
+import dev.kuku.interestcalculator.fakeDatabase.UserInteractionsDb;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One immutable set of scoring parameters. Whatever is derived from them, like the delta of every discovery and
+ * interaction type pair, is computed once here so scoring only reads fields and arrays.
+ */
+public final class ScoringParameters {
+    // Before DEFAULTS, which already needs it
+    private static final int INTERACTION_TYPES = UserInteractionsDb.InteractionType.values().length;
+    public static final List<String> KEYS = List.of("decay-rate", "time-unit-millis", "min-score", "max-score",
+            "saturation-strength", "max-discovery-value", "max-interaction-weight", "target-max-delta",
+            "propagation-factor", "min-propagated-delta", "dampener-min-multiplier", "dampener-min-window-interactions");
+    public static final ScoringParameters DEFAULTS = new ScoringParameters(0.7, 60_000, 0.0, 10.0, 0.2, 5.0, 1.0, 1.0,
+            0.3, 0.005, 0.5, 50);
+
+    // Fraction of a score left after every time unit
+    public final double decayRate;
+    public final double timeUnitMillis;
+    public final double minScore;
+    public final double maxScore;
+    public final double saturationStrength;
+    //The discovery part of the raw interaction score is maxDiscoveryValue * multiplier
+    public final double maxDiscoveryValue;
+    public final double maxInteractionWeight;
+    // Raw interaction scores are scaled to [-targetMaxDelta, targetMaxDelta]
+    public final double targetMaxDelta;
+    public final double propagationFactor;
+    public final double minPropagatedDelta;
+    public final double dampenerMinMultiplier;
+    public final long dampenerMinWindowInteractions;
+    private final double[] interactionDeltas;
+
+    public ScoringParameters(double decayRate, double timeUnitMillis, double minScore, double maxScore,
+                             double saturationStrength, double maxDiscoveryValue, double maxInteractionWeight,
+                             double targetMaxDelta, double propagationFactor, double minPropagatedDelta,
+                             double dampenerMinMultiplier, long dampenerMinWindowInteractions) {
+        if (!(decayRate > 0 && decayRate <= 1)) throw new IllegalArgumentException("decay-rate must be in (0, 1]: " + decayRate);
+        if (!(timeUnitMillis > 0)) throw new IllegalArgumentException("time-unit-millis must be positive: " + timeUnitMillis);
+        if (!(maxScore > minScore)) throw new IllegalArgumentException("max-score must be above min-score: " + maxScore);
+        if (!(saturationStrength > 0)) throw new IllegalArgumentException("saturation-strength must be positive: " + saturationStrength);
+        if (!(dampenerMinMultiplier >= 0 && dampenerMinMultiplier <= 1)) {
+            throw new IllegalArgumentException("dampener-min-multiplier must be in [0, 1]: " + dampenerMinMultiplier);
+        }
+        this.decayRate = decayRate;
+        this.timeUnitMillis = timeUnitMillis;
+        this.minScore = minScore;
+        this.maxScore = maxScore;
+        this.saturationStrength = saturationStrength;
+        this.maxDiscoveryValue = maxDiscoveryValue;
+        this.maxInteractionWeight = maxInteractionWeight;
+        this.targetMaxDelta = targetMaxDelta;
+        this.propagationFactor = propagationFactor;
+        this.minPropagatedDelta = minPropagatedDelta;
+        this.dampenerMinMultiplier = dampenerMinMultiplier;
+        this.dampenerMinWindowInteractions = dampenerMinWindowInteractions;
+        this.interactionDeltas = calculateInteractionDeltas();
+    }
+
+    /**
+     * Parameters with every key the lookup knows replaced, the rest taken from the fallback.
+     *
+     * @param lookup value of a key from {@link #KEYS}, null if not set
+     * @throws IllegalArgumentException if a value is not a number or out of range
+     */
+    public static ScoringParameters from(Function<String, String> lookup, ScoringParameters fallback) {
+        return new ScoringParameters(
+                number(lookup, "decay-rate", fallback.decayRate),
+                number(lookup, "time-unit-millis", fallback.timeUnitMillis),
+                number(lookup, "min-score", fallback.minScore),
+                number(lookup, "max-score", fallback.maxScore),
+                number(lookup, "saturation-strength", fallback.saturationStrength),
+                number(lookup, "max-discovery-value", fallback.maxDiscoveryValue),
+                number(lookup, "max-interaction-weight", fallback.maxInteractionWeight),
+                number(lookup, "target-max-delta", fallback.targetMaxDelta),
+                number(lookup, "propagation-factor", fallback.propagationFactor),
+                number(lookup, "min-propagated-delta", fallback.minPropagatedDelta),
+                number(lookup, "dampener-min-multiplier", fallback.dampenerMinMultiplier),
+                (long) number(lookup, "dampener-min-window-interactions", fallback.dampenerMinWindowInteractions));
+    }
+
+    private static double number(Function<String, String> lookup, String key, double fallback) {
+        String value = lookup.apply(key);
+        if (value == null || value.isBlank()) return fallback;
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " is not a number: " + value);
+        }
+    }
+
+    /**
+     * Normalised delta of an interaction, before the per topic multipliers.
+     */
+    public double interactionDelta(UserInteractionsDb.Discovery discovery, UserInteractionsDb.InteractionType interactionType) {
+        return interactionDeltas[discovery.ordinal() * INTERACTION_TYPES + interactionType.ordinal()];
+    }
+
+    private static double getDiscoveryMultiplier(UserInteractionsDb.Discovery discovery) {
+        return switch (discovery) {
+            case SEARCH -> 1.0;
+            case TRENDING -> 0.5;
+            case RECOMMENDATION -> 0.2;
+        };
+    }
+
+    private static double getInteractionMultiplier(UserInteractionsDb.InteractionType interactionType) {
+        return switch (interactionType) {
+            case COMMENT -> 1.0;
+            case LIKE -> 0.5;
+            case DISLIKE -> -0.5;
+            case REPORT -> -1.0;
+        };
+    }
+
+    /**
+     * Raw score of every pair is discovery value times interaction weight. The lowest raw score maps to
+     * -targetMaxDelta, the highest to +targetMaxDelta and everything else linearly in between.
+     */
+    private double[] calculateInteractionDeltas() {
+        UserInteractionsDb.Discovery[] discoveries = UserInteractionsDb.Discovery.values();
+        UserInteractionsDb.InteractionType[] interactionTypes = UserInteractionsDb.InteractionType.values();
+        double[] rawScores = new double[discoveries.length * INTERACTION_TYPES];
+        double minRawScore = Double.POSITIVE_INFINITY;
+        double maxRawScore = Double.NEGATIVE_INFINITY;
+        for (UserInteractionsDb.Discovery discovery : discoveries) {
+            for (UserInteractionsDb.InteractionType interactionType : interactionTypes) {
+                double rawScore = getDiscoveryMultiplier(discovery) * maxDiscoveryValue
+                        * getInteractionMultiplier(interactionType) * maxInteractionWeight;
+                rawScores[discovery.ordinal() * INTERACTION_TYPES + interactionType.ordinal()] = rawScore;
+                minRawScore = Math.min(minRawScore, rawScore);
+                maxRawScore = Math.max(maxRawScore, rawScore);
+            }
+        }
+        double[] deltas = new double[rawScores.length];
+        // All scores the same, every interaction is neutral
+        if (maxRawScore == minRawScore) return deltas;
+        for (int i = 0; i < rawScores.length; i++) {
+            deltas[i] = (2.0 * (rawScores[i] - minRawScore) / (maxRawScore - minRawScore) - 1.0) * targetMaxDelta;
+        }
+        return deltas;
+    }
+}
@@ -1,35 +1,40 @@
 package dev.kuku.interestcalculator.UserTopicScoringSystem.TopicDecayer.subSystem;
 
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ScoringParameters.ScoringParameterRegistry;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ScoringParameters.ScoringParameters;
 import dev.kuku.interestcalculator.fakeDatabase.UserTopicScoreDb;
-import dev.kuku.interestcalculator.util.TimeProvider;
 import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.util.Set;
 
-@Slf4j
 @Component
 @RequiredArgsConstructor
 public class TopicScoreTemporalExponentialDecayer {
-    private static final double DECAY_RATE = 0.7;
+    // Decay rate and time unit of the row's user
+    private final ScoringParameterRegistry scoringParameterRegistry;
+
     /**
-     * Should return delta
+     * Closed form score of the row at the given time. Nothing is written, used where scores are needed at
+     * query time without touching the store.
      */
-    private final TimeProvider timeProvider;
+    public double decayedScore(UserTopicScoreDb.UserTopicScoreRow userTopicScore, long currentTime) {
+        return userTopicScore.interestScore * decayFactor(userTopicScore.userId, userTopicScore.updatedAt, currentTime);
+    }
 
-    public double decay(UserTopicScoreDb.UserTopicScoreRow userTopicScore) {
-        long currentTime = timeProvider.nowMillis();
-        long topicUpdateTime = userTopicScore.updatedAt;
-        if (currentTime < topicUpdateTime) throw new IllegalArgumentException("currentTime < topicUpdateTime");
-        long timeElapsed = currentTime - topicUpdateTime;
-        // 1 minute in milliseconds
-        double TIME_UNIT_MILLIS = 60000;
-        double timeUnit = (double) timeElapsed / TIME_UNIT_MILLIS;
+    /**
+     * Fraction of a score of the user set at {@code from} that is left at {@code to}.
+     */
+    public double decayFactor(String userId, long from, long to) {
+        return decayFactor(scoringParameterRegistry.forUser(userId), from, to);
+    }
 
-        double decayFactor = Math.pow(DECAY_RATE, timeUnit);
-        double newScore = userTopicScore.interestScore * decayFactor;
-        log.info("Decayed score for {} from {} to {}", userTopicScore.userId, userTopicScore.interestScore, newScore);
-        return newScore - userTopicScore.interestScore;
+    /**
+     * Same with the parameters already resolved, for loops over one user's scores.
+     */
+    public double decayFactor(ScoringParameters parameters, long from, long to) {
+        long timeElapsed = Math.max(0, to - from);
+        double timeUnit = (double) timeElapsed / parameters.timeUnitMillis;
+        return Math.pow(parameters.decayRate, timeUnit);
     }
 }
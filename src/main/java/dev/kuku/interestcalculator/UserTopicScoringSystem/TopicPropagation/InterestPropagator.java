@@ -0,0 +1,41 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.TopicPropagation;
+
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ScoringParameters.ScoringParameters;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.TopicScorer.subSystem.ProfileScoreBuffer;
+import dev.kuku.interestcalculator.fakeDatabase.TopicDb;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Spreads a fraction of an interaction's topic deltas to strongly related topics.
+ * Only the precomputed top neighbors of each topic are visited, so one interaction touches at most
+ * topics * TOP_N extra entries.
+ */
+@Component
+@RequiredArgsConstructor
+public class InterestPropagator {
+    private final TopicCoOccurrenceGraph topicCoOccurrenceGraph;
+    private final TopicDb topicDb;
+
+    /**
+     * Adds deltas for the related topics to the profile's pending deltas.
+     *
+     * @param profile    pending deltas are the ones applied directly to the interacted content's topics
+     * @param parameters propagation factor and the smallest propagated delta worth a write
+     */
+    public void propagate(ProfileScoreBuffer profile, ScoringParameters parameters) {
+        int direct = profile.deltaCount();
+        for (int d = 0; d < direct; d++) {
+            int topicId = topicDb.getTopicId(profile.deltaTopic(d));
+            if (topicId < 0) continue;
+            TopicCoOccurrenceGraph.Neighbors neighbors = topicCoOccurrenceGraph.getTopNeighbors(topicId);
+            for (int i = 0; i < neighbors.topicIds().length; i++) {
+                String neighbor = topicDb.getTopicById(neighbors.topicIds()[i]);
+                int index = profile.deltaIndexOf(neighbor);
+                if (index >= 0 && index < direct) continue;
+                profile.addDelta(neighbor, profile.delta(d) * parameters.propagationFactor * neighbors.weights()[i]);
+            }
+        }
+        profile.dropDeltasBelow(direct, parameters.minPropagatedDelta);
+    }
+}
@@ -0,0 +1,209 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.TopicPropagation;
+
+import dev.kuku.interestcalculator.fakeDatabase.ContentDb;
+import dev.kuku.interestcalculator.fakeDatabase.TopicDb;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Weighted topic co-occurrence graph, built incrementally as content gets tagged.
+ * Nodes are {@link TopicDb} topic ids. Each node keeps a sparse open addressed map of neighbor id to co-occurrence
+ * count, and edge weight is the cosine of the two topics' content sets: cooc(a, b) / sqrt(count(a) * count(b)).
+ * The strongest {@link #TOP_N_NEIGHBORS} neighbors of a node are recomputed whenever the node changes and published
+ * for lock free reads, updates are serialized but scoring never waits for them.
+ * Re-tagged content first takes its previous topics back out, so the graph always reflects current tagging. Counts
+ * only ever add up, concurrent taggings of the same content may therefore arrive in any order.
+ */
+@Component
+@RequiredArgsConstructor
+public class TopicCoOccurrenceGraph {
+    private static final int TOP_N_NEIGHBORS = 5;
+    private static final float MIN_EDGE_WEIGHT = 0.2f;
+    private static final Neighbors NO_NEIGHBORS = new Neighbors(new int[0], new float[0]);
+
+    private final ContentDb contentDb;
+    private final TopicDb topicDb;
+
+    private int[] topicCounts = new int[64];
+    private Adjacency[] adjacency = new Adjacency[64];
+    // Written under the graph's lock, read without it. Replaced by a larger copy when topics are added
+    private volatile AtomicReferenceArray<Neighbors> topNeighbors = new AtomicReferenceArray<>(64);
+
+    @PostConstruct
+    private void init() {
+        contentDb.getAllContents().forEach(content -> addContentTopics(content.getTopics()));
+    }
+
+    @EventListener
+    public void onContentTagged(ContentDb.ContentTaggedEvent event) {
+        replaceContentTopics(event.previousTopics(), event.topics());
+    }
+
+    public void addContentTopics(Collection<String> topics) {
+        replaceContentTopics(null, topics);
+    }
+
+    /**
+     * Takes one piece of content's previous topics out of the graph and adds its new ones.
+     */
+    public synchronized void replaceContentTopics(Collection<String> previousTopics, Collection<String> topics) {
+        if (previousTopics != null && topics != null && previousTopics.size() == topics.size() && previousTopics.containsAll(topics)) return;
+        if (previousTopics != null && !previousTopics.isEmpty()) update(previousTopics, -1);
+        if (topics != null && !topics.isEmpty()) update(topics, 1);
+    }
+
+    private void update(Collection<String> topics, int change) {
+        int[] ids = topics.stream().mapToInt(topicDb::getOrCreateTopicId).distinct().toArray();
+        ensureCapacity(Arrays.stream(ids).max().getAsInt() + 1);
+        for (int id : ids) {
+            topicCounts[id] += change;
+        }
+        for (int i = 0; i < ids.length; i++) {
+            for (int j = i + 1; j < ids.length; j++) {
+                adjacency(ids[i]).add(ids[j], change);
+                adjacency(ids[j]).add(ids[i], change);
+            }
+        }
+        // The count change shifts all of these nodes' edge weights
+        for (int id : ids) {
+            topNeighbors.set(id, computeTopNeighbors(id));
+        }
+    }
+
+    /**
+     * @return the strongest neighbors of the topic, at most {@link #TOP_N_NEIGHBORS} and all above {@link #MIN_EDGE_WEIGHT}
+     */
+    public Neighbors getTopNeighbors(int topicId) {
+        AtomicReferenceArray<Neighbors> published = topNeighbors;
+        if (topicId < 0 || topicId >= published.length()) return NO_NEIGHBORS;
+        Neighbors neighbors = published.get(topicId);
+        return neighbors == null ? NO_NEIGHBORS : neighbors;
+    }
+
+    private Neighbors computeTopNeighbors(int topicId) {
+        Adjacency edges = adjacency[topicId];
+        // Negative while a removal arrived before the addition it takes back
+        if (edges == null || topicCounts[topicId] <= 0) return NO_NEIGHBORS;
+        int[] ids = new int[TOP_N_NEIGHBORS];
+        float[] weights = new float[TOP_N_NEIGHBORS];
+        int size = 0;
+        for (int slot = 0; slot < edges.keys.length; slot++) {
+            int neighbor = edges.keys[slot];
+            if (neighbor == Adjacency.EMPTY || edges.counts[slot] <= 0 || topicCounts[neighbor] <= 0) continue;
+            float weight = (float) (edges.counts[slot] / Math.sqrt((double) topicCounts[topicId] * topicCounts[neighbor]));
+            if (weight < MIN_EDGE_WEIGHT) continue;
+            // Insertion into a tiny sorted array, N is small enough that this beats a heap
+            if (size < TOP_N_NEIGHBORS) size++;
+            else if (weight <= weights[size - 1]) continue;
+            int pos = size - 1;
+            while (pos > 0 && weights[pos - 1] < weight) {
+                ids[pos] = ids[pos - 1];
+                weights[pos] = weights[pos - 1];
+                pos--;
+            }
+            ids[pos] = neighbor;
+            weights[pos] = weight;
+        }
+        return new Neighbors(Arrays.copyOf(ids, size), Arrays.copyOf(weights, size));
+    }
+
+    private Adjacency adjacency(int topicId) {
+        Adjacency edges = adjacency[topicId];
+        if (edges == null) {
+            edges = new Adjacency();
+            adjacency[topicId] = edges;
+        }
+        return edges;
+    }
+
+    private void ensureCapacity(int topicCount) {
+        if (topicCount <= topicCounts.length) return;
+        int newLength = Math.max(topicCount, topicCounts.length * 2);
+        topicCounts = Arrays.copyOf(topicCounts, newLength);
+        adjacency = Arrays.copyOf(adjacency, newLength);
+        AtomicReferenceArray<Neighbors> grown = new AtomicReferenceArray<>(newLength);
+        for (int i = 0; i < topNeighbors.length(); i++) grown.set(i, topNeighbors.get(i));
+        topNeighbors = grown;
+    }
+
+    /**
+     * Neighbor ids sorted by descending edge weight.
+     */
+    public record Neighbors(int[] topicIds, float[] weights) {
+    }
+
+    /**
+     * Open addressed int to int map with linear probing, grown at half load.
+     */
+    private static final class Adjacency {
+        private static final int EMPTY = -1;
+        private int[] keys = newKeys(8);
+        private int[] counts = new int[8];
+        private int size;
+
+        private static int[] newKeys(int capacity) {
+            int[] keys = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+
+        private static int slot(int key, int mask) {
+            int hash = key * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+
+        /**
+         * Adds change to the key's count, a key whose count reaches zero is removed.
+         */
+        private void add(int key, int change) {
+            if ((size + 1) * 2 > keys.length) rehash(keys.length * 2);
+            int mask = keys.length - 1;
+            int slot = slot(key, mask);
+            while (keys[slot] != EMPTY && keys[slot] != key) slot = (slot + 1) & mask;
+            if (keys[slot] == EMPTY) {
+                keys[slot] = key;
+                size++;
+            }
+            counts[slot] += change;
+            if (counts[slot] == 0) remove(slot, mask);
+        }
+
+        // Backward shift deletion, later entries of the probe run move up so lookups never stop at a false gap
+        private void remove(int hole, int mask) {
+            int next = (hole + 1) & mask;
+            while (keys[next] != EMPTY) {
+                int home = slot(keys[next], mask);
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    counts[hole] = counts[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[hole] = EMPTY;
+            counts[hole] = 0;
+            size--;
+        }
+
+        private void rehash(int capacity) {
+            int[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = newKeys(capacity);
+            counts = new int[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == EMPTY) continue;
+                int slot = slot(oldKeys[i], mask);
+                while (keys[slot] != EMPTY) slot = (slot + 1) & mask;
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+}
@@ -1,19 +1,26 @@
 package dev.kuku.interestcalculator.UserTopicScoringSystem.TopicScorer;
 
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ContentTagger.ContentTagger;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.DeferredTagging.DeferredTaggingQueue;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ProfileGovernor.ProfileSizeGovernor;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ScoringParameters.ScoringParameterRegistry;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ScoringParameters.ScoringParameters;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.TopicDecayer.subSystem.TopicScoreTemporalExponentialDecayer;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.TopicPropagation.InterestPropagator;
 import dev.kuku.interestcalculator.UserTopicScoringSystem.TopicScorer.subSystem.InteractionScorer;
 import dev.kuku.interestcalculator.UserTopicScoringSystem.TopicScorer.subSystem.InteractionTopicScorer;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.TopicScorer.subSystem.ProfileScoreBuffer;
 import dev.kuku.interestcalculator.fakeDatabase.ContentDb;
 import dev.kuku.interestcalculator.fakeDatabase.TopicDb;
 import dev.kuku.interestcalculator.fakeDatabase.UserInteractionsDb;
 import dev.kuku.interestcalculator.fakeDatabase.UserTopicScoreDb;
-import dev.kuku.interestcalculator.services.LLMService;
+import dev.kuku.interestcalculator.services.TopicExtractionException;
+import dev.kuku.interestcalculator.util.TimeProvider;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.*;
 
 /**
  * Calculates topic score based on interaction.
@@ -22,73 +29,204 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 @Slf4j
 public class UserTopicInteractionScorer {
-    private static final double MIN_SCORE = 0.0;
-    private static final double MAX_SCORE = 10.0;
-    public static final double SATURATION_STRENGTH = 0.2;
-
     //Base interaction score
     private final InteractionScorer interactionScorer;
     //Topic Specific scoring
     private final InteractionTopicScorer interactionTopicScorer;
     private final ContentDb contentDb;
-    private final LLMService llmService;
+    //Dedup first, LLM only for new content
+    private final ContentTagger contentTagger;
     private final TopicDb topicDb;
     private final UserTopicScoreDb userTopicScoreDb;
+    //Spreads part of the delta to related topics
+    private final InterestPropagator interestPropagator;
+    //Interactions on content the LLM could not tag right now, scored once it can
+    private final DeferredTaggingQueue deferredTaggingQueue;
+    //Score range, saturation and the rest, per user cohort
+    private final ScoringParameterRegistry scoringParameterRegistry;
+    private final TopicScoreTemporalExponentialDecayer exponentialDecayer;
+    private final ProfileSizeGovernor profileSizeGovernor;
+    private final TimeProvider timeProvider;
+    // Per thread working copy of the profile being scored
+    private final ThreadLocal<ProfileScoreBuffer> buffers = ThreadLocal.withInitial(ProfileScoreBuffer::new);
 
     public void scoreInteraction(String userId, UserInteractionsDb.UserInteractionRow interaction) {
+        List<UserInteractionsDb.UserInteractionRow> interactions = List.of(interaction);
+        scoreInteractions(userId, interactions, resolveTopics(interactions));
+    }
+
+    /**
+     * Topics of every interaction's content, tagging content that has none yet. Tagging can wait on the LLM, so
+     * this runs before the user's lock is taken.
+     *
+     * @return topics per interaction, null where tagging failed
+     */
+    public List<Set<String>> resolveTopics(List<UserInteractionsDb.UserInteractionRow> interactions) {
+        List<Set<String>> topicsOfInteractions = new ArrayList<>(interactions.size());
+        for (UserInteractionsDb.UserInteractionRow interaction : interactions) topicsOfInteractions.add(topicsOf(interaction));
+        return topicsOfInteractions;
+    }
+
+    /**
+     * Scores the interactions in order as if they all happened now: the profile is read once, decayed, every
+     * interaction's deltas are saturated against the running scores, and the result is written once.
+     * Interactions whose content could not be tagged are deferred, the rest are still scored.
+     * Popularity dampening sees the trending counts from before the batch, they only count the interactions once
+     * they are logged after it. With dampening enabled a batch can therefore score a trending topic higher than the
+     * same interactions sent one by one.
+     * Caller holds the user's lock.
+     *
+     * @param topicsOfInteractions from {@link #resolveTopics}
+     */
+    public void scoreInteractions(String userId, List<UserInteractionsDb.UserInteractionRow> interactions,
+                                  List<Set<String>> topicsOfInteractions) {
+        boolean anyTagged = false;
+        for (int i = 0; i < interactions.size(); i++) {
+            if (topicsOfInteractions.get(i) != null) {
+                anyTagged = true;
+            } else {
+                deferredTaggingQueue.defer(interactions.get(i));
+            }
+        }
+        if (!anyTagged) return;
+        ProfileScoreBuffer profile = loadProfile(userId);
+        ScoringParameters parameters = scoringParameterRegistry.forUser(userId);
+        long now = timeProvider.nowMillis();
+        for (int i = 0; i < interactions.size(); i++) {
+            Set<String> topics = topicsOfInteractions.get(i);
+            if (topics != null) applyInteraction(profile, parameters, userId, topics, interactions.get(i), 1.0, now);
+        }
+        userTopicScoreDb.replaceTopicScores(userId, profile.toRows(userId));
+    }
+
+    /**
+     * Scores an interaction on content with known topics against the stored scores, decayed up to now.
+     *
+     * @param weight scales the interaction's delta, 1 for interactions scored as they happen
+     */
+    public void scoreTaggedInteraction(String userId, Set<String> topics, UserInteractionsDb.UserInteractionRow interaction,
+                                       double weight) {
+        ProfileScoreBuffer profile = loadProfile(userId);
+        applyInteraction(profile, scoringParameterRegistry.forUser(userId), userId, topics, interaction, weight,
+                timeProvider.nowMillis());
+        userTopicScoreDb.replaceTopicScores(userId, profile.toRows(userId));
+    }
+
+    /**
+     * Replays interactions on a profile entirely in memory, each one at its own interaction time. Nothing is read
+     * from or written to the score store. Interactions on content without topics are skipped, nothing is tagged.
+     *
+     * @param startRows    profile to continue from
+     * @param interactions the user's interactions in log order
+     * @return the profile after the last interaction
+     */
+    public List<UserTopicScoreDb.UserTopicScoreRow> replayInteractions(String userId, List<UserTopicScoreDb.UserTopicScoreRow> startRows,
+                                                                       List<UserInteractionsDb.UserInteractionRow> interactions) {
+        ProfileScoreBuffer profile = buffers.get();
+        profile.load(startRows);
+        ScoringParameters parameters = scoringParameterRegistry.forUser(userId);
+        for (UserInteractionsDb.UserInteractionRow interaction : interactions) {
+            ContentDb.ContentRow content = contentDb.getContentById(interaction.contentId);
+            if (content == null || content.getTopics() == null || content.getTopics().isEmpty()) continue;
+            applyInteraction(profile, parameters, userId, content.getTopics(), interaction, 1.0, interaction.interactionTime);
+        }
+        return profile.toRows(userId);
+    }
+
+    /**
+     * Topics of the interaction's content, tagged first when it has none. Null when tagging failed.
+     */
+    private Set<String> topicsOf(UserInteractionsDb.UserInteractionRow interaction) {
         log.info("Scoring interaction: {}", interaction);
         ContentDb.ContentRow contentRow = contentDb.getContentById(interaction.contentId);
         Set<String> topics = contentRow.getTopics();
-        if (topics == null || topics.isEmpty()) {
-            topics = llmService.getTopics(topicDb.topics, contentRow.getContent());
-            contentRow.setTopics(topics);
-            topicDb.topics.addAll(topics);
+        if (topics != null && !topics.isEmpty()) return topics;
+        try {
+            topics = contentTagger.tag(contentRow);
+        } catch (TopicExtractionException e) {
+            // Scoring a guessed topic would stick in the profile, score it once the real topics are known
+            log.warn("No topics for {} ({}), deferring interaction", interaction.contentId, e.getReason());
+            return null;
         }
+        contentDb.setTopicsOfContent(topics, interaction.contentId);
+        topicDb.topics.addAll(topics);
+        return topics;
+    }
+
+    // The one read of a batch, into this thread's buffer
+    private ProfileScoreBuffer loadProfile(String userId) {
+        ProfileScoreBuffer profile = buffers.get();
+        profile.load(userTopicScoreDb.getUserTopicScores(userId));
+        return profile;
+    }
+
+    /**
+     * Decays every score up to the time, then applies the interaction's deltas to its topics and the propagated
+     * ones with saturation, the profile is governed after both steps like a store write would.
+     */
+    private void applyInteraction(ProfileScoreBuffer profile, ScoringParameters parameters, String userId, Set<String> topics,
+                                  UserInteractionsDb.UserInteractionRow interaction, double weight, long time) {
+        // After the first interaction every slot shares the same update time, one pow per interaction
+        long from = Long.MIN_VALUE;
+        double factor = 1.0;
+        for (int slot = 0; slot < profile.size(); slot++) {
+            long updatedAt = profile.updatedAt(slot);
+            if (updatedAt != from) {
+                from = updatedAt;
+                factor = exponentialDecayer.decayFactor(parameters, from, time);
+            }
+            profile.set(slot, profile.score(slot) * factor, time);
+        }
+        profileSizeGovernor.govern(profile);
+
         //Interaction scoring. Applied to all topics.
-        double delta = interactionScorer.calculateInteractionScoreDelta(interaction.contentDiscovery, interaction.interactionType);
+        double delta = interactionScorer.calculateInteractionScoreDelta(parameters, interaction.contentDiscovery, interaction.interactionType) * weight;
         log.info("Delta: {}", delta);
-        //Per topic scoring
-        Map<String, Double> scoreMap = topics.stream()
-                .collect(Collectors.toMap(t -> t, t -> {
-                    double topicScore = interactionTopicScorer.scoreTopic(userId, t);
-                    double topicDelta = topicScore * delta;
-                    double currentScore = userTopicScoreDb.getTopicScoreOfUser(userId, t);
-                    // Apply saturation using current score and the delta
-                    return applySaturation(currentScore, topicDelta);
-                }));
-        userTopicScoreDb.updateTopicScoresByValue(userId, scoreMap);
+        //Per topic scoring, collected in the buffer
+        for (String topic : topics) profile.addDelta(topic, interactionTopicScorer.scoreTopic(userId, topic) * delta);
+        //Related topics get a fraction of the delta, bounded by the propagator's neighbor lists
+        interestPropagator.propagate(profile, parameters);
+        for (int i = 0; i < profile.deltaCount(); i++) {
+            // Apply saturation using current score and the delta
+            String topic = profile.deltaTopic(i);
+            profile.set(topic, applySaturation(parameters, profile.scoreOf(topic), profile.delta(i)), time);
+        }
+        profile.clearDeltas();
+        // The interacted content's topics stay, even when they enter the profile below everything else
+        profileSizeGovernor.govern(profile, topics);
     }
 
     /**
      * Apply saturation to score updates based on current score and delta.
      * Makes it progressively harder to reach extremes, with positive deltas
-     * having more resistance near MAX_SCORE than negative deltas near MIN_SCORE.
+     * having more resistance near the max score than negative deltas near the min score.
      *
+     * @param parameters   score range and saturation strength of the user
      * @param currentScore The current score before applying the delta
      * @param delta        The change to apply (can be positive or negative)
      * @return The new score with saturation applied
      */
-    private double applySaturation(double currentScore, double delta) {
+    private static double applySaturation(ScoringParameters parameters, double currentScore, double delta) {
         if (delta == 0) return currentScore;
 
         if (delta > 0) {
-            // Logarithmic approach to max - gets harder as we approach MAX_SCORE
-            double remaining = MAX_SCORE - currentScore;
-            double saturationFactor = (remaining / MAX_SCORE) * SATURATION_STRENGTH;
+            // Logarithmic approach to max - gets harder as we approach the max score
+            double remaining = parameters.maxScore - currentScore;
+            double saturationFactor = (remaining / parameters.maxScore) * parameters.saturationStrength;
             double saturatedDelta = delta * saturationFactor;
-            return Math.min(MAX_SCORE, currentScore + saturatedDelta);
+            return Math.min(parameters.maxScore, currentScore + saturatedDelta);
         } else {
             // Allow full negative delta effectiveness - can reach 0 (neutral)
             // Only apply minimal saturation when very close to 0 to prevent overshooting
-            double distanceFromMin = currentScore - MIN_SCORE;
+            double distanceFromMin = currentScore - parameters.minScore;
             if (distanceFromMin < 0.5) {
                 // Light saturation only in the last 0.5 points to prevent overshooting
                 double saturationFactor = Math.max(0.7, distanceFromMin / 0.5);
                 double saturatedDelta = delta * saturationFactor;
-                return Math.max(MIN_SCORE, currentScore + saturatedDelta);
+                return Math.max(parameters.minScore, currentScore + saturatedDelta);
             } else {
                 // Full effectiveness when not near minimum
-                return Math.max(MIN_SCORE, currentScore + delta);
+                return Math.max(parameters.minScore, currentScore + delta);
             }
         }
     }
@@ -1,9 +1,14 @@
 package dev.kuku.interestcalculator.UserTopicScoringSystem.TopicScorer.subSystem;
 
+import dev.kuku.interestcalculator.UserTopicScoringSystem.TopicScorer.subSystem.interactionTopicScorerSubSystem.TopicPopularityDampener;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
 @Component
+@RequiredArgsConstructor
 public class InteractionTopicScorer {
+    private final TopicPopularityDampener topicPopularityDampener;
+
     /**
      * Should return delta
      * @param userId
@@ -11,6 +16,6 @@ public class InteractionTopicScorer {
      * @return
      */
     public double scoreTopic(String userId, String t) {
-        return 1.0;
+        return topicPopularityDampener.scoreTopic(t);
     }
 }
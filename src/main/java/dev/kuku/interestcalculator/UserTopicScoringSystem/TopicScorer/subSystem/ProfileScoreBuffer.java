@@ -0,0 +1,223 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.TopicScorer.subSystem;
+
+import dev.kuku.interestcalculator.fakeDatabase.UserTopicScoreDb;
+
+import java.util.*;
+
+/**
+ * Working copy of one user's profile as parallel primitive arrays, so a batch of interactions is decayed, scored and
+ * governed in place and turned back into rows once. Slots are dense, removing one moves the last slot into it.
+ * Meant to be reused, {@link #load} drops whatever the previous user left in it.
+ * <p>
+ * Also collects the topic deltas of the interaction being applied, in arrays of their own since they may name topics
+ * the profile does not have yet.
+ */
+public final class ProfileScoreBuffer {
+    private final Map<String, Integer> slots = new HashMap<>();
+    private String[] topics = new String[64];
+    private double[] scores = new double[64];
+    private long[] updatedAt = new long[64];
+    private int size;
+    // Scratch space of keepHighest
+    private double[] sorted = new double[0];
+    // An interaction's topics and their neighbors are a few dozen at most, lookups scan instead of hashing
+    private String[] deltaTopics = new String[16];
+    private double[] deltas = new double[16];
+    private int deltaCount;
+
+    public void load(Collection<UserTopicScoreDb.UserTopicScoreRow> rows) {
+        slots.clear();
+        Arrays.fill(topics, 0, size, null);
+        size = 0;
+        clearDeltas();
+        for (UserTopicScoreDb.UserTopicScoreRow row : rows) set(row.topic, row.interestScore, row.updatedAt);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double score(int slot) {
+        return scores[slot];
+    }
+
+    public long updatedAt(int slot) {
+        return updatedAt[slot];
+    }
+
+    public void set(int slot, double score, long time) {
+        scores[slot] = score;
+        updatedAt[slot] = time;
+    }
+
+    /**
+     * @return score of the topic, 0 when the profile does not have it
+     */
+    public double scoreOf(String topic) {
+        Integer slot = slots.get(topic);
+        return slot == null ? 0.0 : scores[slot];
+    }
+
+    public boolean contains(String topic) {
+        return slots.containsKey(topic);
+    }
+
+    public void set(String topic, double score, long time) {
+        Integer slot = slots.get(topic);
+        if (slot != null) {
+            set(slot, score, time);
+            return;
+        }
+        if (size == topics.length) {
+            topics = Arrays.copyOf(topics, size * 2);
+            scores = Arrays.copyOf(scores, size * 2);
+            updatedAt = Arrays.copyOf(updatedAt, size * 2);
+        }
+        slots.put(topic, size);
+        topics[size] = topic;
+        set(size++, score, time);
+    }
+
+    /**
+     * Drops every entry whose absolute score is below minScore.
+     *
+     * @return number of dropped entries
+     */
+    public int prune(double minScore) {
+        int pruned = 0;
+        for (int slot = size - 1; slot >= 0; slot--) {
+            if (Math.abs(scores[slot]) < minScore) {
+                remove(slot);
+                pruned++;
+            }
+        }
+        return pruned;
+    }
+
+    /**
+     * Keeps the limit highest scored entries, ties at the cut are dropped in no particular order.
+     *
+     * @return number of dropped entries
+     */
+    public int keepHighest(int limit) {
+        return keepHighest(limit, Set.of());
+    }
+
+    /**
+     * Keeps the limit highest scored entries, the exempt topics are kept whatever their score unless they alone
+     * exceed the limit.
+     *
+     * @return number of dropped entries
+     */
+    public int keepHighest(int limit, Set<String> exempt) {
+        int overflow = size - limit;
+        if (overflow <= 0) return 0;
+        if (sorted.length < size) sorted = new double[topics.length];
+        int candidates = 0;
+        for (int slot = 0; slot < size; slot++) {
+            if (!exempt.contains(topics[slot])) sorted[candidates++] = scores[slot];
+        }
+        if (candidates < overflow) {
+            exempt = Set.of();
+            candidates = size;
+            System.arraycopy(scores, 0, sorted, 0, size);
+        }
+        Arrays.sort(sorted, 0, candidates);
+        double cut = sorted[overflow - 1];
+        // Everything below the cut goes, then as many entries at the cut as still needed
+        int dropAtCut = 0;
+        for (int i = overflow - 1; i >= 0 && sorted[i] == cut; i--) dropAtCut++;
+        for (int slot = size - 1; slot >= 0; slot--) {
+            if (exempt.contains(topics[slot])) continue;
+            if (scores[slot] < cut) {
+                remove(slot);
+            } else if (scores[slot] == cut && dropAtCut > 0) {
+                remove(slot);
+                dropAtCut--;
+            }
+        }
+        return overflow;
+    }
+
+    /**
+     * Adds to the topic's pending delta, deltas keep the order their topics were first added in.
+     */
+    public void addDelta(String topic, double delta) {
+        int index = deltaIndexOf(topic);
+        if (index >= 0) {
+            deltas[index] += delta;
+            return;
+        }
+        if (deltaCount == deltaTopics.length) {
+            deltaTopics = Arrays.copyOf(deltaTopics, deltaCount * 2);
+            deltas = Arrays.copyOf(deltas, deltaCount * 2);
+        }
+        deltaTopics[deltaCount] = topic;
+        deltas[deltaCount++] = delta;
+    }
+
+    public int deltaCount() {
+        return deltaCount;
+    }
+
+    public String deltaTopic(int index) {
+        return deltaTopics[index];
+    }
+
+    public double delta(int index) {
+        return deltas[index];
+    }
+
+    /**
+     * @return index of the topic's pending delta, -1 when it has none
+     */
+    public int deltaIndexOf(String topic) {
+        for (int index = 0; index < deltaCount; index++) {
+            if (deltaTopics[index].equals(topic)) return index;
+        }
+        return -1;
+    }
+
+    /**
+     * Drops the pending deltas from the index on whose absolute value is below minDelta, the rest keep their order.
+     */
+    public void dropDeltasBelow(int from, double minDelta) {
+        int kept = from;
+        for (int index = from; index < deltaCount; index++) {
+            if (Math.abs(deltas[index]) < minDelta) continue;
+            deltaTopics[kept] = deltaTopics[index];
+            deltas[kept++] = deltas[index];
+        }
+        Arrays.fill(deltaTopics, kept, deltaCount, null);
+        deltaCount = kept;
+    }
+
+    public void clearDeltas() {
+        Arrays.fill(deltaTopics, 0, deltaCount, null);
+        deltaCount = 0;
+    }
+
+    /**
+     * Fresh rows of every entry, the buffer stays as it is.
+     */
+    public List<UserTopicScoreDb.UserTopicScoreRow> toRows(String userId) {
+        List<UserTopicScoreDb.UserTopicScoreRow> rows = new ArrayList<>(size);
+        for (int slot = 0; slot < size; slot++) {
+            rows.add(new UserTopicScoreDb.UserTopicScoreRow(userId, topics[slot], scores[slot], updatedAt[slot]));
+        }
+        return rows;
+    }
+
+    // Iterating slots downwards stays correct, the moved slot was already visited
+    private void remove(int slot) {
+        int last = --size;
+        slots.remove(topics[slot]);
+        if (slot != last) {
+            topics[slot] = topics[last];
+            scores[slot] = scores[last];
+            updatedAt[slot] = updatedAt[last];
+            slots.put(topics[slot], slot);
+        }
+        topics[last] = null;
+    }
+}
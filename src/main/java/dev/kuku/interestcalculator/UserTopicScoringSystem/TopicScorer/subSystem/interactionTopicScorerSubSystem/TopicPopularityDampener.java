@@ -0,0 +1,44 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.TopicScorer.subSystem.interactionTopicScorerSubSystem;
+
+import dev.kuku.interestcalculator.TrendingSystem.TrendingTopicAggregator;
+import dev.kuku.interestcalculator.TrendingSystem.TrendingWindow;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ScoringParameters.ScoringParameterRegistry;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ScoringParameters.ScoringParameters;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * IDF style dampener. Interacting with a topic everyone interacted with in the last day says less about the user
+ * than interacting with a niche one, so the multiplier shrinks towards the dampener's minimum multiplier the larger
+ * the topic's share of the day's interactions is. Below the minimum number of interactions in the window the
+ * statistics are too noisy to dampen anything. Both come from the base scoring parameters, popularity is not per user.
+ * <p>
+ * Off unless {@code scoring.popularity-dampening.enabled} is set, it changes every score once a day is busy enough.
+ */
+@Component
+public class TopicPopularityDampener {
+    private final TrendingTopicAggregator trendingTopicAggregator;
+    private final ScoringParameterRegistry scoringParameterRegistry;
+    private final boolean enabled;
+
+    public TopicPopularityDampener(TrendingTopicAggregator trendingTopicAggregator, ScoringParameterRegistry scoringParameterRegistry,
+                                   @Value("${scoring.popularity-dampening.enabled:false}") boolean enabled) {
+        this.trendingTopicAggregator = trendingTopicAggregator;
+        this.scoringParameterRegistry = scoringParameterRegistry;
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return multiplier in [minimum multiplier, 1], always 1 while dampening is disabled
+     */
+    public double scoreTopic(String topic) {
+        if (!enabled) return 1.0;
+        ScoringParameters parameters = scoringParameterRegistry.getDefaults();
+        long total = trendingTopicAggregator.getTotalCount(TrendingWindow.LAST_DAY);
+        if (total < parameters.dampenerMinWindowInteractions) return 1.0;
+        int topicCount = trendingTopicAggregator.getTopicCount(topic, TrendingWindow.LAST_DAY);
+        double idf = Math.log((1.0 + total) / (1.0 + topicCount));
+        double maxIdf = Math.log(1.0 + total);
+        return parameters.dampenerMinMultiplier + (1.0 - parameters.dampenerMinMultiplier) * (idf / maxIdf);
+    }
+}
@@ -1,22 +1,62 @@
 package dev.kuku.interestcalculator.UserTopicScoringSystem;
 
-import dev.kuku.interestcalculator.UserTopicScoringSystem.TopicDecayer.UserTopicsScoreDecayer;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.TopicDecayer.subSystem.TopicScoreTemporalExponentialDecayer;
 import dev.kuku.interestcalculator.UserTopicScoringSystem.TopicScorer.UserTopicInteractionScorer;
 import dev.kuku.interestcalculator.fakeDatabase.UserInteractionsDb;
+import dev.kuku.interestcalculator.util.StripedUserLock;
+import dev.kuku.interestcalculator.util.TimeProvider;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.Set;
+
 /**
  * Decays existing topic scores and calculates new ones.
+ * Content topics are resolved first, without the lock, since tagging may wait on the LLM. The read, decay, saturate
+ * and write sequence then runs under the user's lock stripe so concurrent interactions of one user are applied one
+ * after another, while other users are not blocked. A batch of interactions of one user
+ * costs one read and one write of the profile, the same as a single one.
+ * <p>
+ * The interaction is logged in the same locked section, on the node owning the user. Any interaction reflected in
+ * the user's scores is therefore also in the log, which is what a profile rebuild replays.
  */
 @Service
 @RequiredArgsConstructor
 public class UserTopicScoringSystem {
     private final UserTopicInteractionScorer userTopicInteractionScorer;
-    private final UserTopicsScoreDecayer userTopicsScoreDecayer;
+    private final StripedUserLock stripedUserLock;
+    private final UserInteractionsDb userInteractionsDb;
+    private final TopicScoreTemporalExponentialDecayer exponentialDecayer;
+    private final TimeProvider timeProvider;
 
     public void updateUserTopicScores(String userId, UserInteractionsDb.UserInteractionRow interaction) {
-        userTopicsScoreDecayer.decayScore(userId);
-        userTopicInteractionScorer.scoreInteraction(userId, interaction);
+        updateUserTopicScores(userId, List.of(interaction));
+    }
+
+    /**
+     * Scores and logs interactions of one user in order, as one locked section after their topics are resolved.
+     */
+    public void updateUserTopicScores(String userId, List<UserInteractionsDb.UserInteractionRow> interactions) {
+        List<Set<String>> topicsOfInteractions = userTopicInteractionScorer.resolveTopics(interactions);
+        stripedUserLock.withLock(userId, () -> {
+            userTopicInteractionScorer.scoreInteractions(userId, interactions, topicsOfInteractions);
+            for (UserInteractionsDb.UserInteractionRow interaction : interactions) {
+                userInteractionsDb.addInteraction(userId, interaction.contentId, interaction.contentDiscovery,
+                        interaction.interactionType, interaction.interactionTime);
+            }
+        });
+    }
+
+    /**
+     * Scores an interaction that was logged earlier but deferred because its content had no topics yet. Its delta
+     * is scaled by the decay since the interaction happened, so it counts about as much as it would by now had it
+     * been scored on time. It is already in the log and not logged again.
+     */
+    public void applyDeferredInteraction(String userId, Set<String> topics, UserInteractionsDb.UserInteractionRow interaction) {
+        stripedUserLock.withLock(userId, () -> {
+            double weight = exponentialDecayer.decayFactor(userId, interaction.interactionTime, timeProvider.nowMillis());
+            userTopicInteractionScorer.scoreTaggedInteraction(userId, topics, interaction, weight);
+        });
     }
 }
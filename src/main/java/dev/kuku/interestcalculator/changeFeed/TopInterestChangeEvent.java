@@ -0,0 +1,16 @@
+package dev.kuku.interestcalculator.changeFeed;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @param offset       position in the change feed, consumers resume from offset + 1
+ * @param topTopics    user's current top topics, highest score first
+ * @param enteredTopK  topics that were not part of the previously emitted top K
+ * @param leftTopK     topics that dropped out of the previously emitted top K
+ */
+public record TopInterestChangeEvent(long offset, String userId, long emittedAt, List<TopicScore> topTopics,
+                                     Set<String> enteredTopK, Set<String> leftTopK) {
+    public record TopicScore(String topic, double score) {
+    }
+}
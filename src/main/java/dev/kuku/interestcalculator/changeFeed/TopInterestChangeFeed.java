@@ -0,0 +1,161 @@
+package dev.kuku.interestcalculator.changeFeed;
+
+import dev.kuku.interestcalculator.fakeDatabase.UserTopicScoreDb;
+import dev.kuku.interestcalculator.util.TimeProvider;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Change data capture for user interest profiles.
+ * Score writes only mark a user as dirty. After a short coalescing window the user's profile is compared against
+ * what was last emitted for them, and an event is appended to an offset addressed log only if the top K topics
+ * changed membership or one of them moved by at least {@link #SCORE_CHANGE_THRESHOLD}.
+ * <p>
+ * What was last emitted is only remembered for the most recently changed users. A user forgotten since then gets a
+ * full event with every top topic entered on their next change.
+ */
+@Slf4j
+@Component
+public class TopInterestChangeFeed {
+    private static final int TOP_K = 10;
+    private static final double SCORE_CHANGE_THRESHOLD = 0.5;
+    private static final long COALESCE_WINDOW_MILLIS = 200;
+    // Older events are dropped, consumers resuming from before the retained range restart at the oldest event
+    private static final int MAX_RETAINED_EVENTS = 10_000;
+
+    private final UserTopicScoreDb userTopicScoreDb;
+    private final TimeProvider timeProvider;
+    private final ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "top-interest-change-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Set<String> pendingUsers = ConcurrentHashMap.newKeySet();
+    // Only touched by the flush thread, least recently changed users first
+    private final LinkedHashMap<String, Map<String, Double>> lastEmittedTopK = new LinkedHashMap<>(16, 0.75f, true);
+    private final int trackedUsers;
+    private final ArrayDeque<TopInterestChangeEvent> events = new ArrayDeque<>();
+    private final List<Consumer<TopInterestChangeEvent>> subscribers = new CopyOnWriteArrayList<>();
+    private long nextOffset = 0;
+
+    /**
+     * @param trackedUsers users whose last emitted top K is remembered
+     */
+    public TopInterestChangeFeed(UserTopicScoreDb userTopicScoreDb, TimeProvider timeProvider,
+                                 @Value("${changefeed.tracked-users:100000}") int trackedUsers) {
+        this.userTopicScoreDb = userTopicScoreDb;
+        this.timeProvider = timeProvider;
+        this.trackedUsers = trackedUsers;
+    }
+
+    @EventListener
+    public void onTopicScoresUpdated(UserTopicScoreDb.TopicScoresUpdatedEvent event) {
+        // First write in the window schedules the flush, the rest of the burst is absorbed by the pending set
+        if (pendingUsers.add(event.userId())) {
+            flushExecutor.schedule(() -> flush(event.userId()), COALESCE_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush(String userId) {
+        try {
+            pendingUsers.remove(userId);
+            Map<String, Double> currentTopK = new LinkedHashMap<>();
+            userTopicScoreDb.getUserTopicScores(userId).stream()
+                    .sorted(Comparator.comparingDouble((UserTopicScoreDb.UserTopicScoreRow row) -> row.interestScore).reversed())
+                    .limit(TOP_K)
+                    .forEach(row -> currentTopK.put(row.topic, row.interestScore));
+            Map<String, Double> previousTopK = lastEmittedTopK.getOrDefault(userId, Map.of());
+            if (!isMeaningfulChange(previousTopK, currentTopK)) return;
+
+            Set<String> entered = new LinkedHashSet<>(currentTopK.keySet());
+            entered.removeAll(previousTopK.keySet());
+            Set<String> left = new LinkedHashSet<>(previousTopK.keySet());
+            left.removeAll(currentTopK.keySet());
+            lastEmittedTopK.put(userId, currentTopK);
+            if (lastEmittedTopK.size() > trackedUsers) {
+                Iterator<String> eldest = lastEmittedTopK.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+            append(userId, currentTopK, entered, left);
+        } catch (Exception e) {
+            log.error("Failed to flush top interest changes of {}", userId, e);
+        }
+    }
+
+    private static boolean isMeaningfulChange(Map<String, Double> previous, Map<String, Double> current) {
+        if (!previous.keySet().equals(current.keySet())) return true;
+        for (Map.Entry<String, Double> entry : current.entrySet()) {
+            if (Math.abs(entry.getValue() - previous.get(entry.getKey())) >= SCORE_CHANGE_THRESHOLD) return true;
+        }
+        return false;
+    }
+
+    private void append(String userId, Map<String, Double> topK, Set<String> entered, Set<String> left) {
+        TopInterestChangeEvent event;
+        synchronized (events) {
+            List<TopInterestChangeEvent.TopicScore> topTopics = topK.entrySet().stream()
+                    .map(e -> new TopInterestChangeEvent.TopicScore(e.getKey(), e.getValue()))
+                    .toList();
+            event = new TopInterestChangeEvent(nextOffset++, userId, timeProvider.nowMillis(), topTopics, entered, left);
+            events.addLast(event);
+            if (events.size() > MAX_RETAINED_EVENTS) events.removeFirst();
+        }
+        log.debug("Emitting top interest change {}", event);
+        for (Consumer<TopInterestChangeEvent> subscriber : subscribers) {
+            subscriber.accept(event);
+        }
+    }
+
+    /**
+     * @param fromOffset first offset the consumer has not seen yet
+     * @return up to maxEvents events starting at fromOffset, or at the oldest retained event if fromOffset was dropped
+     */
+    public List<TopInterestChangeEvent> read(long fromOffset, int maxEvents) {
+        synchronized (events) {
+            List<TopInterestChangeEvent> result = new ArrayList<>();
+            if (events.isEmpty() || fromOffset >= nextOffset) return result;
+            long firstOffset = events.peekFirst().offset();
+            int skip = (int) Math.max(0, fromOffset - firstOffset);
+            Iterator<TopInterestChangeEvent> iterator = events.iterator();
+            for (int i = 0; i < skip; i++) iterator.next();
+            while (iterator.hasNext() && result.size() < maxEvents) {
+                result.add(iterator.next());
+            }
+            return result;
+        }
+    }
+
+    public long getNextOffset() {
+        synchronized (events) {
+            return nextOffset;
+        }
+    }
+
+    /**
+     * Live events are delivered on the feed's flush thread, so subscribers must not block.
+     */
+    public void subscribe(Consumer<TopInterestChangeEvent> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(Consumer<TopInterestChangeEvent> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        flushExecutor.shutdownNow();
+    }
+}
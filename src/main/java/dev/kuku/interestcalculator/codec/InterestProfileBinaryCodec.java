@@ -0,0 +1,186 @@
+package dev.kuku.interestcalculator.codec;
+
+import dev.kuku.interestcalculator.fakeDatabase.TopicDb;
+import dev.kuku.interestcalculator.fakeDatabase.UserTopicScoreDb;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of a user's interest profile.
+ * <pre>
+ * byte    format version
+ * varint  userId length, utf-8 userId bytes
+ * varint  dictionary delta entry count
+ *         per entry: varint topicId, varint name length, utf-8 name bytes
+ * varint  score count
+ *         per entry: varint topicId, float32 score (big endian)
+ * </pre>
+ * The dictionary delta carries every topic the client does not know yet, ids from the dictionary version the client
+ * sent up to the returned {@link EncodedProfile#dictionaryVersion()}, whether this profile references them or not.
+ * A client that keeps what it received and sends the returned version back therefore always holds every name below
+ * it, and once warmed up receives ids and floats only.
+ */
+public final class InterestProfileBinaryCodec {
+    public static final String MEDIA_TYPE_VALUE = "application/vnd.kuku.interest-profile";
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+    public static final String DICTIONARY_VERSION_HEADER = "X-Topic-Dictionary-Version";
+    public static final byte FORMAT_VERSION = 1;
+
+    private InterestProfileBinaryCodec() {
+    }
+
+    /**
+     * Resolves topic ids and pre-encodes strings so the size is known before writing and encoding is a single pass
+     * over primitive arrays into a buffer of exactly that size.
+     */
+    public static EncodedProfile prepare(String userId, List<UserTopicScoreDb.UserTopicScoreRow> rows, TopicDb topicDb, int knownTopicCount) {
+        int[] topicIds = new int[rows.size()];
+        float[] scores = new float[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            UserTopicScoreDb.UserTopicScoreRow row = rows.get(i);
+            int id = topicDb.getTopicId(row.topic);
+            // Scored topics got their id when their content was indexed, creating one here is only a fallback
+            if (id < 0) id = topicDb.getOrCreateTopicId(row.topic);
+            topicIds[i] = id;
+            scores[i] = (float) row.interestScore;
+        }
+        // Read after resolving the profile's ids, ids are dense so every one of them is below it
+        int dictionaryVersion = topicDb.getTopicIdCount();
+        int from = Math.max(0, Math.min(knownTopicCount, dictionaryVersion));
+        int[] dictionaryIds = new int[dictionaryVersion - from];
+        byte[][] dictionaryNames = new byte[dictionaryIds.length][];
+        for (int i = 0; i < dictionaryIds.length; i++) {
+            dictionaryIds[i] = from + i;
+            dictionaryNames[i] = topicDb.getTopicById(from + i).getBytes(StandardCharsets.UTF_8);
+        }
+        return new EncodedProfile(userId.getBytes(StandardCharsets.UTF_8), dictionaryVersion, dictionaryIds, dictionaryNames, topicIds, scores);
+    }
+
+    public static DecodedProfile decode(byte[] data) {
+        Reader reader = new Reader(data);
+        byte version = data[reader.pos++];
+        if (version != FORMAT_VERSION) throw new IllegalArgumentException("Unsupported profile format version " + version);
+        String userId = reader.readString();
+        int dictionaryCount = reader.readVarInt();
+        Map<Integer, String> dictionary = new HashMap<>(dictionaryCount * 2);
+        for (int i = 0; i < dictionaryCount; i++) {
+            int id = reader.readVarInt();
+            dictionary.put(id, reader.readString());
+        }
+        int scoreCount = reader.readVarInt();
+        int[] topicIds = new int[scoreCount];
+        float[] scores = new float[scoreCount];
+        for (int i = 0; i < scoreCount; i++) {
+            topicIds[i] = reader.readVarInt();
+            scores[i] = Float.intBitsToFloat(reader.readInt());
+        }
+        return new DecodedProfile(userId, dictionary, topicIds, scores);
+    }
+
+    static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    static void writeVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * @param dictionaryVersion sent back in the dictionary version header, not part of the payload
+     */
+    public record EncodedProfile(byte[] userId, int dictionaryVersion, int[] dictionaryIds, byte[][] dictionaryNames,
+                                 int[] topicIds, float[] scores) {
+        public int size() {
+            int size = 1 + varIntSize(userId.length) + userId.length;
+            size += varIntSize(dictionaryIds.length);
+            for (int i = 0; i < dictionaryIds.length; i++) {
+                size += varIntSize(dictionaryIds[i]) + varIntSize(dictionaryNames[i].length) + dictionaryNames[i].length;
+            }
+            size += varIntSize(topicIds.length);
+            for (int topicId : topicIds) {
+                size += varIntSize(topicId) + Float.BYTES;
+            }
+            return size;
+        }
+
+        public byte[] encode() {
+            // Big endian by default, as the format wants its floats
+            ByteBuffer buffer = ByteBuffer.allocate(size());
+            buffer.put(FORMAT_VERSION);
+            writeVarInt(buffer, userId.length);
+            buffer.put(userId);
+            writeVarInt(buffer, dictionaryIds.length);
+            for (int i = 0; i < dictionaryIds.length; i++) {
+                writeVarInt(buffer, dictionaryIds[i]);
+                writeVarInt(buffer, dictionaryNames[i].length);
+                buffer.put(dictionaryNames[i]);
+            }
+            writeVarInt(buffer, topicIds.length);
+            for (int i = 0; i < topicIds.length; i++) {
+                writeVarInt(buffer, topicIds[i]);
+                buffer.putFloat(scores[i]);
+            }
+            return buffer.array();
+        }
+
+        /**
+         * Encodes the whole payload first and hands it to the stream in one write.
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            out.write(encode());
+        }
+    }
+
+    public record DecodedProfile(String userId, Map<Integer, String> dictionary, int[] topicIds, float[] scores) {
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int pos;
+
+        private Reader(byte[] data) {
+            this.data = data;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        private int readInt() {
+            int value = ((data[pos] & 0xFF) << 24) | ((data[pos + 1] & 0xFF) << 16) | ((data[pos + 2] & 0xFF) << 8) | (data[pos + 3] & 0xFF);
+            pos += 4;
+            return value;
+        }
+
+        private String readString() {
+            int length = readVarInt();
+            String value = new String(data, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package dev.kuku.interestcalculator.codec;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Writes {@link InterestProfileBinaryCodec.EncodedProfile} straight into the response body.
+ * Picked up by Spring Boot's converter list and selected when the client asks for
+ * {@link InterestProfileBinaryCodec#MEDIA_TYPE_VALUE} in its Accept header.
+ */
+@Component
+public class InterestProfileBinaryMessageConverter extends AbstractHttpMessageConverter<InterestProfileBinaryCodec.EncodedProfile> {
+
+    public InterestProfileBinaryMessageConverter() {
+        super(InterestProfileBinaryCodec.MEDIA_TYPE);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return InterestProfileBinaryCodec.EncodedProfile.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected InterestProfileBinaryCodec.EncodedProfile readInternal(Class<? extends InterestProfileBinaryCodec.EncodedProfile> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Interest profiles are write only", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(InterestProfileBinaryCodec.EncodedProfile profile, MediaType contentType) {
+        return (long) profile.size();
+    }
+
+    @Override
+    protected void writeInternal(InterestProfileBinaryCodec.EncodedProfile profile, HttpOutputMessage outputMessage) throws IOException {
+        profile.writeTo(outputMessage.getBody());
+    }
+}
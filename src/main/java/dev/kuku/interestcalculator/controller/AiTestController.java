@@ -1,8 +1,11 @@
 package dev.kuku.interestcalculator.controller;
 
-import dev.kuku.interestcalculator.services.LLMService;
+import dev.kuku.interestcalculator.services.ResilientTopicExtractor;
+import dev.kuku.interestcalculator.services.TopicExtractionException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -14,10 +17,10 @@ import java.util.stream.Collectors;
 @RestController
 @RequiredArgsConstructor
 public class AiTestController {
-    private final LLMService llmService;
+    private final ResilientTopicExtractor topicExtractor;
 
     @GetMapping(value = "/", produces = MediaType.APPLICATION_JSON_VALUE)
-    public Set<String> test(
+    public ResponseEntity<Set<String>> test(
             @RequestParam(required = false, defaultValue = "") String existingTopics,
             @RequestParam String content) {
 
@@ -29,7 +32,11 @@ public class AiTestController {
                         .filter(t -> !t.isEmpty())
                         .collect(Collectors.toSet());
 
-        // Call LLM service to extract topics
-        return llmService.getTopics(topicsList, content);
+        // Call LLM service to extract topics, behind the same bulkhead and circuit breaker as tagging
+        try {
+            return ResponseEntity.ok(topicExtractor.getTopics(topicsList, content));
+        } catch (TopicExtractionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package dev.kuku.interestcalculator.controller;
+
+import dev.kuku.interestcalculator.ContentRankingSystem.ContentRelevanceRanker;
+import dev.kuku.interestcalculator.ContentRankingSystem.RankedContent;
+import dev.kuku.interestcalculator.sharding.ShardRouter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*")
+public class ContentRecommendationController {
+    private static final int MAX_LIMIT = 100;
+    private final ContentRelevanceRanker contentRelevanceRanker;
+    private final ShardRouter shardRouter;
+
+    @GetMapping("/api/recommendations/{userId}")
+    public ResponseEntity<List<RankedContent>> recommend(
+            @PathVariable("userId") String userId,
+            @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        try {
+            var profile = shardRouter.getUserTopicScores(userId);
+            return ResponseEntity.ok(contentRelevanceRanker.rank(profile, Math.min(limit, MAX_LIMIT)));
+        } catch (Exception e) {
+            log.error("Error while ranking content", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package dev.kuku.interestcalculator.controller;
+
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ProfileRebuild.ProfileRebuildJob;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class ProfileRebuildController {
+    private final ProfileRebuildJob profileRebuildJob;
+
+    /**
+     * Starts a rebuild of every profile from the interaction log, or resumes an interrupted one.
+     * Refused while no {@code profiles.cold-dir} is configured, or on a sharded node.
+     */
+    @PostMapping("/api/rebuild")
+    public ResponseEntity<ProfileRebuildJob.RebuildStatus> startRebuild() {
+        try {
+            if (!profileRebuildJob.start()) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(profileRebuildJob.getStatus());
+            }
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.accepted().body(profileRebuildJob.getStatus());
+    }
+
+    @GetMapping("/api/rebuild")
+    public ResponseEntity<ProfileRebuildJob.RebuildStatus> getRebuildStatus() {
+        return ResponseEntity.ok(profileRebuildJob.getStatus());
+    }
+}
@@ -0,0 +1,25 @@
+package dev.kuku.interestcalculator.controller;
+
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ProfileGovernor.ProfileSizeGovernor;
+import dev.kuku.interestcalculator.fakeDatabase.UserTopicScoreDb;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class ProfileStatsController {
+    private final UserTopicScoreDb userTopicScoreDb;
+    private final ProfileSizeGovernor profileSizeGovernor;
+
+    /**
+     * Topics per user across this node's profiles, hot and cold.
+     */
+    @GetMapping("/api/profileSizes")
+    public ResponseEntity<ProfileSizeGovernor.ProfileSizeDistribution> getProfileSizes() {
+        return ResponseEntity.ok(profileSizeGovernor.describe(userTopicScoreDb.getProfileSizes()));
+    }
+}
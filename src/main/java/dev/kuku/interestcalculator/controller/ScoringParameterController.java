@@ -0,0 +1,38 @@
+package dev.kuku.interestcalculator.controller;
+
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ScoringParameters.ScoringParameterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class ScoringParameterController {
+    private final ScoringParameterRegistry scoringParameterRegistry;
+
+    @GetMapping("/api/scoring")
+    public ResponseEntity<ScoringParameterRegistry.RegistryStatus> getScoringParameters() {
+        return ResponseEntity.ok(scoringParameterRegistry.getStatus());
+    }
+
+    /**
+     * Cohort and parameters the user is currently scored with.
+     */
+    @GetMapping("/api/scoring/{userId}")
+    public ResponseEntity<ScoringParameterRegistry.UserParameters> getUserScoringParameters(@PathVariable String userId) {
+        return ResponseEntity.ok(scoringParameterRegistry.describeUser(userId));
+    }
+
+    /**
+     * Reloads the parameters file now instead of waiting for the next poll.
+     */
+    @PostMapping("/api/scoring/reload")
+    public ResponseEntity<?> reloadScoringParameters() {
+        try {
+            return ResponseEntity.ok(scoringParameterRegistry.reload());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package dev.kuku.interestcalculator.controller;
+
+import dev.kuku.interestcalculator.UserTopicScoringSystem.UserTopicScoringSystem;
+import dev.kuku.interestcalculator.dto.ShardInteraction;
+import dev.kuku.interestcalculator.dto.ShardTopicScore;
+import dev.kuku.interestcalculator.fakeDatabase.UserTopicScoreDb;
+import dev.kuku.interestcalculator.sharding.ShardRouter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Node to node endpoints. Calls under /internal/shard/userScore and /internal/shard/interaction act on this node's
+ * local state, routing already happened on the calling node. A user this node does not own is answered with 409, the
+ * caller's ring is out of date. Moves send the ring the user moves onto as {@code ring}, the old owner exports and
+ * deletes, and the new owner imports, by that ring instead of its own. Callers must send the shared shard token, see
+ * {@link dev.kuku.interestcalculator.filter.ShardTokenFilter}.
+ * <p>
+ * Membership: start the new node with shard.peers listing the current nodes, then register it on one existing node
+ * with rebalance=true (that node moves the affected users) and on the remaining nodes with rebalance=false. A join
+ * answering 409 moved only part of the users, the rest stay on their old node until /internal/shard/rebalance succeeds.
+ */
+@RestController
+@RequiredArgsConstructor
+@Slf4j
+public class ShardController {
+    private final UserTopicScoringSystem userTopicScoringSystem;
+    private final UserTopicScoreDb userTopicScoreDb;
+    private final ShardRouter shardRouter;
+
+    @PostMapping("/internal/shard/interaction")
+    public ResponseEntity<Void> interact(@RequestBody ShardInteraction interaction) {
+        Optional<Boolean> scored = shardRouter.ifLocalOwner(interaction.userId(), () -> {
+            userTopicScoringSystem.updateUserTopicScores(interaction.userId(), interaction.toRow());
+            return true;
+        });
+        return scored.isPresent() ? ResponseEntity.ok().build() : notOwner(interaction.userId());
+    }
+
+    /**
+     * @param ring nodes of the ring a move takes the user onto, absent for a plain read
+     */
+    @GetMapping("/internal/shard/userScore/{userId}")
+    public ResponseEntity<List<ShardTopicScore>> getUserScore(@PathVariable("userId") String userId,
+                                                              @RequestParam(value = "ring", required = false) Set<String> ring) {
+        Supplier<List<ShardTopicScore>> read = () -> ShardTopicScore.from(userTopicScoreDb.getUserTopicScores(userId));
+        Optional<List<ShardTopicScore>> scores = ring == null
+                ? shardRouter.ifLocalOwner(userId, read)
+                : shardRouter.ifMovingAway(userId, ring, read);
+        return scores.map(ResponseEntity::ok).orElseGet(() -> notOwner(userId));
+    }
+
+    @PutMapping("/internal/shard/userScore/{userId}")
+    public ResponseEntity<Void> importUser(@PathVariable("userId") String userId, @RequestParam("ring") Set<String> ring,
+                                           @RequestBody List<ShardTopicScore> scores) {
+        boolean imported = shardRouter.adoptUser(userId, ring,
+                () -> userTopicScoreDb.putUserTopicScores(userId, ShardTopicScore.toRows(userId, scores)));
+        return imported ? ResponseEntity.ok().build() : notOwner(userId);
+    }
+
+    @DeleteMapping("/internal/shard/userScore/{userId}")
+    public ResponseEntity<Void> deleteUser(@PathVariable("userId") String userId, @RequestParam("ring") Set<String> ring) {
+        boolean deleted = shardRouter.releaseUser(userId, ring, () -> userTopicScoreDb.removeUserTopicScores(userId));
+        return deleted ? ResponseEntity.ok().build() : notOwner(userId);
+    }
+
+    private static <T> ResponseEntity<T> notOwner(String userId) {
+        log.warn("Refused a shard call for user {} owned by another node", userId);
+        return ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+
+    @GetMapping("/internal/shard/users")
+    public ResponseEntity<Set<String>> getUserIds() {
+        return ResponseEntity.ok(userTopicScoreDb.getUserIds());
+    }
+
+    @GetMapping("/internal/shard/nodes")
+    public ResponseEntity<Set<String>> getNodes() {
+        return ResponseEntity.ok(shardRouter.getNodeIds());
+    }
+
+    @PostMapping("/internal/shard/nodes")
+    public ResponseEntity<Set<String>> join(
+            @RequestParam("nodeId") String nodeId,
+            @RequestParam("baseUrl") String baseUrl,
+            @RequestParam(value = "rebalance", defaultValue = "true") boolean rebalance) {
+        try {
+            shardRouter.addNode(shardRouter.remoteNode(nodeId, baseUrl), rebalance);
+            return ResponseEntity.ok(shardRouter.getNodeIds());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    /**
+     * Finishes a membership change that could not move every user, see {@link ShardRouter#resumeRebalance()}.
+     */
+    @PostMapping("/internal/shard/rebalance")
+    public ResponseEntity<Set<String>> resumeRebalance() {
+        try {
+            shardRouter.resumeRebalance();
+            return ResponseEntity.ok(shardRouter.getNodeIds());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    @DeleteMapping("/internal/shard/nodes/{nodeId}")
+    public ResponseEntity<Set<String>> leave(
+            @PathVariable("nodeId") String nodeId,
+            @RequestParam(value = "rebalance", defaultValue = "true") boolean rebalance) {
+        try {
+            shardRouter.removeNode(nodeId, rebalance);
+            return ResponseEntity.ok(shardRouter.getNodeIds());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
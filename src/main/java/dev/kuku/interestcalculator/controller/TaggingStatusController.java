@@ -0,0 +1,28 @@
+package dev.kuku.interestcalculator.controller;
+
+import dev.kuku.interestcalculator.UserTopicScoringSystem.DeferredTagging.DeferredTaggingQueue;
+import dev.kuku.interestcalculator.services.ResilientTopicExtractor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class TaggingStatusController {
+    private final ResilientTopicExtractor topicExtractor;
+    private final DeferredTaggingQueue deferredTaggingQueue;
+
+    /**
+     * Circuit breaker, bulkhead and timeout state of the LLM, and the interactions waiting for their content's topics.
+     */
+    @GetMapping("/api/tagging")
+    public ResponseEntity<TaggingStatus> getTaggingStatus() {
+        return ResponseEntity.ok(new TaggingStatus(topicExtractor.getStatus(), deferredTaggingQueue.getStats()));
+    }
+
+    public record TaggingStatus(ResilientTopicExtractor.ExtractorStatus extractor, DeferredTaggingQueue.QueueStats deferred) {
+    }
+}
@@ -0,0 +1,179 @@
+package dev.kuku.interestcalculator.controller;
+
+import dev.kuku.interestcalculator.changeFeed.TopInterestChangeEvent;
+import dev.kuku.interestcalculator.changeFeed.TopInterestChangeFeed;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Lets downstream recommenders follow top interest changes instead of polling every user's score.
+ * Both endpoints resume from an offset: the long poll takes it as a parameter, the event stream honours
+ * the standard Last-Event-ID header on reconnect.
+ * <p>
+ * Event streams are written by a small pool of sender threads, the feed only queues live events for them. A
+ * subscriber whose queue is full is too slow to keep up and is disconnected, it resumes from its Last-Event-ID.
+ */
+@RestController
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*")
+public class TopInterestChangeController {
+    private static final int MAX_BATCH_SIZE = 500;
+    // Live events a stream subscriber may have queued before it is disconnected
+    private static final int MAX_QUEUED_EVENTS = 1_000;
+    private static final int STREAM_SENDERS = 4;
+    private final TopInterestChangeFeed topInterestChangeFeed;
+    private final ExecutorService streamSenders = Executors.newFixedThreadPool(STREAM_SENDERS, r -> {
+        Thread thread = new Thread(r, "top-interest-change-stream");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @GetMapping("/api/userScoreChanges")
+    public DeferredResult<ResponseEntity<ChangeBatch>> poll(
+            @RequestParam(value = "offset", defaultValue = "0") long offset,
+            @RequestParam(value = "limit", defaultValue = "100") int limit,
+            @RequestParam(value = "timeoutMs", defaultValue = "30000") long timeoutMs) {
+        int batchSize = Math.max(1, Math.min(limit, MAX_BATCH_SIZE));
+        DeferredResult<ResponseEntity<ChangeBatch>> result = new DeferredResult<>(timeoutMs,
+                () -> ResponseEntity.ok(new ChangeBatch(List.of(), offset)));
+        if (completeIfAvailable(result, offset, batchSize)) return result;
+
+        Consumer<TopInterestChangeEvent> waiter = event -> completeIfAvailable(result, offset, batchSize);
+        topInterestChangeFeed.subscribe(waiter);
+        result.onCompletion(() -> topInterestChangeFeed.unsubscribe(waiter));
+        // An event may have been appended between the first read and subscribing
+        completeIfAvailable(result, offset, batchSize);
+        return result;
+    }
+
+    private boolean completeIfAvailable(DeferredResult<ResponseEntity<ChangeBatch>> result, long offset, int batchSize) {
+        List<TopInterestChangeEvent> events = topInterestChangeFeed.read(offset, batchSize);
+        if (events.isEmpty()) return false;
+        result.setResult(ResponseEntity.ok(new ChangeBatch(events, events.get(events.size() - 1).offset() + 1)));
+        return true;
+    }
+
+    @GetMapping(value = "/api/userScoreChanges/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+            @RequestParam(value = "offset", required = false) Long offset) {
+        long startOffset = lastEventId != null ? lastEventId + 1
+                : offset != null ? offset : topInterestChangeFeed.getNextOffset();
+        SseEmitter emitter = new SseEmitter(0L);
+        StreamCursor cursor = new StreamCursor(emitter, startOffset);
+        Consumer<TopInterestChangeEvent> subscriber = cursor::offer;
+        topInterestChangeFeed.subscribe(subscriber);
+        Runnable unsubscribe = () -> topInterestChangeFeed.unsubscribe(subscriber);
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(e -> unsubscribe.run());
+        // Subscribed first, the replayed backlog then reaches at least the first queued live event
+        cursor.schedule();
+        return emitter;
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        streamSenders.shutdownNow();
+    }
+
+    public record ChangeBatch(List<TopInterestChangeEvent> events, long nextOffset) {
+    }
+
+    /**
+     * Replays the log from the requested offset, then sends the queued live events, skipping those the replay
+     * already sent. At most one sender thread drains a cursor at a time.
+     */
+    private final class StreamCursor {
+        private final SseEmitter emitter;
+        private final BlockingQueue<TopInterestChangeEvent> live = new ArrayBlockingQueue<>(MAX_QUEUED_EVENTS);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean overflowed;
+        // Only touched by the draining sender thread
+        private long nextOffset;
+        private boolean replayed;
+        private boolean closed;
+
+        private StreamCursor(SseEmitter emitter, long nextOffset) {
+            this.emitter = emitter;
+            this.nextOffset = nextOffset;
+        }
+
+        // Runs on the feed's flush thread, must not block
+        private void offer(TopInterestChangeEvent event) {
+            if (!live.offer(event)) overflowed = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (!scheduled.compareAndSet(false, true)) return;
+            try {
+                streamSenders.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+                scheduled.set(false);
+            }
+        }
+
+        private void drain() {
+            do {
+                send();
+                scheduled.set(false);
+                // An event queued after the last poll and before the flag was cleared found the cursor scheduled
+            } while (!closed && (overflowed || !live.isEmpty()) && scheduled.compareAndSet(false, true));
+        }
+
+        private void send() {
+            if (closed) return;
+            try {
+                if (overflowed) {
+                    log.debug("Disconnecting top interest change stream at offset {}, it fell {} events behind", nextOffset, MAX_QUEUED_EVENTS);
+                    closed = true;
+                    live.clear();
+                    emitter.complete();
+                    return;
+                }
+                if (!replayed) {
+                    List<TopInterestChangeEvent> events;
+                    while (!(events = topInterestChangeFeed.read(nextOffset, MAX_BATCH_SIZE)).isEmpty()) {
+                        for (TopInterestChangeEvent event : events) send(event);
+                    }
+                    replayed = true;
+                }
+                TopInterestChangeEvent event;
+                while (!overflowed && (event = live.poll()) != null) {
+                    if (event.offset() >= nextOffset) send(event);
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Closing top interest change stream: {}", e.getMessage());
+                closed = true;
+                emitter.completeWithError(e);
+            }
+        }
+
+        private void send(TopInterestChangeEvent event) throws IOException {
+            emitter.send(SseEmitter.event()
+                    .id(String.valueOf(event.offset()))
+                    .name("top-interest-change")
+                    .data(event, MediaType.APPLICATION_JSON));
+            nextOffset = event.offset() + 1;
+        }
+    }
+}
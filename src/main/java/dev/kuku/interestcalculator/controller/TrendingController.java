@@ -0,0 +1,29 @@
+package dev.kuku.interestcalculator.controller;
+
+import dev.kuku.interestcalculator.TrendingSystem.TrendingTopicAggregator;
+import dev.kuku.interestcalculator.TrendingSystem.TrendingWindow;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class TrendingController {
+    private static final int MAX_LIMIT = 100;
+    private final TrendingTopicAggregator trendingTopicAggregator;
+
+    @GetMapping("/api/trending")
+    public ResponseEntity<List<TrendingTopicAggregator.TrendingTopic>> getTrendingTopics(
+            @RequestParam(value = "window", defaultValue = "24h") String window,
+            @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        try {
+            TrendingWindow trendingWindow = TrendingWindow.fromLabel(window);
+            return ResponseEntity.ok(trendingTopicAggregator.getTrendingTopics(trendingWindow, Math.max(1, Math.min(limit, MAX_LIMIT))));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package dev.kuku.interestcalculator.controller;
 
-import dev.kuku.interestcalculator.UserTopicScoringSystem.UserTopicScoringSystem;
+import dev.kuku.interestcalculator.codec.InterestProfileBinaryCodec;
 import dev.kuku.interestcalculator.dto.OperationDetailMap;
 import dev.kuku.interestcalculator.fakeDatabase.ContentDb;
+import dev.kuku.interestcalculator.fakeDatabase.TopicDb;
 import dev.kuku.interestcalculator.fakeDatabase.UserInteractionsDb;
 import dev.kuku.interestcalculator.fakeDatabase.UserTopicScoreDb;
+import dev.kuku.interestcalculator.sharding.ShardRouter;
 import dev.kuku.interestcalculator.util.TestTimeProvider;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -21,12 +23,11 @@ import java.util.Map;
 @Slf4j
 @CrossOrigin(origins = "*")  // Add this annotation
 public class UserTopicScoringController {
-    private final UserTopicScoringSystem userTopicScoringSystem;
+    private final ShardRouter shardRouter;
     private final TestTimeProvider testTimeProvider;
-    private final UserInteractionsDb userInteractionsDb;
     private final ContentDb contentDb;
     private final OperationDetailMap operationDetailMap;
-    private final UserTopicScoreDb userTopicScoreDb;
+    private final TopicDb topicDb;
 
     @GetMapping("/content")
     public ResponseEntity<List<ContentDb.ContentRow>> getAllContents() {
@@ -49,8 +50,8 @@ public class UserTopicScoringController {
                     userId, contentId, discovery, interaction, currentTime
             );
 
-            userTopicScoringSystem.updateUserTopicScores(userId, interactionRow);
-            userInteractionsDb.addInteraction(userId, contentId, discovery, interaction, currentTime);
+            // The owning node scores and logs the interaction
+            shardRouter.updateUserTopicScores(userId, interactionRow);
             return ResponseEntity.ok(operationDetailMap.operationDetailMap);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
@@ -89,10 +90,29 @@ public class UserTopicScoringController {
     @GetMapping("/api/userScore/{userId}")
     public ResponseEntity<List<UserTopicScoreDb.UserTopicScoreRow>> getUserScore(@PathVariable("userId") String userId) {
         try {
-            return ResponseEntity.ok(userTopicScoreDb.getUserTopicScores(userId));
+            return ResponseEntity.ok(shardRouter.getUserTopicScores(userId));
         } catch (Exception e) {
             log.error("Error while getting user score", e);
             return ResponseEntity.internalServerError().build();
         }
     }
+
+    /**
+     * Same profile as {@link #getUserScore(String)} in the compact binary format, selected via the Accept header.
+     * Clients send the dictionary version they already know to skip topic names they have cached.
+     */
+    @GetMapping(value = "/api/userScore/{userId}", produces = InterestProfileBinaryCodec.MEDIA_TYPE_VALUE)
+    public ResponseEntity<InterestProfileBinaryCodec.EncodedProfile> getUserScoreBinary(
+            @PathVariable("userId") String userId,
+            @RequestHeader(value = InterestProfileBinaryCodec.DICTIONARY_VERSION_HEADER, defaultValue = "0") int knownTopicCount) {
+        try {
+            var profile = InterestProfileBinaryCodec.prepare(userId, shardRouter.getUserTopicScores(userId), topicDb, knownTopicCount);
+            return ResponseEntity.ok()
+                    .header(InterestProfileBinaryCodec.DICTIONARY_VERSION_HEADER, String.valueOf(profile.dictionaryVersion()))
+                    .body(profile);
+        } catch (Exception e) {
+            log.error("Error while getting binary user score", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
 }
\ No newline at end of file
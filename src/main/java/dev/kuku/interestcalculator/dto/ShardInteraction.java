@@ -0,0 +1,17 @@
+package dev.kuku.interestcalculator.dto;
+
+import dev.kuku.interestcalculator.fakeDatabase.UserInteractionsDb;
+
+/**
+ * Interaction forwarded to the shard owning the user.
+ */
+public record ShardInteraction(String userId, String contentId, UserInteractionsDb.Discovery contentDiscovery,
+                               UserInteractionsDb.InteractionType interactionType, long interactionTime) {
+    public static ShardInteraction from(UserInteractionsDb.UserInteractionRow row) {
+        return new ShardInteraction(row.userId, row.contentId, row.contentDiscovery, row.interactionType, row.interactionTime);
+    }
+
+    public UserInteractionsDb.UserInteractionRow toRow() {
+        return new UserInteractionsDb.UserInteractionRow(userId, contentId, contentDiscovery, interactionType, interactionTime);
+    }
+}
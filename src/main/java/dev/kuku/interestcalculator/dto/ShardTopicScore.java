@@ -0,0 +1,18 @@
+package dev.kuku.interestcalculator.dto;
+
+import dev.kuku.interestcalculator.fakeDatabase.UserTopicScoreDb;
+
+import java.util.List;
+
+/**
+ * Score row as exchanged between shard nodes.
+ */
+public record ShardTopicScore(String topic, double interestScore, long updatedAt) {
+    public static List<ShardTopicScore> from(List<UserTopicScoreDb.UserTopicScoreRow> rows) {
+        return rows.stream().map(row -> new ShardTopicScore(row.topic, row.interestScore, row.updatedAt)).toList();
+    }
+
+    public static List<UserTopicScoreDb.UserTopicScoreRow> toRows(String userId, List<ShardTopicScore> scores) {
+        return scores.stream().map(score -> new UserTopicScoreDb.UserTopicScoreRow(userId, score.topic(), score.interestScore(), score.updatedAt())).toList();
+    }
+}
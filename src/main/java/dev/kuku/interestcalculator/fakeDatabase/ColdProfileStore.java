@@ -0,0 +1,261 @@
+package dev.kuku.interestcalculator.fakeDatabase;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * On disk tier for the profiles of idle users, one file per user.
+ * <p>
+ * File layout: format version byte, row count, then per row the topic (modified UTF-8), score (double) and update
+ * time (long). The userId is only in the file name, URL safe base64 so any id maps to a valid name.
+ * Files are written to a temp file first and moved in place, a crash never leaves a half written profile behind.
+ * <p>
+ * Row counts of all profiles are cached once first asked for, from then on writes and deletes keep them current.
+ */
+@Slf4j
+@Component
+public class ColdProfileStore {
+    private static final byte FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".profile";
+    private final Path directory;
+    // A directory we created ourselves only lives as long as the process, like every other fake database
+    private final boolean temporary;
+    // Row count per user, kept up to date by writes and deletes once tracked. Updates synchronize on it
+    private final Map<String, Integer> rowCounts = new ConcurrentHashMap<>();
+    private volatile boolean rowCountsTracked;
+    private volatile boolean rowCountsLoaded;
+
+    /**
+     * @param directory where cold profiles are kept, blank for a temporary directory removed on shutdown
+     */
+    @Autowired
+    public ColdProfileStore(@Value("${profiles.cold-dir:}") String directory) throws IOException {
+        this.temporary = directory.isBlank();
+        this.directory = temporary ? Files.createTempDirectory("cold-profiles") : Files.createDirectories(Path.of(directory));
+        log.info("Cold profiles are stored in {}", this.directory);
+    }
+
+    private ColdProfileStore(Path directory) {
+        this.temporary = false;
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create " + directory, e);
+        }
+    }
+
+    /**
+     * Store in a directory next to this one, on the same file system so it can later be swapped in by
+     * {@link #replaceWith(ColdProfileStore)}.
+     */
+    public ColdProfileStore sibling(String name) {
+        return new ColdProfileStore(siblingDirectory(name));
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * True when no directory was configured, everything written here and in siblings is gone after a restart.
+     */
+    public boolean isTemporary() {
+        return temporary;
+    }
+
+    public void write(String userId, List<UserTopicScoreDb.UserTopicScoreRow> rows) {
+        Path target = pathOf(userId);
+        try {
+            Path temp = Files.createTempFile(directory, "write", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeByte(FORMAT_VERSION);
+                out.writeInt(rows.size());
+                for (UserTopicScoreDb.UserTopicScoreRow row : rows) {
+                    out.writeUTF(row.topic);
+                    out.writeDouble(row.interestScore);
+                    out.writeLong(row.updatedAt);
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write cold profile of " + userId, e);
+        }
+        if (rowCountsTracked) {
+            synchronized (rowCounts) {
+                if (rowCountsTracked) rowCounts.put(userId, rows.size());
+            }
+        }
+    }
+
+    /**
+     * @return the stored rows exactly as written, null if the user has no cold profile
+     */
+    public List<UserTopicScoreDb.UserTopicScoreRow> read(String userId) {
+        Path path = pathOf(userId);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            byte version = in.readByte();
+            if (version != FORMAT_VERSION) throw new IOException("Unsupported cold profile format " + version);
+            int count = in.readInt();
+            List<UserTopicScoreDb.UserTopicScoreRow> rows = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                rows.add(new UserTopicScoreDb.UserTopicScoreRow(userId, in.readUTF(), in.readDouble(), in.readLong()));
+            }
+            return rows;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read cold profile of " + userId, e);
+        }
+    }
+
+    /**
+     * Number of rows in the user's cold profile, read from the header only. 0 if the user has none.
+     */
+    public int readRowCount(String userId) {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(pathOf(userId)))) {
+            in.readByte();
+            return in.readInt();
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read cold profile of " + userId, e);
+        }
+    }
+
+    public boolean contains(String userId) {
+        return Files.exists(pathOf(userId));
+    }
+
+    public void delete(String userId) {
+        try {
+            Files.deleteIfExists(pathOf(userId));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete cold profile of " + userId, e);
+        }
+        if (rowCountsTracked) {
+            synchronized (rowCounts) {
+                rowCounts.remove(userId);
+            }
+        }
+    }
+
+    /**
+     * Row count of every cold profile. The first call reads every file header, later ones only the cache.
+     */
+    public Map<String, Integer> getRowCounts() {
+        // Only loops if the store is swapped or cleared during the scan
+        while (!rowCountsLoaded) loadRowCounts();
+        return Collections.unmodifiableMap(rowCounts);
+    }
+
+    private synchronized void loadRowCounts() {
+        if (rowCountsLoaded) return;
+        // Writes and deletes from now on update the cache themselves, the scan only fills in users they did not touch
+        rowCountsTracked = true;
+        for (String userId : getUserIds()) {
+            synchronized (rowCounts) {
+                // Reset while scanning, the files listed are no longer this store's
+                if (!rowCountsTracked) return;
+                if (!rowCounts.containsKey(userId) && contains(userId)) rowCounts.put(userId, readRowCount(userId));
+            }
+        }
+        synchronized (rowCounts) {
+            if (rowCountsTracked) rowCountsLoaded = true;
+        }
+    }
+
+    private void resetRowCounts() {
+        synchronized (rowCounts) {
+            rowCountsTracked = false;
+            rowCountsLoaded = false;
+            rowCounts.clear();
+        }
+    }
+
+    public Set<String> getUserIds() {
+        try (Stream<Path> files = Files.list(directory)) {
+            Set<String> userIds = new HashSet<>();
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SUFFIX))
+                    .forEach(name -> userIds.add(new String(
+                            Base64.getUrlDecoder().decode(name.substring(0, name.length() - SUFFIX.length())), StandardCharsets.UTF_8)));
+            return userIds;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list cold profiles", e);
+        }
+    }
+
+    public void clear() {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to clear " + directory, e);
+        }
+        resetRowCounts();
+    }
+
+    /**
+     * Makes the other store's profiles this store's profiles with two directory renames, so the cost does not depend
+     * on the number of users. The other store must not be used afterwards. The replaced profiles are kept aside until
+     * {@link #deleteRetired()}.
+     */
+    public void replaceWith(ColdProfileStore rebuilt) {
+        Path retired = siblingDirectory("retired");
+        try {
+            deleteDirectory(retired);
+            Files.move(directory, retired, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(rebuilt.directory, directory, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to replace " + directory + " with " + rebuilt.directory, e);
+        }
+        // Loaded again from the new files when next asked for
+        resetRowCounts();
+    }
+
+    public void deleteRetired() {
+        try {
+            deleteDirectory(siblingDirectory("retired"));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete retired profiles", e);
+        }
+    }
+
+    private Path siblingDirectory(String name) {
+        return directory.resolveSibling(directory.getFileName() + "." + name);
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.exists(directory)) return;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) Files.deleteIfExists(file);
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    private Path pathOf(String userId) {
+        return directory.resolve(Base64.getUrlEncoder().withoutPadding().encodeToString(userId.getBytes(StandardCharsets.UTF_8)) + SUFFIX);
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (!temporary) return;
+        deleteDirectory(directory);
+        String siblingPrefix = directory.getFileName() + ".";
+        try (Stream<Path> siblings = Files.list(directory.getParent())) {
+            for (Path sibling : siblings.filter(path -> path.getFileName().toString().startsWith(siblingPrefix)).toList()) {
+                deleteDirectory(sibling);
+            }
+        }
+    }
+}
@@ -3,15 +3,20 @@ package dev.kuku.interestcalculator.fakeDatabase;
 import jakarta.annotation.PostConstruct;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import lombok.Setter;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Repository;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Repository
+@RequiredArgsConstructor
 public class ContentDb {
-    private final Map<String, ContentRow> contentTopicRows = new HashMap<>();
+    private final Map<String, ContentRow> contentTopicRows = new ConcurrentHashMap<>();
+    private final ApplicationEventPublisher eventPublisher;
 
     public List<ContentRow> getAllContents() {
         return List.copyOf(contentTopicRows.values());
@@ -162,8 +167,38 @@ public class ContentDb {
         return contentTopicRows.get(contentId);
     }
 
+    /**
+     * Adds content without topics, it gets tagged when someone first interacts with it.
+     */
+    public void addContent(String contentId, String content, String userId, long timestamp) {
+        contentTopicRows.put(contentId, new ContentRow(contentId, content, Set.of(), userId, timestamp));
+    }
+
+    /**
+     * Announces the new topics with a {@link ContentTaggedEvent}, unless the content already had exactly these
+     * topics, as when callers sharing one tagging each store its result.
+     */
     public void setTopicsOfContent(Set<String> topics, String contentId) {
-        contentTopicRows.put(contentId, new ContentRow(contentId, contentTopicRows.get(contentId).content, topics, contentTopicRows.get(contentId).userId, contentTopicRows.get(contentId).timestamp));
+        // Replaced atomically, concurrent taggings of the same content each announce the topics they replaced
+        ContentRow[] previous = new ContentRow[1];
+        ContentRow row = contentTopicRows.computeIfPresent(contentId, (id, current) -> {
+            previous[0] = current;
+            if (topics.equals(current.topics)) return current;
+            return new ContentRow(id, current.content, topics, current.userId, current.timestamp);
+        });
+        if (row == null) throw new IllegalArgumentException("Unknown content " + contentId);
+        if (row == previous[0]) return;
+        Set<String> previousTopics = previous[0].topics == null ? Set.of() : previous[0].topics;
+        eventPublisher.publishEvent(new ContentTaggedEvent(contentId, row.content, row.topics, previousTopics));
+    }
+
+    /**
+     * Published when topics get assigned to content after startup. Seeded content is not announced,
+     * listeners pick it up from {@link #getAllContents()} when they initialise.
+     *
+     * @param previousTopics topics the content had before this tagging, empty the first time it is tagged
+     */
+    public record ContentTaggedEvent(String contentId, String content, Set<String> topics, Set<String> previousTopics) {
     }
 
     @Getter
@@ -2,10 +2,48 @@ package dev.kuku.interestcalculator.fakeDatabase;
 
 import org.springframework.stereotype.Repository;
 
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Repository
 public class TopicDb {
-    public Set<String> topics = new HashSet<>();
+    public Set<String> topics = ConcurrentHashMap.newKeySet();
+    // Dense topic ids. Ids are handed out sequentially and never reused, so the number of known
+    // topics doubles as a dictionary version that clients can use to ask for only the new entries.
+    // Only creating an id locks, lookups read the map and the last published array.
+    private final Map<String, Integer> topicIds = new ConcurrentHashMap<>();
+    private volatile String[] topicsById = new String[64];
+    private volatile int topicCount;
+
+    public synchronized int getOrCreateTopicId(String topic) {
+        Integer id = topicIds.get(topic);
+        if (id != null) return id;
+        int newId = topicCount;
+        String[] names = topicsById;
+        if (newId == names.length) names = Arrays.copyOf(names, newId * 2);
+        names[newId] = topic;
+        // Name published before the id, whoever finds the id can resolve it
+        topicsById = names;
+        topicCount = newId + 1;
+        topicIds.put(topic, newId);
+        return newId;
+    }
+
+    /**
+     * @return id of the topic or -1 if the topic was never assigned one
+     */
+    public int getTopicId(String topic) {
+        return topicIds.getOrDefault(topic, -1);
+    }
+
+    public String getTopicById(int id) {
+        if (id < 0 || id >= topicCount) throw new IndexOutOfBoundsException("Unknown topic id " + id);
+        return topicsById[id];
+    }
+
+    public int getTopicIdCount() {
+        return topicCount;
+    }
 }
@@ -1,8 +1,10 @@
 package dev.kuku.interestcalculator.fakeDatabase;
 
 import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.RequiredArgsConstructor;
 import lombok.ToString;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
@@ -13,8 +15,9 @@ import java.util.List;
 public class UserInteractionsDb {
     private final List<UserInteractionRow> userInteractionRows = new ArrayList<>();
     private final ContentDb contentDb;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public List<UserInteractionRow> getInteractionsOfUserFromTo(String userId, long from, long to) {
+    public synchronized List<UserInteractionRow> getInteractionsOfUserFromTo(String userId, long from, long to) {
         List<UserInteractionRow> result = new ArrayList<>();
         for (UserInteractionRow interaction : userInteractionRows) {
             if (interaction.userId.equals(userId) && interaction.interactionTime >= from && interaction.interactionTime <= to) {
@@ -24,7 +27,7 @@ public class UserInteractionsDb {
         return result;
     }
 
-    public List<UserInteractionRow> getInteractionsOfUserFromTo(String userId, String topic, long from, long to) {
+    public synchronized List<UserInteractionRow> getInteractionsOfUserFromTo(String userId, String topic, long from, long to) {
         return userInteractionRows.stream()
                 .filter(interaction -> interaction.userId.equals(userId))
                 .filter(interaction -> interaction.interactionTime >= from && interaction.interactionTime <= to)
@@ -33,9 +36,26 @@ public class UserInteractionsDb {
                 .toList();
     }
 
+    public synchronized int getInteractionCount() {
+        return userInteractionRows.size();
+    }
+
+    /**
+     * Copies of the interactions at log positions [from, to), in the order they were added.
+     */
+    public synchronized List<UserInteractionRow> getInteractions(int from, int to) {
+        List<UserInteractionRow> result = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) result.add(copyInteraction(userInteractionRows.get(i)));
+        return result;
+    }
+
     //create a function to add interaction to the database
     public void addInteraction(String userId, String contentId, Discovery contentDiscovery, InteractionType interactionType, long interactionTime) {
-        userInteractionRows.add(new UserInteractionRow(userId, contentId, contentDiscovery, interactionType, interactionTime));
+        UserInteractionRow row = new UserInteractionRow(userId, contentId, contentDiscovery, interactionType, interactionTime);
+        synchronized (this) {
+            userInteractionRows.add(row);
+        }
+        eventPublisher.publishEvent(new InteractionAddedEvent(copyInteraction(row)));
     }
 
     // Helper method to create a copy of UserInteractionRow
@@ -49,6 +69,12 @@ public class UserInteractionsDb {
         return copy;
     }
 
+    /**
+     * Published for every recorded interaction, carries a copy of the stored row.
+     */
+    public record InteractionAddedEvent(UserInteractionRow interaction) {
+    }
+
     public enum Discovery {
         TRENDING, RECOMMENDATION, SEARCH
     }
@@ -58,6 +84,7 @@ public class UserInteractionsDb {
     }
 
     @AllArgsConstructor
+    @EqualsAndHashCode
     @ToString
     public static class UserInteractionRow {
         public String userId;
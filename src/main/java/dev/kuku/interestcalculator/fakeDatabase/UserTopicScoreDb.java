@@ -1,80 +1,412 @@
 package dev.kuku.interestcalculator.fakeDatabase;
 
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ProfileGovernor.ProfileSizeGovernor;
+import dev.kuku.interestcalculator.util.StripedUserLock;
+import dev.kuku.interestcalculator.util.TimeProvider;
+import jakarta.annotation.PreDestroy;
 import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Repository;
 
-import java.time.Instant;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Scores are grouped per user. Every method is atomic for the user it touches (guarded by the user's lock stripe),
+ * rows are replaced instead of mutated so readers never see a half written row.
+ * <p>
+ * Profiles are tiered. The hot tier in memory holds at most {@code hotCapacity} users, least recently interacted
+ * users beyond that, and users idle for longer than {@code hotIdleMillis}, are moved to the {@link ColdProfileStore} by a
+ * background thread.
+ * A cold profile is faulted back in by the next read or write of the user exactly as it was evicted, rows keep their
+ * update times. Like hot rows they are only decayed when the user is scored, so callers never see which tier a user
+ * was in.
+ * <p>
+ * Every write ends with the {@link ProfileSizeGovernor}, which prunes near zero entries and caps the topics per user.
+ */
+@Slf4j
 @Repository
 public class UserTopicScoreDb {
-    private final List<UserTopicScoreRow> userTopicScores = new ArrayList<>();
+    private static final long IDLE_SWEEP_INTERVAL_MILLIS = 60_000;
+
+    private final Map<String, Map<String, UserTopicScoreRow>> userTopicScores = new ConcurrentHashMap<>();
+    // Hot users from least to most recently touched, value is the time of the last touch
+    private final LinkedHashMap<String, Long> recency = new LinkedHashMap<>(16, 0.75f, true);
+    private final ApplicationEventPublisher eventPublisher;
+    private final TimeProvider timeProvider;
+    private final StripedUserLock stripedUserLock;
+    private final ColdProfileStore coldProfileStore;
+    private final ProfileSizeGovernor profileSizeGovernor;
+    private final int hotCapacity;
+    private final long hotIdleMillis;
+    // Evictions run here and never on request threads, those usually hold their own user's lock already
+    private final ScheduledExecutorService evictionExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "profile-evictor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean evictionScheduled = new AtomicBoolean();
+    // Users written while a rebuild copies profiles, null when no rebuild is tracking changes
+    private volatile Set<String> changedUsers;
+
+    public UserTopicScoreDb(ApplicationEventPublisher eventPublisher, TimeProvider timeProvider, StripedUserLock stripedUserLock,
+                            ColdProfileStore coldProfileStore, ProfileSizeGovernor profileSizeGovernor,
+                            @Value("${profiles.hot-capacity:100000}") int hotCapacity,
+                            @Value("${profiles.hot-idle-millis:86400000}") long hotIdleMillis) {
+        this.eventPublisher = eventPublisher;
+        this.timeProvider = timeProvider;
+        this.stripedUserLock = stripedUserLock;
+        this.coldProfileStore = coldProfileStore;
+        this.profileSizeGovernor = profileSizeGovernor;
+        this.hotCapacity = hotCapacity;
+        this.hotIdleMillis = hotIdleMillis;
+        evictionExecutor.scheduleWithFixedDelay(this::evictIdle, IDLE_SWEEP_INTERVAL_MILLIS, IDLE_SWEEP_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
 
     public void updateTopicScoresByValue(String userId, Map<String, Double> value) {
-        long currentTime = Instant.now().toEpochMilli();
-
-        for (Map.Entry<String, Double> entry : value.entrySet()) {
-            String topic = entry.getKey();
-            double newScore = entry.getValue();
-
-            // Find existing score entry
-            Optional<UserTopicScoreRow> existingRow = userTopicScores.stream()
-                    .filter(row -> row.userId.equals(userId) && row.topic.equals(topic))
-                    .findFirst();
-
-            if (existingRow.isPresent()) {
-                // Update existing entry
-                UserTopicScoreRow row = existingRow.get();
-                row.interestScore = newScore;
-                row.updatedAt = currentTime;
-            } else {
-                // Create new entry
-                userTopicScores.add(new UserTopicScoreRow(userId, topic, newScore, currentTime));
+        stripedUserLock.withLock(userId, () -> {
+            long currentTime = timeProvider.nowMillis();
+            Map<String, UserTopicScoreRow> profile = profileOf(userId);
+            for (Map.Entry<String, Double> entry : value.entrySet()) {
+                profile.put(entry.getKey(), new UserTopicScoreRow(userId, entry.getKey(), entry.getValue(), currentTime));
             }
-        }
+            profileSizeGovernor.govern(profile, value.keySet());
+            markChanged(userId);
+        });
+        requestEviction();
+        publishUpdate(userId, value);
     }
 
     public void updateTopicScoresByDelta(String userId, Map<String, Double> delta) {
-        long currentTime = Instant.now().toEpochMilli();
-
-        for (Map.Entry<String, Double> entry : delta.entrySet()) {
-            String topic = entry.getKey();
-            double deltaValue = entry.getValue();
-
-            // Find existing score entry
-            Optional<UserTopicScoreRow> existingRow = userTopicScores.stream()
-                    .filter(row -> row.userId.equals(userId) && row.topic.equals(topic))
-                    .findFirst();
-
-            if (existingRow.isPresent()) {
-                // Update existing entry by adding delta to current score
-                UserTopicScoreRow row = existingRow.get();
-                row.interestScore += deltaValue;
-                row.updatedAt = currentTime;
-            } else {
-                // Create new entry with delta as initial score
-                userTopicScores.add(new UserTopicScoreRow(userId, topic, deltaValue, currentTime));
+        stripedUserLock.withLock(userId, () -> {
+            long currentTime = timeProvider.nowMillis();
+            Map<String, UserTopicScoreRow> profile = profileOf(userId);
+            for (Map.Entry<String, Double> entry : delta.entrySet()) {
+                UserTopicScoreRow existingRow = profile.get(entry.getKey());
+                // Missing entries start from the delta itself
+                double newScore = existingRow == null ? entry.getValue() : existingRow.interestScore + entry.getValue();
+                profile.put(entry.getKey(), new UserTopicScoreRow(userId, entry.getKey(), newScore, currentTime));
             }
+            profileSizeGovernor.govern(profile, delta.keySet());
+            markChanged(userId);
+        });
+        requestEviction();
+        publishUpdate(userId, delta);
+    }
+
+    /**
+     * Replaces the user's hot profile with the given rows, keeping their update times. The write of batch scoring,
+     * which read the profile once and scored it in memory, the caller holds the user's lock across both.
+     */
+    public void replaceTopicScores(String userId, List<UserTopicScoreRow> rows) {
+        stripedUserLock.withLock(userId, () -> {
+            Map<String, UserTopicScoreRow> profile = new ConcurrentHashMap<>();
+            for (UserTopicScoreRow row : rows) profile.put(row.topic, row);
+            profileSizeGovernor.govern(profile);
+            // Swapped in whole, lock free readers see either the old or the new profile
+            userTopicScores.put(userId, profile);
+            touch(userId);
+            markChanged(userId);
+        });
+        requestEviction();
+        if (!rows.isEmpty()) eventPublisher.publishEvent(new TopicScoresUpdatedEvent(userId));
+    }
+
+    /**
+     * Hot profile of the user, faulted in from the cold tier or created when missing. Caller holds the user's lock.
+     */
+    private Map<String, UserTopicScoreRow> profileOf(String userId) {
+        Map<String, UserTopicScoreRow> profile = userTopicScores.get(userId);
+        if (profile == null) profile = faultIn(userId);
+        if (profile == null) {
+            profile = new ConcurrentHashMap<>();
+            userTopicScores.put(userId, profile);
+        }
+        touch(userId);
+        return profile;
+    }
+
+    /**
+     * Lock free for hot users, only a miss takes the user's lock to look in the cold tier.
+     */
+    private Map<String, UserTopicScoreRow> readProfile(String userId) {
+        Map<String, UserTopicScoreRow> profile = userTopicScores.get(userId);
+        if (profile != null || !coldProfileStore.contains(userId)) return profile;
+        profile = stripedUserLock.withLock(userId, () -> {
+            Map<String, UserTopicScoreRow> hot = userTopicScores.get(userId);
+            if (hot != null) return hot;
+            Map<String, UserTopicScoreRow> faultedIn = faultIn(userId);
+            if (faultedIn != null) touch(userId);
+            return faultedIn;
+        });
+        requestEviction();
+        return profile;
+    }
+
+    /**
+     * Moves the user's cold profile into the hot tier unchanged. Caller holds the user's lock.
+     */
+    private Map<String, UserTopicScoreRow> faultIn(String userId) {
+        List<UserTopicScoreRow> rows = coldProfileStore.read(userId);
+        if (rows == null) return null;
+        Map<String, UserTopicScoreRow> profile = new ConcurrentHashMap<>();
+        for (UserTopicScoreRow row : rows) profile.put(row.topic, row);
+        userTopicScores.put(userId, profile);
+        coldProfileStore.delete(userId);
+        return profile;
+    }
+
+    private void touch(String userId) {
+        synchronized (recency) {
+            recency.put(userId, timeProvider.nowMillis());
         }
     }
 
+    private void requestEviction() {
+        boolean overCapacity;
+        synchronized (recency) {
+            overCapacity = recency.size() > hotCapacity;
+        }
+        if (overCapacity && evictionScheduled.compareAndSet(false, true)) evictionExecutor.execute(this::evictOverCapacity);
+    }
+
+    private void evictOverCapacity() {
+        try {
+            evictionScheduled.set(false);
+            while (true) {
+                String victim;
+                synchronized (recency) {
+                    if (recency.size() <= hotCapacity) return;
+                    victim = recency.keySet().iterator().next();
+                    recency.remove(victim);
+                }
+                evict(victim);
+            }
+        } catch (Exception e) {
+            log.error("Failed to evict profiles over capacity", e);
+        }
+    }
+
+    private void evictIdle() {
+        try {
+            long cutoff = timeProvider.nowMillis() - hotIdleMillis;
+            while (true) {
+                String victim;
+                synchronized (recency) {
+                    Iterator<Map.Entry<String, Long>> eldest = recency.entrySet().iterator();
+                    if (!eldest.hasNext()) return;
+                    Map.Entry<String, Long> entry = eldest.next();
+                    if (entry.getValue() >= cutoff) return;
+                    victim = entry.getKey();
+                    eldest.remove();
+                }
+                evict(victim);
+            }
+        } catch (Exception e) {
+            log.error("Failed to evict idle profiles", e);
+        }
+    }
+
+    private void evict(String userId) {
+        stripedUserLock.withLock(userId, () -> {
+            // Touched again between being picked and getting the lock
+            synchronized (recency) {
+                if (recency.containsKey(userId)) return;
+            }
+            Map<String, UserTopicScoreRow> profile = userTopicScores.get(userId);
+            if (profile == null) return;
+            // Written out before being dropped, lock free readers either see the hot profile or find the cold one
+            if (!profile.isEmpty()) coldProfileStore.write(userId, List.copyOf(profile.values()));
+            userTopicScores.remove(userId);
+        });
+    }
+
+    private void publishUpdate(String userId, Map<String, Double> changes) {
+        if (!changes.isEmpty()) eventPublisher.publishEvent(new TopicScoresUpdatedEvent(userId));
+    }
+
     public double getTopicScoreOfUser(String userId, String topic) {
-        return userTopicScores.stream()
-                .filter(row -> row.userId.equals(userId) && row.topic.equals(topic))
-                .findFirst()
-                .map(row -> row.interestScore)
-                .orElse(0.0);
+        Map<String, UserTopicScoreRow> profile = readProfile(userId);
+        UserTopicScoreRow row = profile == null ? null : profile.get(topic);
+        return row == null ? 0.0 : row.interestScore;
     }
 
     public List<UserTopicScoreRow> getUserTopicScores(String userId) {
-        return userTopicScores.stream()
-                .filter(row -> row.userId.equals(userId))
-                .toList();
+        Map<String, UserTopicScoreRow> profile = readProfile(userId);
+        return profile == null ? List.of() : List.copyOf(profile.values());
     }
 
+    /**
+     * Users of both tiers, without faulting anyone in.
+     */
+    public Set<String> getUserIds() {
+        Set<String> userIds = new HashSet<>(coldProfileStore.getUserIds());
+        userIds.addAll(userTopicScores.keySet());
+        return Set.copyOf(userIds);
+    }
+
+    /**
+     * Topic count of every profile in both tiers, cold ones from the cold store's cached row counts.
+     */
+    public int[] getProfileSizes() {
+        Map<String, Integer> sizes = new HashMap<>(coldProfileStore.getRowCounts());
+        userTopicScores.forEach((userId, profile) -> sizes.put(userId, profile.size()));
+        return sizes.values().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public int getHotUserCount() {
+        return userTopicScores.size();
+    }
+
+    /**
+     * Removes and returns every score row of the user, used when the user's profile moves to another store.
+     */
+    public List<UserTopicScoreRow> removeUserTopicScores(String userId) {
+        return stripedUserLock.withLock(userId, () -> {
+            synchronized (recency) {
+                recency.remove(userId);
+            }
+            markChanged(userId);
+            Map<String, UserTopicScoreRow> removed = userTopicScores.remove(userId);
+            if (removed != null) return List.copyOf(removed.values());
+            // Cold rows leave as they are, the receiving store decays them when it needs to
+            List<UserTopicScoreRow> cold = coldProfileStore.read(userId);
+            coldProfileStore.delete(userId);
+            return cold == null ? List.<UserTopicScoreRow>of() : cold;
+        });
+    }
+
+    /**
+     * Replaces the user's profile with the given rows, keeping their original update times.
+     */
+    public void putUserTopicScores(String userId, List<UserTopicScoreRow> rows) {
+        stripedUserLock.withLock(userId, () -> {
+            Map<String, UserTopicScoreRow> profile = new ConcurrentHashMap<>();
+            rows.forEach(row -> profile.put(row.topic, new UserTopicScoreRow(userId, row.topic, row.interestScore, row.updatedAt)));
+            profileSizeGovernor.govern(profile);
+            coldProfileStore.delete(userId);
+            if (profile.isEmpty()) {
+                userTopicScores.remove(userId);
+                synchronized (recency) {
+                    recency.remove(userId);
+                }
+            } else {
+                userTopicScores.put(userId, profile);
+                touch(userId);
+            }
+            markChanged(userId);
+        });
+        requestEviction();
+        if (!rows.isEmpty()) eventPublisher.publishEvent(new TopicScoresUpdatedEvent(userId));
+    }
+
+    /**
+     * From now on records every user whose profile is written, until {@link #replaceAllProfiles} or
+     * {@link #stopTrackingChanges()}.
+     */
+    public void startTrackingChanges() {
+        changedUsers = ConcurrentHashMap.newKeySet();
+    }
+
+    public void stopTrackingChanges() {
+        changedUsers = null;
+    }
+
+    // Caller holds the user's lock
+    private void markChanged(String userId) {
+        Set<String> changed = changedUsers;
+        if (changed != null) changed.add(userId);
+    }
+
+    /**
+     * Copies every non empty profile the rebuilt store has no entry for, for example ones imported from another shard
+     * without history here. Takes no locks, call it while tracking changes so profiles written meanwhile are copied
+     * again by {@link #replaceAllProfiles}.
+     *
+     * @return the copied users
+     */
+    public Set<String> copyMissingProfiles(ColdProfileStore rebuilt) {
+        Set<String> copied = new HashSet<>();
+        for (String userId : getUserIds()) {
+            if (rebuilt.contains(userId)) continue;
+            List<UserTopicScoreRow> rows = peekProfile(userId);
+            if (rows == null || rows.isEmpty()) continue;
+            rebuilt.write(userId, rows);
+            copied.add(userId);
+        }
+        return copied;
+    }
+
+    /**
+     * Rows of the user from whichever tier has them, without faulting in or touching the user. Looks at the hot tier
+     * again last, a fault-in writes the hot profile before it deletes the cold one.
+     */
+    private List<UserTopicScoreRow> peekProfile(String userId) {
+        Map<String, UserTopicScoreRow> hot = userTopicScores.get(userId);
+        if (hot != null) return List.copyOf(hot.values());
+        List<UserTopicScoreRow> cold = coldProfileStore.read(userId);
+        if (cold != null) return cold;
+        hot = userTopicScores.get(userId);
+        return hot == null ? null : List.copyOf(hot.values());
+    }
+
+    /**
+     * Replaces every profile with the ones in the rebuilt store. Every user lock is held only for the final catch-up,
+     * copying the few profiles written since {@link #copyMissingProfiles} that the log does not rebuild, and the
+     * directory swap. No interaction can be scored in between.
+     * Changes have to be tracked since before the copy, tracking ends here.
+     *
+     * @param copiedUsers  users {@link #copyMissingProfiles} wrote into the rebuilt store
+     * @param finalCatchUp replays the last log entries onto the rebuilt store, except for copied users
+     */
+    public void replaceAllProfiles(ColdProfileStore rebuilt, Set<String> copiedUsers, Runnable finalCatchUp) {
+        stripedUserLock.withAllLocks(() -> {
+            Set<String> changed = changedUsers;
+            if (changed == null) throw new IllegalStateException("Changes were not tracked since the copy");
+            // Copied users and users new since the copy have no rebuilt history, their live profile is carried over
+            List<String> liveUsers = new ArrayList<>();
+            for (String userId : changed) {
+                if (copiedUsers.contains(userId) || !rebuilt.contains(userId)) liveUsers.add(userId);
+            }
+            finalCatchUp.run();
+            for (String userId : liveUsers) {
+                List<UserTopicScoreRow> rows = peekProfile(userId);
+                if (rows == null || rows.isEmpty()) rebuilt.delete(userId);
+                else rebuilt.write(userId, rows);
+            }
+            // Swapped before the hot tier is dropped, readers missing the hot tier find the rebuilt profiles
+            coldProfileStore.replaceWith(rebuilt);
+            userTopicScores.clear();
+            synchronized (recency) {
+                recency.clear();
+            }
+            changedUsers = null;
+        });
+        coldProfileStore.deleteRetired();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        evictionExecutor.shutdownNow();
+        try {
+            // An eviction already writing its cold profile finishes before the cold store goes away
+            evictionExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Published after every write to a user's scores. Listeners decide for themselves whether the change matters.
+     */
+    public record TopicScoresUpdatedEvent(String userId) {
+    }
 
     @AllArgsConstructor
     public static class UserTopicScoreRow {
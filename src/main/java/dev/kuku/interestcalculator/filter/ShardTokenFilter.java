@@ -0,0 +1,48 @@
+package dev.kuku.interestcalculator.filter;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Node to node endpoints under /internal/shard import, export and score profiles, only peers holding the shared
+ * {@code shard.token} may call them. Without a configured token they are closed, a single node does not need them.
+ */
+@Component
+public class ShardTokenFilter implements Filter {
+    public static final String HEADER = "X-Shard-Token";
+    private static final String INTERNAL_PREFIX = "/internal/shard";
+
+    private final byte[] token;
+
+    public ShardTokenFilter(@Value("${shard.token:}") String token) {
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        if (httpRequest.getRequestURI().startsWith(INTERNAL_PREFIX) && !isAuthorized(httpRequest.getHeader(HEADER))) {
+            ((HttpServletResponse) response).sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    private boolean isAuthorized(String presented) {
+        if (token.length == 0 || presented == null) return false;
+        // Constant time, the comparison does not leak how much of the token matched
+        return MessageDigest.isEqual(token, presented.getBytes(StandardCharsets.UTF_8));
+    }
+}
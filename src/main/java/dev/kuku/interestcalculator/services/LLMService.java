@@ -50,6 +50,7 @@ public class LLMService {
      * @param existingTopics List of existing topics to prioritize matching against
      * @param contentData    The content text to analyze
      * @return Set of up to 3 topics that best describe the content
+     * @throws TopicExtractionException if the model could not be reached or failed, callers decide how to degrade
      */
     public Set<String> getTopics(Set<String> existingTopics, String contentData) {
         try {
@@ -101,9 +102,8 @@ public class LLMService {
             return extractedTopics.isEmpty() ? new HashSet<>() : extractedTopics;
 
         } catch (Exception e) {
-            log.error("Error extracting topics: {}", e.getMessage(), e);
-            // In case of failure, return a single generic topic to avoid breaking the application
-            return Set.of("general");
+            // No made up fallback topic here, it would end up in profiles as if the user cared about it
+            throw new TopicExtractionException(TopicExtractionException.Reason.FAILED, "Error extracting topics: " + e.getMessage(), e);
         }
     }
 }
\ No newline at end of file
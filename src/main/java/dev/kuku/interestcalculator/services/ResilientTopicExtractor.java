@@ -0,0 +1,233 @@
+package dev.kuku.interestcalculator.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Guards {@link LLMService} so a slow or unavailable model fails fast instead of piling up request threads.
+ * <ul>
+ *     <li>Bulkhead: at most {@code maxConcurrentCalls} calls reach the model, further calls are rejected right away.
+ *     A permit is only returned once the model call really ended, a call given up on by the timeout keeps it.</li>
+ *     <li>Adaptive timeout: p99 of the latest successful calls times a multiplier, clamped to [min, max]. Until
+ *     enough calls were seen the max is used.</li>
+ *     <li>Circuit breaker: opens after {@code failureThreshold} failures or timeouts in a row and rejects every call
+ *     for {@code openMillis}. Then a single trial call is let through, success closes it, failure opens it again.</li>
+ * </ul>
+ * Every rejection is a {@link TopicExtractionException}, callers defer the work instead of guessing topics.
+ */
+@Slf4j
+@Service
+public class ResilientTopicExtractor {
+    private static final int LATENCY_SAMPLES = 128;
+    private static final int MIN_LATENCY_SAMPLES = 16;
+    private static final double LATENCY_PERCENTILE = 0.99;
+
+    private final LLMService llmService;
+    private final Semaphore bulkhead;
+    private final long minTimeoutMillis;
+    private final long maxTimeoutMillis;
+    private final double timeoutMultiplier;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final ExecutorService callExecutor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "llm-call");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Ring of the latest successful call latencies, guarded by itself
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyCount;
+    private int nextLatency;
+    // Breaker state, guarded by this
+    private CircuitState state = CircuitState.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+    private final AtomicLong succeededCalls = new AtomicLong();
+    private final AtomicLong failedCalls = new AtomicLong();
+    private final AtomicLong timedOutCalls = new AtomicLong();
+    private final AtomicLong rejectedCalls = new AtomicLong();
+    private final AtomicLong shortCircuitedCalls = new AtomicLong();
+
+    public ResilientTopicExtractor(LLMService llmService,
+                                   @Value("${llm.max-concurrent-calls:4}") int maxConcurrentCalls,
+                                   @Value("${llm.timeout.min-millis:1000}") long minTimeoutMillis,
+                                   @Value("${llm.timeout.max-millis:30000}") long maxTimeoutMillis,
+                                   @Value("${llm.timeout.multiplier:2.0}") double timeoutMultiplier,
+                                   @Value("${llm.circuit.failure-threshold:5}") int failureThreshold,
+                                   @Value("${llm.circuit.open-millis:30000}") long openMillis) {
+        this.llmService = llmService;
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.minTimeoutMillis = minTimeoutMillis;
+        this.maxTimeoutMillis = maxTimeoutMillis;
+        this.timeoutMultiplier = timeoutMultiplier;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }
+
+    /**
+     * @throws TopicExtractionException if the call was rejected, timed out or failed
+     */
+    public Set<String> getTopics(Set<String> existingTopics, String contentData) {
+        if (!bulkhead.tryAcquire()) {
+            rejectedCalls.incrementAndGet();
+            throw new TopicExtractionException(TopicExtractionException.Reason.BULKHEAD_FULL,
+                    "Too many topic extractions in flight");
+        }
+        if (!admit()) {
+            bulkhead.release();
+            shortCircuitedCalls.incrementAndGet();
+            throw new TopicExtractionException(TopicExtractionException.Reason.CIRCUIT_OPEN,
+                    "Topic extraction circuit is open");
+        }
+        long timeoutMillis = currentTimeoutMillis();
+        long start = System.nanoTime();
+        Future<Set<String>> call;
+        try {
+            call = callExecutor.submit(() -> {
+                try {
+                    return llmService.getTopics(existingTopics, contentData);
+                } finally {
+                    bulkhead.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            bulkhead.release();
+            onFailure();
+            throw new TopicExtractionException(TopicExtractionException.Reason.FAILED, "Topic extraction is shut down", e);
+        }
+        try {
+            Set<String> topics = call.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            onSuccess();
+            return topics;
+        } catch (TimeoutException e) {
+            call.cancel(true);
+            timedOutCalls.incrementAndGet();
+            onFailure();
+            throw new TopicExtractionException(TopicExtractionException.Reason.TIMEOUT,
+                    "No topics within " + timeoutMillis + "ms");
+        } catch (ExecutionException e) {
+            failedCalls.incrementAndGet();
+            onFailure();
+            if (e.getCause() instanceof TopicExtractionException extractionException) throw extractionException;
+            throw new TopicExtractionException(TopicExtractionException.Reason.FAILED, "Topic extraction failed", e.getCause());
+        } catch (InterruptedException e) {
+            call.cancel(true);
+            Thread.currentThread().interrupt();
+            // Our caller gave up, says nothing about the model, free a trial slot without judging it
+            releaseTrial();
+            throw new TopicExtractionException(TopicExtractionException.Reason.FAILED, "Interrupted while extracting topics", e);
+        }
+    }
+
+    /**
+     * Whether a call made now would get past the breaker. Used by background work to avoid spending its attempts on
+     * an open circuit.
+     */
+    public synchronized boolean isCallPermitted() {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> System.nanoTime() - openedAt >= openNanos;
+            case HALF_OPEN -> !trialInFlight;
+        };
+    }
+
+    public synchronized CircuitState getState() {
+        return state;
+    }
+
+    /**
+     * Timeout the next call gets.
+     */
+    public long currentTimeoutMillis() {
+        long[] samples;
+        synchronized (latencies) {
+            if (latencyCount < MIN_LATENCY_SAMPLES) return maxTimeoutMillis;
+            samples = Arrays.copyOf(latencies, latencyCount);
+        }
+        Arrays.sort(samples);
+        long percentile = samples[(int) Math.ceil(LATENCY_PERCENTILE * samples.length) - 1];
+        return Math.max(minTimeoutMillis, Math.min(maxTimeoutMillis, (long) (percentile * timeoutMultiplier)));
+    }
+
+    public ExtractorStatus getStatus() {
+        CircuitState currentState;
+        int failures;
+        synchronized (this) {
+            currentState = state;
+            failures = consecutiveFailures;
+        }
+        return new ExtractorStatus(currentState, failures, currentTimeoutMillis(), bulkhead.availablePermits(),
+                succeededCalls.get(), failedCalls.get(), timedOutCalls.get(), rejectedCalls.get(), shortCircuitedCalls.get());
+    }
+
+    private synchronized boolean admit() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt < openNanos) return false;
+                log.info("Topic extraction circuit half open, letting a trial call through");
+                state = CircuitState.HALF_OPEN;
+                trialInFlight = true;
+                return true;
+            default:
+                if (trialInFlight) return false;
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    private synchronized void onSuccess() {
+        succeededCalls.incrementAndGet();
+        if (state != CircuitState.CLOSED) log.info("Topic extraction circuit closed");
+        state = CircuitState.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    private synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == CircuitState.HALF_OPEN || (state == CircuitState.CLOSED && consecutiveFailures >= failureThreshold)) {
+            log.warn("Topic extraction circuit opened after {} failures in a row", consecutiveFailures);
+            state = CircuitState.OPEN;
+            openedAt = System.nanoTime();
+        }
+        trialInFlight = false;
+    }
+
+    private synchronized void releaseTrial() {
+        trialInFlight = false;
+    }
+
+    // Package private so tests can feed known latencies instead of timing real calls
+    void recordLatency(long millis) {
+        synchronized (latencies) {
+            latencies[nextLatency] = millis;
+            nextLatency = (nextLatency + 1) % LATENCY_SAMPLES;
+            latencyCount = Math.min(latencyCount + 1, LATENCY_SAMPLES);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        callExecutor.shutdownNow();
+    }
+
+    public enum CircuitState {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    public record ExtractorStatus(CircuitState state, int consecutiveFailures, long timeoutMillis, int availableCalls,
+                                  long succeededCalls, long failedCalls, long timedOutCalls, long rejectedCalls,
+                                  long shortCircuitedCalls) {
+    }
+}
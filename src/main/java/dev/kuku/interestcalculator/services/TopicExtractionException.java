@@ -0,0 +1,32 @@
+package dev.kuku.interestcalculator.services;
+
+import lombok.Getter;
+
+/**
+ * Topics could not be extracted right now. The reason tells a model failure apart from calls that were never made.
+ */
+@Getter
+public class TopicExtractionException extends RuntimeException {
+    private final Reason reason;
+
+    public TopicExtractionException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public TopicExtractionException(Reason reason, String message, Throwable cause) {
+        super(message, cause);
+        this.reason = reason;
+    }
+
+    public enum Reason {
+        // The model answered with an error or could not be reached
+        FAILED,
+        // No answer within the adaptive timeout
+        TIMEOUT,
+        // Too many calls already in flight
+        BULKHEAD_FULL,
+        // The circuit breaker is open, the model was not called
+        CIRCUIT_OPEN
+    }
+}
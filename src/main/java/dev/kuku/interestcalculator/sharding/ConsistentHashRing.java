@@ -0,0 +1,78 @@
+package dev.kuku.interestcalculator.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Immutable consistent hash ring mapping user ids to node ids.
+ * Every node owns {@link #VIRTUAL_NODES_PER_NODE} points on the ring so that load stays even and a join or leave
+ * only moves the ranges adjacent to the changed node's points.
+ */
+public final class ConsistentHashRing {
+    private static final int VIRTUAL_NODES_PER_NODE = 128;
+    private final NavigableMap<Long, String> ring;
+    private final Set<String> nodeIds;
+
+    private ConsistentHashRing(NavigableMap<Long, String> ring, Set<String> nodeIds) {
+        this.ring = ring;
+        this.nodeIds = nodeIds;
+    }
+
+    public static ConsistentHashRing empty() {
+        return new ConsistentHashRing(Collections.emptyNavigableMap(), Set.of());
+    }
+
+    public static ConsistentHashRing of(Collection<String> nodeIds) {
+        ConsistentHashRing ring = empty();
+        for (String nodeId : nodeIds) ring = ring.withNode(nodeId);
+        return ring;
+    }
+
+    public ConsistentHashRing withNode(String nodeId) {
+        if (nodeIds.contains(nodeId)) return this;
+        TreeMap<Long, String> newRing = new TreeMap<>(ring);
+        for (int i = 0; i < VIRTUAL_NODES_PER_NODE; i++) {
+            newRing.put(hash(nodeId + "#" + i), nodeId);
+        }
+        return new ConsistentHashRing(newRing, Set.copyOf(newRing.values()));
+    }
+
+    public ConsistentHashRing withoutNode(String nodeId) {
+        if (!nodeIds.contains(nodeId)) return this;
+        TreeMap<Long, String> newRing = new TreeMap<>(ring);
+        newRing.values().removeIf(nodeId::equals);
+        return new ConsistentHashRing(newRing, Set.copyOf(newRing.values()));
+    }
+
+    public String ownerOf(String userId) {
+        if (ring.isEmpty()) throw new IllegalStateException("Hash ring has no nodes");
+        Map.Entry<Long, String> owner = ring.ceilingEntry(hash(userId));
+        return owner != null ? owner.getValue() : ring.firstEntry().getValue();
+    }
+
+    public Set<String> getNodeIds() {
+        return nodeIds;
+    }
+
+    /**
+     * FNV-1a over the utf-8 bytes followed by the murmur3 finalizer, FNV alone clusters similar ids.
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
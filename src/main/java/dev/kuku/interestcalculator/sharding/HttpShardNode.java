@@ -0,0 +1,89 @@
+package dev.kuku.interestcalculator.sharding;
+
+import dev.kuku.interestcalculator.dto.ShardInteraction;
+import dev.kuku.interestcalculator.dto.ShardTopicScore;
+import dev.kuku.interestcalculator.fakeDatabase.UserInteractionsDb;
+import dev.kuku.interestcalculator.fakeDatabase.UserTopicScoreDb;
+import dev.kuku.interestcalculator.filter.ShardTokenFilter;
+import lombok.Getter;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestClient;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A peer node reached through its /internal/shard endpoints, every call carries the shared shard token.
+ */
+public class HttpShardNode implements ShardNode {
+    private static final ParameterizedTypeReference<List<ShardTopicScore>> SCORES = new ParameterizedTypeReference<>() {
+    };
+    @Getter
+    private final String nodeId;
+    private final RestClient restClient;
+
+    public HttpShardNode(String nodeId, String baseUrl, String token) {
+        this.nodeId = nodeId;
+        this.restClient = RestClient.builder()
+                .baseUrl(baseUrl)
+                .defaultHeader(ShardTokenFilter.HEADER, token)
+                .build();
+    }
+
+    @Override
+    public void updateUserTopicScores(String userId, UserInteractionsDb.UserInteractionRow interaction) {
+        restClient.post()
+                .uri("/internal/shard/interaction")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(ShardInteraction.from(interaction))
+                .retrieve()
+                .toBodilessEntity();
+    }
+
+    @Override
+    public List<UserTopicScoreDb.UserTopicScoreRow> getUserTopicScores(String userId) {
+        List<ShardTopicScore> scores = restClient.get()
+                .uri("/internal/shard/userScore/{userId}", userId)
+                .retrieve()
+                .body(SCORES);
+        return ShardTopicScore.toRows(userId, scores == null ? List.of() : scores);
+    }
+
+    @Override
+    public Set<String> getUserIds() {
+        Set<String> userIds = restClient.get()
+                .uri("/internal/shard/users")
+                .retrieve()
+                .body(new ParameterizedTypeReference<Set<String>>() {
+                });
+        return userIds == null ? Set.of() : userIds;
+    }
+
+    @Override
+    public List<UserTopicScoreDb.UserTopicScoreRow> exportUser(String userId, Set<String> ringNodeIds) {
+        List<ShardTopicScore> scores = restClient.get()
+                .uri(uri -> uri.path("/internal/shard/userScore/{userId}").queryParam("ring", ringNodeIds.toArray()).build(userId))
+                .retrieve()
+                .body(SCORES);
+        return ShardTopicScore.toRows(userId, scores == null ? List.of() : scores);
+    }
+
+    @Override
+    public void importUser(String userId, List<UserTopicScoreDb.UserTopicScoreRow> rows, Set<String> ringNodeIds) {
+        restClient.put()
+                .uri(uri -> uri.path("/internal/shard/userScore/{userId}").queryParam("ring", ringNodeIds.toArray()).build(userId))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(ShardTopicScore.from(rows))
+                .retrieve()
+                .toBodilessEntity();
+    }
+
+    @Override
+    public void deleteUser(String userId, Set<String> ringNodeIds) {
+        restClient.delete()
+                .uri(uri -> uri.path("/internal/shard/userScore/{userId}").queryParam("ring", ringNodeIds.toArray()).build(userId))
+                .retrieve()
+                .toBodilessEntity();
+    }
+}
@@ -0,0 +1,52 @@
+package dev.kuku.interestcalculator.sharding;
+
+import dev.kuku.interestcalculator.UserTopicScoringSystem.UserTopicScoringSystem;
+import dev.kuku.interestcalculator.fakeDatabase.UserInteractionsDb;
+import dev.kuku.interestcalculator.fakeDatabase.UserTopicScoreDb;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The slice of user state held by this JVM. Users are only moved to or from it by this JVM's own router, which
+ * already routes by the ring being moved onto, so the ring of a move is not checked here.
+ */
+@RequiredArgsConstructor
+public class LocalShardNode implements ShardNode {
+    @Getter
+    private final String nodeId;
+    private final UserTopicScoringSystem userTopicScoringSystem;
+    private final UserTopicScoreDb userTopicScoreDb;
+
+    @Override
+    public void updateUserTopicScores(String userId, UserInteractionsDb.UserInteractionRow interaction) {
+        userTopicScoringSystem.updateUserTopicScores(userId, interaction);
+    }
+
+    @Override
+    public List<UserTopicScoreDb.UserTopicScoreRow> getUserTopicScores(String userId) {
+        return userTopicScoreDb.getUserTopicScores(userId);
+    }
+
+    @Override
+    public Set<String> getUserIds() {
+        return userTopicScoreDb.getUserIds();
+    }
+
+    @Override
+    public List<UserTopicScoreDb.UserTopicScoreRow> exportUser(String userId, Set<String> ringNodeIds) {
+        return userTopicScoreDb.getUserTopicScores(userId);
+    }
+
+    @Override
+    public void importUser(String userId, List<UserTopicScoreDb.UserTopicScoreRow> rows, Set<String> ringNodeIds) {
+        userTopicScoreDb.putUserTopicScores(userId, rows);
+    }
+
+    @Override
+    public void deleteUser(String userId, Set<String> ringNodeIds) {
+        userTopicScoreDb.removeUserTopicScores(userId);
+    }
+}
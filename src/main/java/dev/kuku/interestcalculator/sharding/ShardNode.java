@@ -0,0 +1,41 @@
+package dev.kuku.interestcalculator.sharding;
+
+import dev.kuku.interestcalculator.fakeDatabase.UserInteractionsDb;
+import dev.kuku.interestcalculator.fakeDatabase.UserTopicScoreDb;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A node owning a slice of the user score state.
+ */
+public interface ShardNode {
+    String getNodeId();
+
+    void updateUserTopicScores(String userId, UserInteractionsDb.UserInteractionRow interaction);
+
+    List<UserTopicScoreDb.UserTopicScoreRow> getUserTopicScores(String userId);
+
+    Set<String> getUserIds();
+
+    /**
+     * Copy of the user's profile for a move, read on the old owner even if its own ring already lists the new one.
+     *
+     * @param ringNodeIds nodes of the ring the user moves onto
+     */
+    List<UserTopicScoreDb.UserTopicScoreRow> exportUser(String userId, Set<String> ringNodeIds);
+
+    /**
+     * Takes over the user, called on the new owner, which may not know the ring the user moves onto yet.
+     *
+     * @param ringNodeIds nodes of the ring the user moves onto
+     */
+    void importUser(String userId, List<UserTopicScoreDb.UserTopicScoreRow> rows, Set<String> ringNodeIds);
+
+    /**
+     * Drops the user's profile, called on the old owner once the new owner imported a copy.
+     *
+     * @param ringNodeIds nodes of the ring the user moves onto
+     */
+    void deleteUser(String userId, Set<String> ringNodeIds);
+}
@@ -0,0 +1,437 @@
+package dev.kuku.interestcalculator.sharding;
+
+import dev.kuku.interestcalculator.UserTopicScoringSystem.UserTopicScoringSystem;
+import dev.kuku.interestcalculator.fakeDatabase.UserInteractionsDb;
+import dev.kuku.interestcalculator.fakeDatabase.UserTopicScoreDb;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Routes interactions and score reads to the node owning the user on the consistent hash ring.
+ * Content and topic metadata is not sharded, every node resolves content from its own local ContentDb and TopicDb,
+ * only the user's interaction travels to the owner.
+ * <p>
+ * Membership changes rebalance eagerly while routing goes on, a batch of user stripes at a time: with the batch's
+ * stripes held, the old nodes are listed and each of the batch's users whose owner changed is copied from the old
+ * node, imported into the new one and only then deleted on the old one. A failed import leaves the profile where it
+ * was. Users of a moved batch route by the new ring, all others by the old one, so a call only waits for the move of
+ * its own batch and a slow call only holds up the move of its batch. Once every batch is moved the new ring routes
+ * exactly like the migration did and replaces the old one.
+ * <p>
+ * Calls other nodes route here only run for users this node owns. Nodes are told about a membership change one by
+ * one, so a node also owns the users another node's router moved onto it and stops owning the ones moved off it,
+ * until its own ring catches up. A node with an old ring thereby gets refused instead of recreating a profile on the
+ * user's former owner.
+ * <p>
+ * A move takes the profile only. The user's interaction log and deferred interactions stay behind, so a profile
+ * rebuild is refused on a node that is sharded, see {@link #isSharded()}, and the old node drops deferred interactions
+ * of users it no longer owns.
+ */
+@Slf4j
+@Service
+public class ShardRouter {
+    private static final int STRIPES = 256;
+    // Stripes moved together, every batch lists the old nodes' users once
+    private static final int STRIPES_PER_BATCH = 16;
+
+    private final String localNodeId;
+    private final String token;
+    // Left nodes stay, a call that read the old ring may still be on its way to them
+    private final Map<String, ShardNode> nodes = new ConcurrentHashMap<>();
+    // One membership change at a time, without blocking routing while it moves users
+    private final Lock membershipChangeLock = new ReentrantLock();
+    // This router's calls hold the read lock of the user's stripe, its moves hold the write lock
+    private final ReadWriteLock[] routeStripes = new ReadWriteLock[STRIPES];
+    // Calls running on the local node hold the read lock, moves of local profiles hold the write lock. Apart from
+    // routeStripes so that serving a call never waits for this router's moves to other nodes
+    private final ReadWriteLock[] serveStripes = new ReadWriteLock[STRIPES];
+    private volatile ConsistentHashRing ring = ConsistentHashRing.empty();
+    // Membership change in progress, null when none
+    private volatile Migration migration;
+    // Users other nodes moved onto this node, or off it, that this node's ring does not reflect yet
+    private final Set<String> adopted = ConcurrentHashMap.newKeySet();
+    private final Set<String> released = ConcurrentHashMap.newKeySet();
+    // Ring the last move from another node went onto, every user of a migration names the same one
+    private volatile ConsistentHashRing moveRing = ConsistentHashRing.empty();
+    private volatile boolean usersExchanged;
+
+    /**
+     * @param peers comma separated nodeId=baseUrl pairs of the other nodes, empty when running single node
+     * @param token shared secret peers send to each other's /internal/shard endpoints
+     */
+    @Autowired
+    public ShardRouter(UserTopicScoringSystem userTopicScoringSystem, UserTopicScoreDb userTopicScoreDb,
+                       @Value("${shard.node-id:local}") String nodeId,
+                       @Value("${shard.peers:}") String peers,
+                       @Value("${shard.token:}") String token) {
+        this(new LocalShardNode(nodeId, userTopicScoringSystem, userTopicScoreDb), token);
+        // Static peers are part of the initial membership on every node, so there is nothing to rebalance
+        for (String peer : peers.split(",")) {
+            if (peer.isBlank()) continue;
+            String[] idAndUrl = peer.trim().split("=", 2);
+            if (idAndUrl.length != 2) throw new IllegalArgumentException("Invalid shard peer " + peer);
+            nodes.put(idAndUrl[0], remoteNode(idAndUrl[0], idAndUrl[1]));
+            ring = ring.withNode(idAndUrl[0]);
+        }
+        log.info("Shard {} started with nodes {}", nodeId, ring.getNodeIds());
+    }
+
+    public ShardRouter(ShardNode localNode, String token) {
+        this.localNodeId = localNode.getNodeId();
+        this.token = token;
+        for (int i = 0; i < STRIPES; i++) {
+            routeStripes[i] = new ReentrantReadWriteLock();
+            serveStripes[i] = new ReentrantReadWriteLock();
+        }
+        nodes.put(localNodeId, localNode);
+        ring = ring.withNode(localNodeId);
+    }
+
+    public ShardNode remoteNode(String nodeId, String baseUrl) {
+        return new HttpShardNode(nodeId, baseUrl, token);
+    }
+
+    public void updateUserTopicScores(String userId, UserInteractionsDb.UserInteractionRow interaction) {
+        routed(userId, owner -> {
+            owner.updateUserTopicScores(userId, interaction);
+            return null;
+        });
+    }
+
+    public List<UserTopicScoreDb.UserTopicScoreRow> getUserTopicScores(String userId) {
+        return routed(userId, owner -> owner.getUserTopicScores(userId));
+    }
+
+    public ShardNode ownerOf(String userId) {
+        return nodes.get(ownerIdOf(userId));
+    }
+
+    public boolean isLocalOwner(String userId) {
+        if (released.contains(userId)) return false;
+        return ownerIdOf(userId).equals(localNodeId);
+    }
+
+    /**
+     * True if the ring has other nodes or users were moved onto or off this node. This node's interaction log then
+     * lacks the history of some of its users.
+     */
+    public boolean isSharded() {
+        return ring.getNodeIds().size() > 1 || usersExchanged;
+    }
+
+    /**
+     * Runs a call for a user on the local node, holding the user's stripe so that the user can not be moved off this
+     * node halfway through it.
+     *
+     * @return the call's result, empty without running it if another node owns the user
+     */
+    public <T> Optional<T> ifLocalOwner(String userId, Supplier<T> call) {
+        Lock stripe = serveStripes[stripeIndex(userId)].readLock();
+        stripe.lock();
+        try {
+            return isLocalOwner(userId) ? Optional.of(call.get()) : Optional.empty();
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Reads the user for another node's router moving it off this node.
+     *
+     * @return the read, empty if the ring the user moves onto assigns it to this node, so there is nothing to move
+     */
+    public <T> Optional<T> ifMovingAway(String userId, Set<String> ringNodeIds, Supplier<T> read) {
+        return ringOf(ringNodeIds).ownerOf(userId).equals(localNodeId) ? Optional.empty() : Optional.of(read.get());
+    }
+
+    /**
+     * Imports a user another node's router moves onto this node, from then on this node owns it whatever its own
+     * ring says.
+     *
+     * @return false if the ring the user moves onto does not assign it to this node, nothing was imported
+     */
+    public boolean adoptUser(String userId, Set<String> ringNodeIds, Runnable importUser) {
+        if (!ringOf(ringNodeIds).ownerOf(userId).equals(localNodeId)) return false;
+        Lock stripe = serveStripes[stripeIndex(userId)].writeLock();
+        stripe.lock();
+        try {
+            importUser.run();
+            released.remove(userId);
+            adopted.add(userId);
+            usersExchanged = true;
+            return true;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Deletes a user another node's router moved off this node, waiting for calls still running for it. From then on
+     * calls for the user are refused whatever this node's own ring says.
+     *
+     * @return false if the ring the user moves onto assigns it to this node, nothing was deleted
+     */
+    public boolean releaseUser(String userId, Set<String> ringNodeIds, Runnable deleteUser) {
+        if (ringOf(ringNodeIds).ownerOf(userId).equals(localNodeId)) return false;
+        Lock stripe = serveStripes[stripeIndex(userId)].writeLock();
+        stripe.lock();
+        try {
+            adopted.remove(userId);
+            released.add(userId);
+            usersExchanged = true;
+            deleteUser.run();
+            return true;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    public Set<String> getNodeIds() {
+        return ring.getNodeIds();
+    }
+
+    /**
+     * Adds the node to the ring and moves the users whose range now belongs to it.
+     *
+     * @param rebalance false when only this node's view of the ring has to be updated because
+     *                  another node already performed the data movement
+     * @throws IllegalStateException if some users could not be moved, they stay on their old node and the change
+     *                               is finished by {@link #resumeRebalance()}
+     */
+    public void addNode(ShardNode node, boolean rebalance) {
+        membershipChangeLock.lock();
+        try {
+            resumeRebalance();
+            if (ring.getNodeIds().contains(node.getNodeId())) return;
+            nodes.put(node.getNodeId(), node);
+            ConsistentHashRing newRing = ring.withNode(node.getNodeId());
+            if (rebalance) {
+                migrate(new Migration(newRing, List.copyOf(nodes.values())));
+            } else {
+                switchRing(newRing);
+            }
+        } finally {
+            membershipChangeLock.unlock();
+        }
+    }
+
+    /**
+     * Removes the node from the ring after handing all of its users to their new owners.
+     * Removing the local node makes this JVM a pure router until it is added back.
+     *
+     * @throws IllegalStateException as for {@link #addNode}
+     */
+    public void removeNode(String nodeId, boolean rebalance) {
+        membershipChangeLock.lock();
+        try {
+            resumeRebalance();
+            ShardNode leaving = nodes.get(nodeId);
+            if (leaving == null || !ring.getNodeIds().contains(nodeId)) return;
+            if (ring.getNodeIds().size() == 1) throw new IllegalStateException("Cannot remove the last shard node");
+            ConsistentHashRing newRing = ring.withoutNode(nodeId);
+            if (rebalance) {
+                migrate(new Migration(newRing, List.of(leaving)));
+            } else {
+                switchRing(newRing);
+            }
+        } finally {
+            membershipChangeLock.unlock();
+        }
+    }
+
+    /**
+     * Retries the users a previous membership change could not move and finishes it.
+     *
+     * @throws IllegalStateException if some users still could not be moved
+     */
+    public void resumeRebalance() {
+        membershipChangeLock.lock();
+        try {
+            Migration current = migration;
+            if (current != null) migrate(current);
+        } finally {
+            membershipChangeLock.unlock();
+        }
+    }
+
+    private String ownerIdOf(String userId) {
+        if (adopted.contains(userId)) return localNodeId;
+        Migration current = migration;
+        if (current != null && stripeIndex(userId) < current.movedStripes().get() && !current.unimported().containsKey(userId)) {
+            return current.ring().ownerOf(userId);
+        }
+        return ring.ownerOf(userId);
+    }
+
+    private ConsistentHashRing ringOf(Set<String> nodeIds) {
+        ConsistentHashRing last = moveRing;
+        if (last.getNodeIds().equals(nodeIds)) return last;
+        ConsistentHashRing built = ConsistentHashRing.of(nodeIds);
+        moveRing = built;
+        return built;
+    }
+
+    // Moves other nodes made that this node's ring now reflects need no exception any more
+    private void forgetSettledMoves() {
+        adopted.removeIf(userId -> ring.ownerOf(userId).equals(localNodeId));
+        released.removeIf(userId -> !ring.ownerOf(userId).equals(localNodeId));
+    }
+
+    private <T> T routed(String userId, Function<ShardNode, T> call) {
+        Lock stripe = routeStripes[stripeIndex(userId)].readLock();
+        stripe.lock();
+        try {
+            ShardNode owner = ownerOf(userId);
+            if (!owner.getNodeId().equals(localNodeId)) return call.apply(owner);
+            // Same as ifLocalOwner, but the call may return null
+            Lock serving = serveStripes[stripeIndex(userId)].readLock();
+            serving.lock();
+            try {
+                if (!isLocalOwner(userId)) {
+                    throw new IllegalStateException("User " + userId + " was moved off this node, its ring is out of date");
+                }
+                return call.apply(owner);
+            } finally {
+                serving.unlock();
+            }
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    private void migrate(Migration change) {
+        migration = change;
+        int moved = 0;
+        while (change.movedStripes().get() < STRIPES) moved += moveBatch(change, change.movedStripes().get());
+        moved += retryFailedMoves(change);
+        int failed = change.unimported().size() + change.undeleted().size();
+        if (failed == 0) {
+            // Every user routes by the new ring already, switching changes no owner
+            ring = change.ring();
+            migration = null;
+            forgetSettledMoves();
+        }
+        log.info("Rebalanced {} users onto ring {}", moved, change.ring().getNodeIds());
+        if (failed > 0) {
+            throw new IllegalStateException(failed + " users could not be moved and stay on their old node, resume the rebalance");
+        }
+    }
+
+    /**
+     * Moves the users of the stripes from firstStripe on whose owner differs on the new ring. The stripes are held
+     * while the old nodes are listed, no user of the batch can be created on an old node after the listing.
+     */
+    private int moveBatch(Migration change, int firstStripe) {
+        int endStripe = Math.min(STRIPES, firstStripe + STRIPES_PER_BATCH);
+        int locked = firstStripe;
+        int moved = 0;
+        try {
+            for (; locked < endStripe; locked++) routeStripes[locked].writeLock().lock();
+            for (ShardNode source : change.sources()) {
+                for (String userId : usersOf(source)) {
+                    int stripe = stripeIndex(userId);
+                    if (stripe < firstStripe || stripe >= endStripe) continue;
+                    if (change.ring().ownerOf(userId).equals(source.getNodeId())) continue;
+                    if (move(change, source, userId)) moved++;
+                }
+            }
+            change.movedStripes().set(endStripe);
+        } finally {
+            for (int i = locked - 1; i >= firstStripe; i--) routeStripes[i].writeLock().unlock();
+        }
+        return moved;
+    }
+
+    private Set<String> usersOf(ShardNode source) {
+        try {
+            return source.getUserIds();
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Could not list the users of " + source.getNodeId() + ", resume the rebalance", e);
+        }
+    }
+
+    private int retryFailedMoves(Migration change) {
+        int moved = 0;
+        for (Map<String, ShardNode> failed : List.of(change.unimported(), change.undeleted())) {
+            for (Map.Entry<String, ShardNode> user : List.copyOf(failed.entrySet())) {
+                Lock stripe = routeStripes[stripeIndex(user.getKey())].writeLock();
+                stripe.lock();
+                try {
+                    if (move(change, user.getValue(), user.getKey())) moved++;
+                } finally {
+                    stripe.unlock();
+                }
+            }
+        }
+        return moved;
+    }
+
+    // Caller holds the user's route stripe
+    private boolean move(Migration change, ShardNode source, String userId) {
+        ShardNode target = nodes.get(change.ring().ownerOf(userId));
+        Set<String> ringNodeIds = change.ring().getNodeIds();
+        boolean local = source.getNodeId().equals(localNodeId) || target.getNodeId().equals(localNodeId);
+        // Calls other nodes routed here must not touch a local profile while it moves
+        Lock serveStripe = serveStripes[stripeIndex(userId)].writeLock();
+        if (local) serveStripe.lock();
+        try {
+            // Imported but the delete failed last time, the new owner holds the current profile
+            if (!change.undeleted().containsKey(userId)) {
+                target.importUser(userId, source.exportUser(userId, ringNodeIds), ringNodeIds);
+                change.unimported().remove(userId);
+                change.undeleted().put(userId, source);
+            }
+            source.deleteUser(userId, ringNodeIds);
+            change.undeleted().remove(userId);
+            if (local) usersExchanged = true;
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Failed to move user {} from {} to {}", userId, source.getNodeId(), target.getNodeId(), e);
+            if (!change.undeleted().containsKey(userId)) change.unimported().put(userId, source);
+            return false;
+        } finally {
+            if (local) serveStripe.unlock();
+        }
+    }
+
+    private void switchRing(ConsistentHashRing newRing) {
+        ring = newRing;
+        forgetSettledMoves();
+    }
+
+    // Package private for tests
+    static int batchOf(String userId) {
+        return stripeIndex(userId) / STRIPES_PER_BATCH;
+    }
+
+    private static int stripeIndex(String userId) {
+        int hash = userId.hashCode();
+        hash ^= hash >>> 16;
+        return hash & (STRIPES - 1);
+    }
+
+    /**
+     * @param sources      nodes that may hold users whose owner changes
+     * @param movedStripes stripes below it are moved, their users route by the new ring
+     * @param unimported   users the new owner could not import, they stay on and route to their old node
+     * @param undeleted    users the new owner imported whose copy on the old node is not deleted yet
+     */
+    private record Migration(ConsistentHashRing ring, List<ShardNode> sources, AtomicInteger movedStripes,
+                             Map<String, ShardNode> unimported, Map<String, ShardNode> undeleted) {
+        private Migration(ConsistentHashRing ring, List<ShardNode> sources) {
+            this(ring, sources, new AtomicInteger(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        }
+    }
+}
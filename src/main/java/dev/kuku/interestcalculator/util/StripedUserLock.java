@@ -0,0 +1,65 @@
+package dev.kuku.interestcalculator.util;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Fixed array of locks keyed by userId hash.
+ * Two updates of the same user always contend on the same lock while different users almost always proceed in
+ * parallel, without allocating a lock per user. Locks are reentrant so a locked section may call into code that
+ * locks the same user again.
+ */
+@Component
+public class StripedUserLock {
+    private static final int STRIPES = 1024;
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    public StripedUserLock() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public ReentrantLock lockFor(String userId) {
+        int hash = userId.hashCode();
+        // Spread the high bits, String.hashCode of similar ids differs mostly in the low bits
+        hash ^= hash >>> 16;
+        return locks[hash & (STRIPES - 1)];
+    }
+
+    public void withLock(String userId, Runnable action) {
+        ReentrantLock lock = lockFor(userId);
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public <T> T withLock(String userId, Supplier<T> action) {
+        ReentrantLock lock = lockFor(userId);
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs the action with every stripe held, so no user is in a locked section while it runs. Stripes are always
+     * taken in the same order, two callers can not deadlock on each other.
+     */
+    public void withAllLocks(Runnable action) {
+        int locked = 0;
+        try {
+            for (; locked < STRIPES; locked++) locks[locked].lock();
+            action.run();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) locks[i].unlock();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package dev.kuku.interestcalculator.ContentRankingSystem;
+
+import dev.kuku.interestcalculator.fakeDatabase.ContentDb;
+import dev.kuku.interestcalculator.fakeDatabase.TopicDb;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Ranking latency over a million items. Excluded from the normal build, run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class ContentTopicIndexBenchmark {
+
+    @Test
+    void topTwentyOfOneMillionItems() {
+        TopicDb topicDb = new TopicDb();
+        ContentTopicIndex index = new ContentTopicIndex(new ContentDb(event -> {
+        }), topicDb);
+        Random random = new Random(42);
+        int dictionarySize = 20_000;
+        for (int i = 0; i < 1_000_000; i++) {
+            index.index("c" + i, List.of("t" + random.nextInt(dictionarySize), "t" + random.nextInt(dictionarySize),
+                    "t" + random.nextInt(dictionarySize)));
+        }
+
+        int[] ids = new int[32];
+        float[] weights = new float[32];
+        int queries = 2_000;
+        long totalNanos = 0;
+        for (int q = 0; q < queries * 2; q++) {
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = topicDb.getTopicId("t" + random.nextInt(dictionarySize));
+                weights[i] = 10f - i * 0.3f;
+            }
+            long start = System.nanoTime();
+            List<RankedContent> top = index.topN(ids, weights, 20);
+            // First half warms up the JIT
+            if (q >= queries) totalNanos += System.nanoTime() - start;
+            assertEquals(20, top.size());
+        }
+        System.out.printf("top 20 of 1M content items for a 32 topic user: %.1f us/query%n", totalNanos / 1000.0 / queries);
+    }
+}
@@ -0,0 +1,68 @@
+package dev.kuku.interestcalculator.ContentRankingSystem;
+
+import dev.kuku.interestcalculator.fakeDatabase.ContentDb;
+import dev.kuku.interestcalculator.fakeDatabase.TopicDb;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentTopicIndexTest {
+
+    private static ContentTopicIndex newIndex(TopicDb topicDb) {
+        return new ContentTopicIndex(new ContentDb(event -> {
+        }), topicDb);
+    }
+
+    private static List<String> randomTopics(Random random, int dictionarySize) {
+        return List.of("t" + random.nextInt(dictionarySize), "t" + random.nextInt(dictionarySize), "t" + random.nextInt(dictionarySize));
+    }
+
+    @Test
+    void matchesBruteForceDotProduct() {
+        TopicDb topicDb = new TopicDb();
+        ContentTopicIndex index = newIndex(topicDb);
+        Random random = new Random(7);
+        Map<String, Set<String>> contents = new HashMap<>();
+        for (int i = 0; i < 2_000; i++) {
+            Set<String> topics = new HashSet<>(randomTopics(random, 50));
+            contents.put("c" + i, topics);
+            index.index("c" + i, topics);
+        }
+        // Re-tagging replaces the old postings
+        contents.put("c0", Set.of("t1"));
+        index.index("c0", Set.of("t1"));
+
+        Map<String, Float> query = Map.of("t1", 3f, "t2", 1.5f, "t3", 0.25f);
+        int[] ids = query.keySet().stream().mapToInt(topicDb::getTopicId).toArray();
+        float[] weights = new float[ids.length];
+        for (int i = 0; i < ids.length; i++) weights[i] = query.get(topicDb.getTopicById(ids[i]));
+
+        List<RankedContent> ranked = index.topN(ids, weights, 20);
+        List<Double> expected = contents.values().stream()
+                .map(topics -> topics.stream().mapToDouble(t -> query.getOrDefault(t, 0f)).sum() / Math.sqrt(topics.size()))
+                .filter(score -> score > 0)
+                .sorted(Comparator.reverseOrder())
+                .limit(20)
+                .toList();
+        assertEquals(expected.size(), ranked.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), ranked.get(i).score(), 1e-4);
+        }
+    }
+
+    @Test
+    void keepsOnlyTheBestContentAndSkipsContentWithoutSharedTopics() {
+        TopicDb topicDb = new TopicDb();
+        ContentTopicIndex index = newIndex(topicDb);
+        index.index("both", List.of("java", "spring"));
+        index.index("java-only", List.of("java", "kotlin"));
+        index.index("unrelated", List.of("cooking"));
+        int[] ids = {topicDb.getTopicId("java"), topicDb.getTopicId("spring")};
+
+        List<RankedContent> top = index.topN(ids, new float[]{2f, 1f}, 5);
+        assertEquals(List.of("both", "java-only"), top.stream().map(RankedContent::contentId).toList());
+        assertEquals(1, index.topN(ids, new float[]{2f, 1f}, 1).size());
+    }
+}
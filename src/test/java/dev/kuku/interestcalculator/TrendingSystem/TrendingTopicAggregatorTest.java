@@ -0,0 +1,54 @@
+package dev.kuku.interestcalculator.TrendingSystem;
+
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ScoringParameters.ScoringParameterRegistry;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ScoringParameters.ScoringParameters;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.TopicScorer.subSystem.InteractionScorer;
+import dev.kuku.interestcalculator.fakeDatabase.ContentDb;
+import dev.kuku.interestcalculator.fakeDatabase.TopicDb;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TrendingTopicAggregatorTest {
+    private static final long MINUTE = 60_000;
+    private static final long HOUR = 60 * MINUTE;
+
+    @Test
+    void eventsExpireFromEachWindowIndependently() {
+        AtomicLong now = new AtomicLong(1_000 * HOUR);
+        TopicDb topicDb = new TopicDb();
+        TrendingTopicAggregator aggregator = new TrendingTopicAggregator(new ContentDb(event -> {
+        }), topicDb, new InteractionScorer(), ScoringParameterRegistry.fixed(ScoringParameters.DEFAULTS), () -> Instant.ofEpochMilli(now.get()));
+        int gaming = topicDb.getOrCreateTopicId("gaming");
+        int food = topicDb.getOrCreateTopicId("food");
+
+        for (int i = 0; i < 3; i++) aggregator.record(gaming, now.get(), 0.5f);
+        aggregator.record(food, now.get(), 1f);
+        assertEquals(3, aggregator.getTopicCount("gaming", TrendingWindow.LAST_HOUR));
+        assertEquals(4, aggregator.getTotalCount(TrendingWindow.LAST_WEEK));
+        assertEquals("gaming", aggregator.getTrendingTopics(TrendingWindow.LAST_DAY, 1).get(0).topic());
+
+        now.addAndGet(2 * HOUR);
+        aggregator.record(food, now.get(), 1f);
+        aggregator.record(food, now.get(), 1f);
+        assertEquals(0, aggregator.getTopicCount("gaming", TrendingWindow.LAST_HOUR));
+        assertEquals(3, aggregator.getTopicCount("gaming", TrendingWindow.LAST_DAY));
+        assertEquals("food", aggregator.getTrendingTopics(TrendingWindow.LAST_DAY, 1).get(0).topic());
+
+        now.addAndGet(23 * HOUR);
+        assertEquals(0, aggregator.getTopicCount("gaming", TrendingWindow.LAST_DAY));
+        assertEquals(2, aggregator.getTopicCount("food", TrendingWindow.LAST_DAY));
+        assertEquals(3, aggregator.getTopicCount("gaming", TrendingWindow.LAST_WEEK));
+
+        // A late event inside the week is still counted, one older than the week is not
+        aggregator.record(gaming, now.get() - 3 * 24 * HOUR, 0.5f);
+        aggregator.record(gaming, now.get() - 8 * 24 * HOUR, 0.5f);
+        assertEquals(4, aggregator.getTopicCount("gaming", TrendingWindow.LAST_WEEK));
+
+        now.addAndGet(7 * 24 * HOUR);
+        assertEquals(0, aggregator.getTotalCount(TrendingWindow.LAST_WEEK));
+    }
+}
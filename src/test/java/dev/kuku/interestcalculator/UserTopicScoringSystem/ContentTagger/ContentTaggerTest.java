@@ -0,0 +1,93 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.ContentTagger;
+
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ContentTagger.subSystem.ContentDeduplicator;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ContentTagger.subSystem.LocalTopicClassifier;
+import dev.kuku.interestcalculator.fakeDatabase.ContentDb;
+import dev.kuku.interestcalculator.fakeDatabase.TopicDb;
+import dev.kuku.interestcalculator.services.ResilientTopicExtractor;
+import dev.kuku.interestcalculator.services.TopicExtractionException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ContentTaggerTest {
+    private static final int CALLERS = 4;
+    private final ContentDeduplicator contentDeduplicator = mock(ContentDeduplicator.class);
+    private final LocalTopicClassifier localTopicClassifier = mock(LocalTopicClassifier.class);
+    private final ResilientTopicExtractor topicExtractor = mock(ResilientTopicExtractor.class);
+    private final ContentTagger contentTagger = new ContentTagger(contentDeduplicator, localTopicClassifier, topicExtractor, new TopicDb());
+    private final ContentDb.ContentRow content = new ContentDb.ContentRow("post", "Cooking ramen tonight", Set.of(), "user", 0);
+    private final CountDownLatch llmCalled = new CountDownLatch(1);
+    private final CountDownLatch llmAnswers = new CountDownLatch(1);
+
+    ContentTaggerTest() {
+        when(contentDeduplicator.findDuplicate(anyString())).thenReturn(Optional.empty());
+        when(localTopicClassifier.classify(anyString())).thenReturn(Optional.empty());
+    }
+
+    @Test
+    void concurrentTaggingsOfTheSameContentShareOneLlmCall() throws Exception {
+        when(topicExtractor.getTopics(any(), anyString())).thenAnswer(invocation -> {
+            llmCalled.countDown();
+            llmAnswers.await();
+            return Set.of("food", "cooking");
+        });
+
+        List<Future<Set<String>>> taggings = tagConcurrently();
+        for (Future<Set<String>> tagging : taggings) assertEquals(Set.of("food", "cooking"), tagging.get(5, TimeUnit.SECONDS));
+        verify(topicExtractor, times(1)).getTopics(any(), anyString());
+        verify(localTopicClassifier, times(1)).trainLater("Cooking ramen tonight", Set.of("food", "cooking"));
+
+        // Finished taggings are not remembered, content tagged again goes back to the LLM
+        contentTagger.tag(content);
+        verify(topicExtractor, times(2)).getTopics(any(), anyString());
+    }
+
+    @Test
+    void waitersGetTheFailureOfTheSharedTagging() throws Exception {
+        when(topicExtractor.getTopics(any(), anyString())).thenAnswer(invocation -> {
+            llmCalled.countDown();
+            llmAnswers.await();
+            throw new TopicExtractionException(TopicExtractionException.Reason.TIMEOUT, "no answer");
+        });
+
+        for (Future<Set<String>> tagging : tagConcurrently()) {
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> tagging.get(5, TimeUnit.SECONDS));
+            assertEquals(TopicExtractionException.Reason.TIMEOUT, ((TopicExtractionException) failure.getCause()).getReason());
+        }
+        verify(topicExtractor, times(1)).getTopics(any(), anyString());
+    }
+
+    // Every caller is waiting on the first one's LLM call before it answers
+    private List<Future<Set<String>>> tagConcurrently() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<Set<String>>> taggings = new ArrayList<>();
+            taggings.add(pool.submit(() -> contentTagger.tag(content)));
+            assertTrue(llmCalled.await(5, TimeUnit.SECONDS));
+            for (int i = 1; i < CALLERS; i++) taggings.add(pool.submit(() -> contentTagger.tag(content)));
+            // The others find the tagging in flight quickly, give them time to join it
+            Thread.sleep(200);
+            llmAnswers.countDown();
+            for (Future<Set<String>> tagging : taggings) {
+                try {
+                    tagging.get(5, TimeUnit.SECONDS);
+                } catch (ExecutionException ignored) {
+                    // Checked by the test
+                }
+            }
+            return taggings;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.ContentTagger.subSystem;
+
+import dev.kuku.interestcalculator.fakeDatabase.ContentDb;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Near duplicate lookup latency over a full index. Excluded from the normal build, run with
+ * {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class ContentDeduplicatorBenchmark {
+
+    private static String randomText(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            int length = 3 + random.nextInt(6);
+            for (int c = 0; c < length; c++) text.append((char) ('a' + random.nextInt(26)));
+            text.append(' ');
+        }
+        return text.toString().trim();
+    }
+
+    @Test
+    void lookupOverAFullIndex() {
+        ContentDeduplicator deduplicator = new ContentDeduplicator(new ContentDb(event -> {
+        }));
+        Random random = new Random(11);
+        for (int i = 0; i < ContentDeduplicator.CAPACITY; i++) {
+            deduplicator.index("c" + i, randomText(random, 12), Set.of("t" + i % 100));
+        }
+
+        int lookups = 20_000;
+        String[] queries = new String[lookups];
+        for (int i = 0; i < lookups; i++) queries[i] = randomText(random, 12);
+        long start = 0;
+        for (int i = 0; i < lookups * 2; i++) {
+            // First half warms up the JIT
+            if (i == lookups) start = System.nanoTime();
+            deduplicator.findDuplicate(queries[i % lookups]);
+        }
+        System.out.printf("near duplicate lookup over %d signatures: %.2f us/lookup%n", deduplicator.size(),
+                (System.nanoTime() - start) / 1000.0 / lookups);
+    }
+}
@@ -0,0 +1,70 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.ContentTagger.subSystem;
+
+import dev.kuku.interestcalculator.fakeDatabase.ContentDb;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentDeduplicatorTest {
+
+    private static ContentDeduplicator newDeduplicator() {
+        return new ContentDeduplicator(new ContentDb(event -> {
+        }));
+    }
+
+    private static String randomText(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            int length = 3 + random.nextInt(6);
+            for (int c = 0; c < length; c++) text.append((char) ('a' + random.nextInt(26)));
+            text.append(' ');
+        }
+        return text.toString().trim();
+    }
+
+    @Test
+    void repostsAndNearCopiesReuseTopics() {
+        ContentDeduplicator deduplicator = newDeduplicator();
+        deduplicator.index("post002", "Just finished God of War Ragnarok. What a ride!", Set.of("gaming", "ps5"));
+        deduplicator.index("post008", "Just published a new tutorial: Build a REST API with Spring Boot", Set.of("programming", "java"));
+
+        Optional<ContentDeduplicator.Duplicate> repost = deduplicator.findDuplicate("just finished god of war ragnarok!!! what a ride 🎮");
+        assertTrue(repost.isPresent());
+        assertEquals("post002", repost.get().contentId());
+        assertEquals(0, repost.get().hammingDistance());
+
+        Optional<ContentDeduplicator.Duplicate> nearCopy = deduplicator.findDuplicate("Just published a new tutorial: Build a REST API with Spring Boot 3");
+        assertTrue(nearCopy.isPresent());
+        assertEquals(Set.of("programming", "java"), nearCopy.get().topics());
+
+        assertTrue(deduplicator.findDuplicate("Trying out this butter chicken recipe tonight").isEmpty());
+        assertTrue(deduplicator.findDuplicate("🔥🔥🔥").isEmpty());
+    }
+
+    @Test
+    void memoryStaysBoundedAndUnrelatedTextIsNotMatched() {
+        ContentDeduplicator deduplicator = newDeduplicator();
+        Random random = new Random(11);
+        int items = ContentDeduplicator.CAPACITY + 20_000;
+        String first = null;
+        String last = null;
+        for (int i = 0; i < items; i++) {
+            String text = randomText(random, 12);
+            if (i == 0) first = text;
+            last = text;
+            deduplicator.index("c" + i, text, Set.of("t" + i % 100));
+        }
+        assertEquals(ContentDeduplicator.CAPACITY, deduplicator.size());
+        // The oldest entries were overwritten by the ring
+        assertTrue(deduplicator.findDuplicate(first).isEmpty());
+        assertEquals("c" + (items - 1), deduplicator.findDuplicate(last).orElseThrow().contentId());
+
+        for (int i = 0; i < 2_000; i++) {
+            assertTrue(deduplicator.findDuplicate(randomText(random, 12)).isEmpty());
+        }
+    }
+}
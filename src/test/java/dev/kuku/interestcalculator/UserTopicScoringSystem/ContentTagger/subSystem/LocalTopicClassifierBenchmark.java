@@ -0,0 +1,70 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.ContentTagger.subSystem;
+
+import dev.kuku.interestcalculator.fakeDatabase.ContentDb;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Classification latency with a full label set while training goes on. Excluded from the normal build, run with
+ * {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class LocalTopicClassifierBenchmark {
+
+    private static String randomText(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            int length = 3 + random.nextInt(6);
+            for (int c = 0; c < length; c++) text.append((char) ('a' + random.nextInt(26)));
+            text.append(' ');
+        }
+        return text.toString().trim();
+    }
+
+    @Test
+    void classifyWithAFullLabelSetWhileTraining() throws Exception {
+        int maxLabels = 256;
+        LocalTopicClassifier classifier = new LocalTopicClassifier(new ContentDb(event -> {
+        }), 0.9, 1.0, 0, maxLabels);
+        Random random = new Random(17);
+        // Twice as many topics as labels, so training keeps replacing them
+        for (int i = 0; i < maxLabels * 4; i++) {
+            classifier.train(randomText(random, 20), Set.of("t" + i % (maxLabels * 2)));
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread trainer = new Thread(() -> {
+            Random trainerRandom = new Random(23);
+            String[] examples = new String[1_000];
+            for (int i = 0; i < examples.length; i++) examples[i] = randomText(trainerRandom, 20);
+            for (int i = 0; running.get(); i++) {
+                classifier.train(examples[i % examples.length], Set.of("t" + trainerRandom.nextInt(maxLabels * 2)));
+            }
+        });
+        trainer.start();
+        try {
+            int lookups = 20_000;
+            String[] queries = new String[lookups];
+            for (int i = 0; i < lookups; i++) queries[i] = randomText(random, 20);
+            long[] nanos = new long[lookups];
+            for (int i = 0; i < lookups * 2; i++) {
+                long start = System.nanoTime();
+                classifier.classify(queries[i % lookups]);
+                // First half warms up the JIT
+                if (i >= lookups) nanos[i - lookups] = System.nanoTime() - start;
+            }
+            Arrays.sort(nanos);
+            System.out.printf("classify over %d topics while training: p50 %.1f us, p99 %.1f us, max %.1f us%n",
+                    classifier.getLabelCount(), nanos[lookups / 2] / 1000.0, nanos[lookups * 99 / 100] / 1000.0,
+                    nanos[lookups - 1] / 1000.0);
+        } finally {
+            running.set(false);
+            trainer.join();
+        }
+    }
+}
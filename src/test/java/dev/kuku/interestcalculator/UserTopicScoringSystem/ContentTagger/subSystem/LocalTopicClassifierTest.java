@@ -0,0 +1,92 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.ContentTagger.subSystem;
+
+import dev.kuku.interestcalculator.fakeDatabase.ContentDb;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalTopicClassifierTest {
+    private static final List<String> GAMES = List.of("Elden Ring", "Hollow Knight", "Zelda", "Valorant", "Hades", "Sekiro");
+    private static final List<String> DISHES = List.of("butter chicken", "ramen", "lasagna", "tacos", "sourdough", "curry");
+
+    private static LocalTopicClassifier newClassifier(int minTrainingExamples) {
+        return newClassifier(minTrainingExamples, 256);
+    }
+
+    private static LocalTopicClassifier newClassifier(int minTrainingExamples, int maxLabels) {
+        return new LocalTopicClassifier(new ContentDb(event -> {
+        }), 0.9, 1.0, minTrainingExamples, maxLabels);
+    }
+
+    private static String pick(Random random, List<String> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    private static void trainOnLlmAnswers(LocalTopicClassifier classifier, int rounds) {
+        Random random = new Random(3);
+        for (int i = 0; i < rounds; i++) {
+            classifier.train("Finally beat the final boss in " + pick(random, GAMES) + ", this game is so hard",
+                    Set.of("gaming"));
+            classifier.train("Cooking " + pick(random, DISHES) + " tonight, the recipe from my grandmother",
+                    Set.of("food", "cooking"));
+            classifier.train("Stocks dropped again, rebalancing my portfolio and buying index funds", Set.of("finance"));
+        }
+    }
+
+    @Test
+    void wellKnownTopicsAreClassifiedAndNovelContentIsLeftToTheLlm() {
+        LocalTopicClassifier classifier = newClassifier(10);
+        trainOnLlmAnswers(classifier, 40);
+
+        Optional<LocalTopicClassifier.Classification> game = classifier.classify("Finally beat the final boss in Sekiro, this game is hard");
+        assertTrue(game.isPresent());
+        assertEquals(Set.of("gaming"), game.get().topics());
+        assertTrue(game.get().confidence() >= 0.9);
+
+        Optional<LocalTopicClassifier.Classification> dinner = classifier.classify("Cooking ramen tonight, the recipe from my grandmother is the best");
+        assertTrue(dinner.isPresent());
+        assertEquals(Set.of("food", "cooking"), dinner.get().topics());
+
+        assertTrue(classifier.classify("Quantum entanglement lecture notes for the physics exam").isEmpty());
+        assertTrue(classifier.classify("🎉🎉🎉").isEmpty());
+    }
+
+    @Test
+    void staysQuietUntilTrainedEnough() {
+        LocalTopicClassifier classifier = newClassifier(1_000);
+        trainOnLlmAnswers(classifier, 40);
+        assertEquals(120, classifier.getTrainedExamples());
+        assertTrue(classifier.classify("Finally beat the final boss in Sekiro, this game is hard").isEmpty());
+    }
+
+    @Test
+    void aNewTopicBeyondTheCapReplacesTheLeastRecentlySeenOne() {
+        LocalTopicClassifier classifier = newClassifier(10, 3);
+        Random random = new Random(5);
+        for (int i = 0; i < 20; i++) {
+            classifier.train("Finally beat the final boss in " + pick(random, GAMES) + ", this game is so hard",
+                    Set.of("gaming"));
+        }
+        for (int i = 0; i < 20; i++) {
+            classifier.train("Cooking " + pick(random, DISHES) + " tonight, the recipe from my grandmother",
+                    Set.of("food", "cooking"));
+        }
+        assertEquals(3, classifier.getLabelCount());
+
+        // gaming was last a positive before food and cooking, travel takes its place
+        for (int i = 0; i < 40; i++) {
+            classifier.train("Cooking " + pick(random, DISHES) + " tonight, the recipe from my grandmother",
+                    Set.of("food", "cooking"));
+            classifier.train("Backpacking through Portugal, the trains and hostels were great", Set.of("travel"));
+        }
+        assertEquals(3, classifier.getLabelCount());
+        assertEquals(Set.of("travel"), classifier.classify("Backpacking through Portugal, the trains and hostels were great")
+                .map(LocalTopicClassifier.Classification::topics).orElse(Set.of()));
+        assertTrue(classifier.classify("Finally beat the final boss in Sekiro, this game is hard").isEmpty());
+    }
+}
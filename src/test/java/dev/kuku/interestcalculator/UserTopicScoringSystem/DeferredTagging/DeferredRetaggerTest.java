@@ -0,0 +1,152 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.DeferredTagging;
+
+import dev.kuku.interestcalculator.UserTopicScoringSystem.TopicDecayer.subSystem.TopicScoreTemporalExponentialDecayer;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.UserTopicScoringSystem;
+import dev.kuku.interestcalculator.fakeDatabase.ContentDb;
+import dev.kuku.interestcalculator.fakeDatabase.UserInteractionsDb;
+import dev.kuku.interestcalculator.fakeDatabase.UserTopicScoreDb;
+import dev.kuku.interestcalculator.services.OllamaStub;
+import dev.kuku.interestcalculator.services.ResilientTopicExtractor;
+import dev.kuku.interestcalculator.util.ManualClockTest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeferredRetaggerTest extends ManualClockTest {
+    private static final long OPEN_MILLIS = 300;
+    private static final OllamaStub OLLAMA;
+
+    static {
+        try {
+            OLLAMA = new OllamaStub();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Autowired
+    private UserTopicScoringSystem userTopicScoringSystem;
+    @Autowired
+    private UserTopicScoreDb userTopicScoreDb;
+    @Autowired
+    private UserInteractionsDb userInteractionsDb;
+    @Autowired
+    private ContentDb contentDb;
+    @Autowired
+    private TopicScoreTemporalExponentialDecayer exponentialDecayer;
+    @Autowired
+    private ResilientTopicExtractor topicExtractor;
+    @Autowired
+    private DeferredTaggingQueue deferredTaggingQueue;
+    @Autowired
+    private DeferredRetagger deferredRetagger;
+
+    @DynamicPropertySource
+    static void ollamaProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.ai.ollama.base-url", OLLAMA::getBaseUrl);
+        registry.add("llm.circuit.failure-threshold", () -> 2);
+        registry.add("llm.circuit.open-millis", () -> OPEN_MILLIS);
+        // Passes are run by the test
+        registry.add("tagging.retry-interval-millis", () -> 3_600_000);
+    }
+
+    @AfterAll
+    static void stopOllama() {
+        OLLAMA.close();
+    }
+
+    private static UserInteractionsDb.UserInteractionRow like(String userId, String contentId, long time) {
+        return new UserInteractionsDb.UserInteractionRow(userId, contentId, UserInteractionsDb.Discovery.SEARCH,
+                UserInteractionsDb.InteractionType.LIKE, time);
+    }
+
+    private Map<String, Double> profileAt(String userId, long time) {
+        return userTopicScoreDb.getUserTopicScores(userId).stream()
+                .collect(Collectors.toMap(row -> row.topic, row -> exponentialDecayer.decayedScore(row, time)));
+    }
+
+    @Test
+    void interactionsDeferredWhileTheModelIsDownAreScoredOnceItRecovers() throws Exception {
+        long start = Instant.parse("2026-05-01T00:00:00Z").toEpochMilli();
+        clock.set(start);
+        contentDb.addContent("deferred001", "Feeding a rye sourdough starter twice a day before the weekend bake", "user200", start);
+        contentDb.addContent("deferred002", "Which chess openings should a club player learn first against e4", "user201", start);
+        int loggedBefore = userInteractionsDb.getInteractionCount();
+        int requestsBefore = OLLAMA.getChatRequests();
+
+        OLLAMA.fail();
+        userTopicScoringSystem.updateUserTopicScores("late-user", like("late-user", "deferred001", start));
+        userTopicScoringSystem.updateUserTopicScores("late-user", like("late-user", "deferred002", start));
+        assertEquals(ResilientTopicExtractor.CircuitState.OPEN, topicExtractor.getState());
+        // Fast fail, the model is not asked again
+        userTopicScoringSystem.updateUserTopicScores("late-user", like("late-user", "deferred001", start));
+        assertEquals(requestsBefore + 2, OLLAMA.getChatRequests());
+
+        assertTrue(userTopicScoreDb.getUserTopicScores("late-user").isEmpty(), "nothing guessed while the model is down");
+        assertEquals(new DeferredTaggingQueue.QueueStats(2, 3, 100_000, 0), deferredTaggingQueue.getStats());
+        assertEquals(loggedBefore + 3, userInteractionsDb.getInteractionCount());
+        assertEquals(Set.of(), contentDb.getContentById("deferred001").getTopics());
+
+        OLLAMA.answer(request -> request.contains("rye sourdough starter") ? "sourdough, baking" : "chess, openings");
+        long later = clock.addAndGet(120_000);
+        assertEquals(0, deferredRetagger.retryDeferred(), "circuit still open");
+        Thread.sleep(OPEN_MILLIS + 50);
+        assertEquals(3, deferredRetagger.retryDeferred());
+        assertEquals(ResilientTopicExtractor.CircuitState.CLOSED, topicExtractor.getState());
+        assertEquals(new DeferredTaggingQueue.QueueStats(0, 0, 100_000, 0), deferredTaggingQueue.getStats());
+        assertEquals(Set.of("sourdough", "baking"), contentDb.getContentById("deferred001").getTopics());
+
+        // Scored late, the deferred like counts as much as a like scored on time and decayed since
+        clock.set(start);
+        userTopicScoringSystem.updateUserTopicScores("on-time-user", like("on-time-user", "deferred002", start));
+        clock.set(later);
+        Map<String, Double> late = profileAt("late-user", later);
+        Map<String, Double> onTime = profileAt("on-time-user", later);
+        for (String topic : Set.of("chess", "openings")) {
+            assertTrue(onTime.get(topic) > 0, topic);
+            assertEquals(onTime.get(topic), late.get(topic), 1e-9, topic);
+        }
+        assertTrue(late.get("sourdough") > late.get("chess"), "two likes on the sourdough post");
+    }
+
+    @Test
+    void duplicatesOfTaggedContentAreRetaggedWhileTheCircuitIsOpen() throws Exception {
+        long start = Instant.parse("2026-05-02T00:00:00Z").toEpochMilli();
+        clock.set(start);
+        String hikingPost = "Packing light for a two week hiking trip through the Scottish highlands in autumn";
+        contentDb.addContent("deferred003", hikingPost, "user202", start);
+        contentDb.addContent("deferred004", "Tuning the suspension of a gravel bike for long rides on forest roads", "user203", start);
+
+        OLLAMA.fail();
+        userTopicScoringSystem.updateUserTopicScores("retry-user", like("retry-user", "deferred003", start));
+        userTopicScoringSystem.updateUserTopicScores("retry-user", like("retry-user", "deferred004", start));
+        assertEquals(ResilientTopicExtractor.CircuitState.OPEN, topicExtractor.getState());
+        int requestsBefore = OLLAMA.getChatRequests();
+
+        // The same post shows up again and gets its topics without the model
+        contentDb.addContent("deferred005", hikingPost, "user204", start);
+        contentDb.setTopicsOfContent(Set.of("hiking", "travel"), "deferred005");
+        assertEquals(1, deferredRetagger.retryDeferred(), "the duplicate needs no LLM, the next content does");
+        assertEquals(requestsBefore, OLLAMA.getChatRequests());
+        assertEquals(ResilientTopicExtractor.CircuitState.OPEN, topicExtractor.getState());
+        assertEquals(Set.of("hiking", "travel"), contentDb.getContentById("deferred003").getTopics());
+        assertEquals(new DeferredTaggingQueue.QueueStats(1, 1, 100_000, 0), deferredTaggingQueue.getStats());
+        assertTrue(profileAt("retry-user", start).get("hiking") > 0);
+
+        OLLAMA.answer(request -> "cycling, bikes");
+        Thread.sleep(OPEN_MILLIS + 50);
+        assertEquals(1, deferredRetagger.retryDeferred());
+        assertEquals(ResilientTopicExtractor.CircuitState.CLOSED, topicExtractor.getState());
+    }
+}
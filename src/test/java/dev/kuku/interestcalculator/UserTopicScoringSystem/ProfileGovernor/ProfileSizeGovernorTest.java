@@ -0,0 +1,69 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.ProfileGovernor;
+
+import dev.kuku.interestcalculator.UserTopicScoringSystem.TopicScorer.subSystem.ProfileScoreBuffer;
+import dev.kuku.interestcalculator.fakeDatabase.UserTopicScoreDb;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProfileSizeGovernorTest {
+
+    private static void put(Map<String, UserTopicScoreDb.UserTopicScoreRow> profile, String topic, double score) {
+        profile.put(topic, new UserTopicScoreDb.UserTopicScoreRow("user", topic, score, 0));
+    }
+
+    @Test
+    void prunesNearZeroEntriesAndEvictsLowestScoresAboveTheCap() {
+        ProfileSizeGovernor governor = new ProfileSizeGovernor(3, 0.01);
+        Map<String, UserTopicScoreDb.UserTopicScoreRow> profile = new HashMap<>();
+        put(profile, "gaming", 9.0);
+        put(profile, "food", 0.5);
+        put(profile, "news", 0.005);
+        put(profile, "travel", 4.0);
+        put(profile, "music", 0.2);
+        put(profile, "tech", 2.0);
+
+        governor.govern(profile);
+
+        assertEquals(Set.of("gaming", "travel", "tech"), profile.keySet());
+        ProfileSizeGovernor.ProfileSizeDistribution distribution = governor.describe(new int[]{0, 1, 3, 3, 70, 5000});
+        assertEquals(1, distribution.prunedEntries());
+        assertEquals(2, distribution.evictedEntries());
+        assertEquals(5000, distribution.largestProfile());
+        assertEquals(2L, distribution.histogram().get("2-3"));
+        assertEquals(1L, distribution.histogram().get("64-127"));
+        assertEquals(1L, distribution.histogram().get("1024+"));
+    }
+
+    @Test
+    void topicsOfTheCurrentWriteAreNotEvicted() {
+        ProfileSizeGovernor governor = new ProfileSizeGovernor(3, 0.01);
+        Map<String, UserTopicScoreDb.UserTopicScoreRow> profile = new HashMap<>();
+        put(profile, "gaming", 9.0);
+        put(profile, "travel", 4.0);
+        put(profile, "tech", 2.0);
+        put(profile, "knitting", 0.1);
+
+        governor.govern(profile, Set.of("knitting"));
+        assertEquals(Set.of("gaming", "travel", "knitting"), profile.keySet());
+
+        ProfileScoreBuffer buffer = new ProfileScoreBuffer();
+        buffer.load(profile.values());
+        buffer.set("pottery", 0.05, 0);
+        governor.govern(buffer, Set.of("pottery"));
+        assertEquals(Set.of("gaming", "travel", "pottery"), buffer.toRows("user").stream().map(row -> row.topic).collect(Collectors.toSet()));
+
+        // A write setting more topics than the cap still ends up within it, keeping the best of everything
+        put(profile, "a", 0.5);
+        put(profile, "b", 0.6);
+        put(profile, "c", 0.7);
+        put(profile, "d", 0.8);
+        governor.govern(profile, Set.of("a", "b", "c", "d"));
+        assertEquals(Set.of("gaming", "travel", "d"), profile.keySet());
+    }
+}
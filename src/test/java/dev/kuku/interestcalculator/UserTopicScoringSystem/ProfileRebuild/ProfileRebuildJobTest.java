@@ -0,0 +1,181 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.ProfileRebuild;
+
+import dev.kuku.interestcalculator.UserTopicScoringSystem.DeferredTagging.DeferredRetagger;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.DeferredTagging.DeferredTaggingQueue;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ProfileGovernor.ProfileSizeGovernor;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.TopicDecayer.subSystem.TopicScoreTemporalExponentialDecayer;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.UserTopicScoringSystem;
+import dev.kuku.interestcalculator.fakeDatabase.ColdProfileStore;
+import dev.kuku.interestcalculator.fakeDatabase.ContentDb;
+import dev.kuku.interestcalculator.fakeDatabase.UserInteractionsDb;
+import dev.kuku.interestcalculator.fakeDatabase.UserTopicScoreDb;
+import dev.kuku.interestcalculator.sharding.LocalShardNode;
+import dev.kuku.interestcalculator.sharding.ShardRouter;
+import dev.kuku.interestcalculator.util.ManualClockTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProfileRebuildJobTest extends ManualClockTest {
+    private static final int USERS = 8;
+    private static final int INTERACTIONS_PER_USER = 12;
+    @TempDir
+    static Path dataDir;
+
+    @Autowired
+    private UserTopicScoringSystem userTopicScoringSystem;
+    @Autowired
+    private UserTopicScoreDb userTopicScoreDb;
+    @Autowired
+    private TopicScoreTemporalExponentialDecayer exponentialDecayer;
+    @Autowired
+    private ProfileSizeGovernor profileSizeGovernor;
+    @Autowired
+    private ProfileRebuildJob profileRebuildJob;
+    @Autowired
+    private UserInteractionsDb userInteractionsDb;
+    @Autowired
+    private ContentDb contentDb;
+    @Autowired
+    private DeferredTaggingQueue deferredTaggingQueue;
+    @Autowired
+    private DeferredRetagger deferredRetagger;
+
+    // Rebuilds refuse to checkpoint into a temporary cold store
+    @DynamicPropertySource
+    static void coldDirectory(DynamicPropertyRegistry registry) {
+        registry.add("profiles.cold-dir", () -> dataDir.resolve("cold").toString());
+        // Several partitions, each user's interactions still have to be replayed together and in order
+        registry.add("profiles.rebuild.max-grouped-events", () -> 10);
+        // Passes are run by the test
+        registry.add("tagging.retry-interval-millis", () -> 3_600_000);
+    }
+
+    // Faulting in prunes whatever decayed below the minimum score, the expected side drops those too
+    private Map<String, Double> decayedProfile(List<UserTopicScoreDb.UserTopicScoreRow> rows, long now) {
+        Map<String, Double> profile = new HashMap<>();
+        rows.forEach(row -> {
+            double score = exponentialDecayer.decayedScore(row, now);
+            if (Math.abs(score) >= profileSizeGovernor.getMinScore()) profile.put(row.topic, score);
+        });
+        return profile;
+    }
+
+    private void rebuild() throws InterruptedException {
+        assertTrue(profileRebuildJob.start());
+        for (int i = 0; i < 500 && profileRebuildJob.getStatus().finishedAt() == 0; i++) Thread.sleep(20);
+        ProfileRebuildJob.RebuildStatus status = profileRebuildJob.getStatus();
+        assertEquals(ProfileRebuildJob.State.COMPLETED, status.state(), status.error());
+    }
+
+    // Real dampener, off by default. With dampening on the replay would score against today's trending counts
+    // and could not reproduce the online profiles, see ProfileReplayer
+    @Test
+    void rebuildReproducesOnlineProfilesAndKeepsUsersWithoutHistory() throws Exception {
+        clock.set(Instant.parse("2026-03-01T00:00:00Z").toEpochMilli());
+
+        Random random = new Random(5);
+        UserInteractionsDb.Discovery[] discoveries = UserInteractionsDb.Discovery.values();
+        UserInteractionsDb.InteractionType[] types = UserInteractionsDb.InteractionType.values();
+        for (int i = 0; i < USERS * INTERACTIONS_PER_USER; i++) {
+            String userId = "rebuild-user-" + random.nextInt(USERS);
+            String contentId = String.format("post%03d", 1 + random.nextInt(100));
+            clock.addAndGet(random.nextInt(90_000));
+            userTopicScoringSystem.updateUserTopicScores(userId, new UserInteractionsDb.UserInteractionRow(userId, contentId,
+                    discoveries[random.nextInt(discoveries.length)], types[random.nextInt(types.length)], clock.get()));
+        }
+        // Imported from another shard, nothing in this node's log
+        userTopicScoreDb.putUserTopicScores("imported-user",
+                List.of(new UserTopicScoreDb.UserTopicScoreRow("imported-user", "travel", 4.0, clock.get())));
+
+        long now = clock.addAndGet(120_000);
+        Map<String, Map<String, Double>> expected = new HashMap<>();
+        for (int u = 0; u < USERS; u++) {
+            String userId = "rebuild-user-" + u;
+            expected.put(userId, decayedProfile(userTopicScoreDb.getUserTopicScores(userId), now));
+        }
+
+        // Stands in for profiles scored with outdated parameters, the rebuild has to bring back the replayed ones
+        userTopicScoreDb.putUserTopicScores("rebuild-user-0",
+                List.of(new UserTopicScoreDb.UserTopicScoreRow("rebuild-user-0", "stale", 9.0, now)));
+
+        rebuild();
+        assertTrue(profileRebuildJob.getStatus().rebuiltUsers() >= USERS);
+
+        // Everything is cold after the swap and faults back in as it was written, scores decay by their update times
+        expected.forEach((userId, profile) -> {
+            Map<String, Double> rebuilt = decayedProfile(userTopicScoreDb.getUserTopicScores(userId), now);
+            assertEquals(profile.keySet(), rebuilt.keySet(), userId);
+            profile.forEach((topic, score) -> assertEquals(score, rebuilt.get(topic), 1e-9, userId + " " + topic));
+        });
+        assertEquals(4.0 * Math.pow(0.7, 2), decayedProfile(userTopicScoreDb.getUserTopicScores("imported-user"), now).get("travel"), 1e-9);
+    }
+
+    @Test
+    void deferredInteractionsAreScoredOnceWhenTheirContentIsTaggedBeforeARebuild() throws Exception {
+        long start = Instant.parse("2026-04-01T00:00:00Z").toEpochMilli();
+        clock.set(start);
+        contentDb.addContent("rebuild-deferred", "Trimming and glazing a stoneware bowl after its first firing", "user210", start);
+
+        // Deferred and logged while the model was down, the content got its topics before the retagger came by
+        UserInteractionsDb.UserInteractionRow late = new UserInteractionsDb.UserInteractionRow("rebuild-late-user",
+                "rebuild-deferred", UserInteractionsDb.Discovery.SEARCH, UserInteractionsDb.InteractionType.LIKE, start);
+        assertTrue(deferredTaggingQueue.defer(late));
+        userInteractionsDb.addInteraction(late.userId, late.contentId, late.contentDiscovery, late.interactionType, start);
+        contentDb.setTopicsOfContent(Set.of("pottery", "ceramics"), "rebuild-deferred");
+        userTopicScoringSystem.updateUserTopicScores("rebuild-on-time-user", new UserInteractionsDb.UserInteractionRow(
+                "rebuild-on-time-user", "rebuild-deferred", UserInteractionsDb.Discovery.SEARCH,
+                UserInteractionsDb.InteractionType.LIKE, start));
+
+        long now = clock.addAndGet(120_000);
+        rebuild();
+        assertEquals(1, deferredTaggingQueue.getStats().interactions(), "left to the retagger");
+        assertEquals(1, deferredRetagger.retryDeferred());
+
+        Map<String, Double> onTime = decayedProfile(userTopicScoreDb.getUserTopicScores("rebuild-on-time-user"), now);
+        Map<String, Double> scoredLate = decayedProfile(userTopicScoreDb.getUserTopicScores("rebuild-late-user"), now);
+        assertEquals(Set.of("pottery", "ceramics"), onTime.keySet());
+        onTime.forEach((topic, score) -> assertEquals(score, scoredLate.get(topic), 1e-9, topic));
+    }
+
+    @Test
+    void refusesToStartWithoutAConfiguredColdDirectory() throws Exception {
+        ColdProfileStore temporary = new ColdProfileStore("");
+        try {
+            ProfileRebuildJob job = new ProfileRebuildJob(null, userTopicScoreDb, temporary, null, null, null, null, 10);
+            assertThrows(IllegalStateException.class, job::start);
+            assertEquals(ProfileRebuildJob.State.IDLE, job.getStatus().state());
+            job.shutdown();
+        } finally {
+            temporary.shutdown();
+        }
+    }
+
+    @Test
+    void refusesToStartOnAShardedNode() throws Exception {
+        ColdProfileStore coldProfileStore = new ColdProfileStore(dataDir.resolve("sharded").toString());
+        ShardRouter shardRouter = new ShardRouter(new LocalShardNode("a", userTopicScoringSystem, userTopicScoreDb), "");
+        // Only this node's view of the ring changes, nothing is moved or called
+        shardRouter.addNode(shardRouter.remoteNode("b", "http://localhost:1"), false);
+        try {
+            ProfileRebuildJob job = new ProfileRebuildJob(null, userTopicScoreDb, coldProfileStore, null, null, null, shardRouter, 10);
+            assertThrows(IllegalStateException.class, job::start);
+            assertEquals(ProfileRebuildJob.State.IDLE, job.getStatus().state());
+            job.shutdown();
+        } finally {
+            coldProfileStore.shutdown();
+        }
+    }
+}
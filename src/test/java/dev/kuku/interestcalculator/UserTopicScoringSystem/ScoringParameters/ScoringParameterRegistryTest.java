@@ -0,0 +1,96 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.ScoringParameters;
+
+import dev.kuku.interestcalculator.fakeDatabase.UserInteractionsDb;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScoringParameterRegistryTest {
+    @TempDir
+    Path dir;
+
+    private static String userInBucketRange(ScoringParameterRegistry registry, int from, int to, boolean inside) {
+        for (int i = 0; ; i++) {
+            String userId = "user" + i;
+            int bucket = registry.describeUser(userId).bucket();
+            if ((bucket >= from && bucket <= to) == inside) return userId;
+        }
+    }
+
+    private static void write(Path file, String content, long modifiedTime) throws IOException {
+        Files.writeString(file, content);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modifiedTime));
+    }
+
+    @Test
+    void cohortsOverrideTheBaseParametersForTheirBuckets() throws IOException {
+        Path file = dir.resolve("scoring.properties");
+        write(file, """
+                scoring.max-score=20
+                scoring.cohort.slow-decay.buckets=0-9
+                scoring.cohort.slow-decay.decay-rate=0.9
+                """, 1_000);
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("scoring.decay-rate", "0.6")
+                .withProperty("scoring.max-score", "12");
+        ScoringParameterRegistry registry = new ScoringParameterRegistry(environment, file.toString(), 100, 3_600_000);
+        try {
+            String inCohort = userInBucketRange(registry, 0, 9, true);
+            String outside = userInBucketRange(registry, 0, 9, false);
+
+            assertEquals("slow-decay", registry.describeUser(inCohort).cohort());
+            assertEquals(0.9, registry.forUser(inCohort).decayRate);
+            assertEquals(20, registry.forUser(inCohort).maxScore, "the file overrides the properties, cohorts inherit it");
+            assertNull(registry.describeUser(outside).cohort());
+            assertEquals(0.6, registry.forUser(outside).decayRate);
+            assertSame(registry.getDefaults(), registry.forUser(outside));
+            // Same table of deltas as the defaults, only the decay differs
+            assertEquals(ScoringParameters.DEFAULTS.interactionDelta(
+                            UserInteractionsDb.Discovery.SEARCH,
+                            UserInteractionsDb.InteractionType.LIKE),
+                    registry.forUser(inCohort).interactionDelta(
+                            UserInteractionsDb.Discovery.SEARCH,
+                            UserInteractionsDb.InteractionType.LIKE));
+
+            write(file, "scoring.cohort.slow-decay.buckets=0-9\nscoring.cohort.slow-decay.decay-rat=0.9\n", 2_000);
+            assertThrows(IllegalArgumentException.class, registry::reload, "typo in a key");
+            write(file, "scoring.cohort.a.buckets=0-9\nscoring.cohort.b.buckets=5-20\n", 3_000);
+            assertThrows(IllegalArgumentException.class, registry::reload, "overlapping cohorts");
+            assertEquals(1, registry.getStatus().version(), "invalid files keep the current snapshot");
+            assertEquals(0.9, registry.forUser(inCohort).decayRate);
+
+            write(file, "scoring.decay-rate=0.5\n", 4_000);
+            assertEquals(2, registry.reload().version());
+            assertEquals(0.5, registry.forUser(inCohort).decayRate);
+            assertNull(registry.describeUser(inCohort).cohort());
+        } finally {
+            registry.shutdown();
+        }
+    }
+
+    @Test
+    void changedFileIsPickedUpWithoutAReloadCall() throws Exception {
+        Path file = dir.resolve("scoring.properties");
+        write(file, "scoring.propagation-factor=0.3\n", 1_000);
+        ScoringParameterRegistry registry = new ScoringParameterRegistry(new MockEnvironment(), file.toString(), 100, 20);
+        try {
+            assertEquals(0.3, registry.getDefaults().propagationFactor);
+            write(file, "scoring.propagation-factor=0.1\n", 2_000);
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (registry.getDefaults().propagationFactor != 0.1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0.1, registry.getDefaults().propagationFactor);
+            assertEquals(2, registry.getStatus().version());
+        } finally {
+            registry.shutdown();
+        }
+    }
+}
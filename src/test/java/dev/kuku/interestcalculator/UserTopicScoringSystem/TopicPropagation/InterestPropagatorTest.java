@@ -0,0 +1,47 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.TopicPropagation;
+
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ScoringParameters.ScoringParameters;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.TopicScorer.subSystem.ProfileScoreBuffer;
+import dev.kuku.interestcalculator.fakeDatabase.ContentDb;
+import dev.kuku.interestcalculator.fakeDatabase.TopicDb;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class InterestPropagatorTest {
+    private final TopicDb topicDb = new TopicDb();
+    private final TopicCoOccurrenceGraph graph = new TopicCoOccurrenceGraph(new ContentDb(event -> {
+    }), topicDb);
+    private final InterestPropagator propagator = new InterestPropagator(graph, topicDb);
+
+    @Test
+    void propagatesToNeighborsNotAlreadyScoredAndDropsTinyDeltas() {
+        graph.addContentTopics(List.of("cooking", "baking"));
+        graph.addContentTopics(List.of("cooking", "travel"));
+        graph.addContentTopics(List.of("cooking", "food"));
+
+        // cooking has a weight of 1 / sqrt(3) to each of its neighbors
+        Map<String, Double> propagated = propagate(Map.of("cooking", 1.0, "food", 1.0), ScoringParameters.DEFAULTS);
+        assertEquals(2, propagated.size());
+        assertEquals(0.3 / Math.sqrt(3), propagated.get("baking"), 1e-6);
+        assertEquals(0.3 / Math.sqrt(3), propagated.get("travel"), 1e-6);
+
+        ScoringParameters strict = ScoringParameters.from(key -> key.equals("min-propagated-delta") ? "0.2" : null, ScoringParameters.DEFAULTS);
+        assertEquals(Map.of(), propagate(Map.of("cooking", 1.0), strict));
+        assertEquals(Map.of(), propagate(Map.of("unknown", 1.0), ScoringParameters.DEFAULTS));
+    }
+
+    // Deltas the propagator added after the direct ones
+    private Map<String, Double> propagate(Map<String, Double> topicDeltas, ScoringParameters parameters) {
+        ProfileScoreBuffer profile = new ProfileScoreBuffer();
+        topicDeltas.forEach(profile::addDelta);
+        propagator.propagate(profile, parameters);
+        Map<String, Double> propagated = new HashMap<>();
+        for (int i = topicDeltas.size(); i < profile.deltaCount(); i++) propagated.put(profile.deltaTopic(i), profile.delta(i));
+        return propagated;
+    }
+}
@@ -0,0 +1,113 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.TopicPropagation;
+
+import dev.kuku.interestcalculator.fakeDatabase.ContentDb;
+import dev.kuku.interestcalculator.fakeDatabase.TopicDb;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TopicCoOccurrenceGraphTest {
+    private final TopicDb topicDb = new TopicDb();
+    private final TopicCoOccurrenceGraph graph = new TopicCoOccurrenceGraph(new ContentDb(event -> {
+    }), topicDb);
+
+    @Test
+    void keepsOnlyTheStrongestNeighborsAboveTheMinimumWeight() {
+        // hub shares i + 1 pieces of content with topic i, and has one more piece of content on its own
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j <= i; j++) graph.addContentTopics(List.of("hub", "topic" + i));
+        }
+        graph.addContentTopics(List.of("hub"));
+
+        TopicCoOccurrenceGraph.Neighbors neighbors = graph.getTopNeighbors(topicDb.getTopicId("hub"));
+        assertEquals(5, neighbors.topicIds().length);
+        assertEquals("topic7", topicDb.getTopicById(neighbors.topicIds()[0]));
+        assertEquals("topic3", topicDb.getTopicById(neighbors.topicIds()[4]));
+        for (int i = 1; i < neighbors.weights().length; i++) {
+            assertTrue(neighbors.weights()[i - 1] >= neighbors.weights()[i]);
+        }
+
+        // hub is now in 38 pieces of content and rare in 1, their weight of 1 / sqrt(38) is below the minimum
+        graph.addContentTopics(List.of("hub", "rare"));
+        assertEquals(0, graph.getTopNeighbors(topicDb.getTopicId("rare")).topicIds().length);
+    }
+
+    @Test
+    void retaggingTakesThePreviousPairsBackOut() {
+        graph.addContentTopics(Set.of("cooking", "baking"));
+        graph.addContentTopics(Set.of("cooking", "baking"));
+        graph.replaceContentTopics(Set.of("cooking", "baking"), Set.of("cooking", "travel"));
+
+        int cooking = topicDb.getTopicId("cooking");
+        int baking = topicDb.getTopicId("baking");
+        int travel = topicDb.getTopicId("travel");
+        // cooking and baking now share one of cooking's two pieces of content, and all of baking's one
+        TopicCoOccurrenceGraph.Neighbors neighbors = graph.getTopNeighbors(cooking);
+        assertEquals(2, neighbors.topicIds().length);
+        assertEquals((float) (1 / Math.sqrt(2)), neighbors.weights()[0]);
+
+        graph.replaceContentTopics(Set.of("cooking", "baking"), Set.of("travel"));
+        assertArrayEquals(new int[]{travel}, graph.getTopNeighbors(cooking).topicIds());
+        assertEquals(0, graph.getTopNeighbors(baking).topicIds().length);
+    }
+
+    @Test
+    void concurrentRetaggingOfOneContentLeavesOnlyItsFinalTopics() throws Exception {
+        ContentDb contentDb = new ContentDb(event -> graph.onContentTagged((ContentDb.ContentTaggedEvent) event));
+        contentDb.addContent("post", "text", "user", 0);
+        List<Set<String>> taggings = List.of(Set.of("cooking", "baking"), Set.of("travel", "hiking"));
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> taggers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int offset = t;
+                taggers.add(pool.submit(() -> {
+                    for (int i = 0; i < 2_000; i++) contentDb.setTopicsOfContent(taggings.get((i + offset) % 2), "post");
+                }));
+            }
+            for (Future<?> tagger : taggers) tagger.get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // Every tagging took out exactly the topics it replaced, so only the final tagging is left in the graph
+        Set<String> last = contentDb.getContentById("post").getTopics();
+        for (Set<String> tagging : taggings) {
+            for (String topic : tagging) {
+                TopicCoOccurrenceGraph.Neighbors neighbors = graph.getTopNeighbors(topicDb.getTopicId(topic));
+                if (tagging.equals(last)) {
+                    assertEquals(1, neighbors.topicIds().length);
+                    assertEquals(1f, neighbors.weights()[0]);
+                } else {
+                    assertEquals(0, neighbors.topicIds().length);
+                }
+            }
+        }
+    }
+
+    @Test
+    void edgesSurviveRemovalOfOtherEdgesOfTheSameNode() {
+        List<String> topics = new ArrayList<>();
+        for (int i = 0; i < 100; i++) topics.add("topic" + i);
+        for (String topic : topics) graph.addContentTopics(List.of("hub", topic));
+        // Takes most edges back out, the rest must still be found behind the freed slots
+        for (int i = 0; i < 97; i++) graph.replaceContentTopics(List.of("hub", topics.get(i)), List.of(topics.get(i)));
+
+        TopicCoOccurrenceGraph.Neighbors neighbors = graph.getTopNeighbors(topicDb.getTopicId("hub"));
+        assertEquals(Set.of("topic97", "topic98", "topic99"), Set.of(
+                topicDb.getTopicById(neighbors.topicIds()[0]),
+                topicDb.getTopicById(neighbors.topicIds()[1]),
+                topicDb.getTopicById(neighbors.topicIds()[2])));
+        assertEquals(3, neighbors.topicIds().length);
+    }
+}
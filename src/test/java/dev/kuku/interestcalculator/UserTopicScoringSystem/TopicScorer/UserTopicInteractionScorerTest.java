@@ -0,0 +1,68 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.TopicScorer;
+
+import dev.kuku.interestcalculator.UserTopicScoringSystem.UserTopicScoringSystem;
+import dev.kuku.interestcalculator.fakeDatabase.UserInteractionsDb;
+import dev.kuku.interestcalculator.fakeDatabase.UserTopicScoreDb;
+import dev.kuku.interestcalculator.util.ManualClockTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class UserTopicInteractionScorerTest extends ManualClockTest {
+    private static final Instant NOW = Instant.parse("2026-03-01T00:00:00Z");
+
+    @MockitoSpyBean
+    private UserTopicScoreDb userTopicScoreDb;
+    @Autowired
+    private UserTopicScoringSystem userTopicScoringSystem;
+
+    private static List<UserInteractionsDb.UserInteractionRow> interactions(String userId) {
+        UserInteractionsDb.InteractionType[] types = {UserInteractionsDb.InteractionType.LIKE,
+                UserInteractionsDb.InteractionType.COMMENT, UserInteractionsDb.InteractionType.DISLIKE};
+        List<UserInteractionsDb.UserInteractionRow> interactions = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            interactions.add(new UserInteractionsDb.UserInteractionRow(userId, "post00" + (1 + i % 5),
+                    UserInteractionsDb.Discovery.SEARCH, types[i % types.length], NOW.toEpochMilli()));
+        }
+        return interactions;
+    }
+
+    private Map<String, Double> profile(String userId) {
+        return userTopicScoreDb.getUserTopicScores(userId).stream()
+                .collect(Collectors.toMap(row -> row.topic, row -> row.interestScore));
+    }
+
+    // Real dampener, off by default. With dampening on the two runs differ on purpose: one by one every interaction
+    // sees the trending counts of the ones before it, a batch scores all of them against the counts before the batch
+    @Test
+    void batchScoresLikeOneByOneWithOneReadAndOneWrite() {
+        clock.set(NOW.toEpochMilli());
+
+        for (UserInteractionsDb.UserInteractionRow interaction : interactions("one-by-one")) {
+            userTopicScoringSystem.updateUserTopicScores("one-by-one", interaction);
+        }
+        clearInvocations(userTopicScoreDb);
+        userTopicScoringSystem.updateUserTopicScores("batched", interactions("batched"));
+
+        verify(userTopicScoreDb, times(1)).getUserTopicScores("batched");
+        verify(userTopicScoreDb, times(1)).replaceTopicScores(eq("batched"), anyList());
+        verify(userTopicScoreDb, never()).getTopicScoreOfUser(anyString(), anyString());
+        verify(userTopicScoreDb, never()).updateTopicScoresByValue(anyString(), anyMap());
+        verify(userTopicScoreDb, never()).updateTopicScoresByDelta(anyString(), anyMap());
+
+        Map<String, Double> expected = profile("one-by-one");
+        Map<String, Double> batched = profile("batched");
+        assertEquals(expected.keySet(), batched.keySet());
+        expected.forEach((topic, score) -> assertEquals(score, batched.get(topic), 1e-9, topic));
+    }
+}
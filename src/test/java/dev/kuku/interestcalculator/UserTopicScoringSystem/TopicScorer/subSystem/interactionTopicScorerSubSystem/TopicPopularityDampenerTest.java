@@ -0,0 +1,43 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem.TopicScorer.subSystem.interactionTopicScorerSubSystem;
+
+import dev.kuku.interestcalculator.TrendingSystem.TrendingTopicAggregator;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ScoringParameters.ScoringParameterRegistry;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ScoringParameters.ScoringParameters;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.TopicScorer.subSystem.InteractionScorer;
+import dev.kuku.interestcalculator.fakeDatabase.ContentDb;
+import dev.kuku.interestcalculator.fakeDatabase.TopicDb;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TopicPopularityDampenerTest {
+    private static final long NOW = 1_000 * 60 * 60_000L;
+
+    @Test
+    void dampensPopularTopicsOnlyWhenEnabledAndTheDayIsBusyEnough() {
+        TopicDb topicDb = new TopicDb();
+        ScoringParameterRegistry registry = ScoringParameterRegistry.fixed(ScoringParameters.DEFAULTS);
+        TrendingTopicAggregator aggregator = new TrendingTopicAggregator(new ContentDb(event -> {
+        }), topicDb, new InteractionScorer(), registry, () -> Instant.ofEpochMilli(NOW));
+        TopicPopularityDampener enabled = new TopicPopularityDampener(aggregator, registry, true);
+        TopicPopularityDampener disabled = new TopicPopularityDampener(aggregator, registry, false);
+        int gaming = topicDb.getOrCreateTopicId("gaming");
+        int knitting = topicDb.getOrCreateTopicId("knitting");
+
+        for (int i = 0; i < 40; i++) aggregator.record(gaming, NOW, 1f);
+        // Below the minimum number of interactions in the window nothing is dampened
+        assertEquals(1.0, enabled.scoreTopic("gaming"));
+
+        for (int i = 0; i < 40; i++) aggregator.record(gaming, NOW, 1f);
+        aggregator.record(knitting, NOW, 1f);
+        double popular = enabled.scoreTopic("gaming");
+        double niche = enabled.scoreTopic("knitting");
+        assertTrue(popular >= ScoringParameters.DEFAULTS.dampenerMinMultiplier && popular < niche, popular + " " + niche);
+        assertTrue(niche < 1.0);
+        assertEquals(1.0, disabled.scoreTopic("gaming"));
+        assertEquals(1.0, disabled.scoreTopic("knitting"));
+    }
+}
@@ -0,0 +1,117 @@
+package dev.kuku.interestcalculator.UserTopicScoringSystem;
+
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ContentTagger.ContentTagger;
+import dev.kuku.interestcalculator.fakeDatabase.ContentDb;
+import dev.kuku.interestcalculator.fakeDatabase.UserInteractionsDb;
+import dev.kuku.interestcalculator.fakeDatabase.UserTopicScoreDb;
+import dev.kuku.interestcalculator.util.ManualClockTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+class UserTopicScoringSystemConcurrencyTest extends ManualClockTest {
+    // Frozen clock, decay becomes a no-op so the final profile only depends on how many interactions were applied
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+    private static final int INTERACTIONS = 400;
+    private static final int THREADS = 16;
+
+    @MockitoSpyBean
+    private ContentTagger contentTagger;
+    @Autowired
+    private UserTopicScoringSystem userTopicScoringSystem;
+    @Autowired
+    private ContentDb contentDb;
+    @Autowired
+    private UserTopicScoreDb userTopicScoreDb;
+
+    private static UserInteractionsDb.UserInteractionRow like(String userId) {
+        return new UserInteractionsDb.UserInteractionRow(userId, "post001", UserInteractionsDb.Discovery.SEARCH,
+                UserInteractionsDb.InteractionType.LIKE, NOW.toEpochMilli());
+    }
+
+    private Map<String, Double> profile(String userId) {
+        return userTopicScoreDb.getUserTopicScores(userId).stream()
+                .collect(Collectors.toMap(row -> row.topic, row -> row.interestScore));
+    }
+
+    // Real dampener, off by default. Enabled, the trending counts the sequential run leaves behind would lower what
+    // the contended run scores
+    @Test
+    void concurrentInteractionsOfOneUserAreNotLost() throws Exception {
+        clock.set(NOW.toEpochMilli());
+
+        for (int i = 0; i < INTERACTIONS; i++) {
+            userTopicScoringSystem.updateUserTopicScores("sequential", like("sequential"));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < INTERACTIONS; i++) {
+            String otherUser = "other" + (i % THREADS);
+            futures.add(pool.submit(() -> {
+                start.await();
+                userTopicScoringSystem.updateUserTopicScores("contended", like("contended"));
+                // Traffic of unrelated users interleaved with the contended user
+                userTopicScoringSystem.updateUserTopicScores(otherUser, like(otherUser));
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) future.get();
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+
+        Map<String, Double> expected = profile("sequential");
+        Map<String, Double> contended = profile("contended");
+        assertEquals(expected.keySet(), contended.keySet());
+        expected.forEach((topic, score) -> assertEquals(score, contended.get(topic), 1e-9, topic));
+    }
+
+    @Test
+    void taggingDoesNotHoldTheUsersLock() throws Exception {
+        clock.set(NOW.toEpochMilli());
+        CountDownLatch taggingStarted = new CountDownLatch(1);
+        CountDownLatch releaseTagging = new CountDownLatch(1);
+        // Stands in for a slow LLM call
+        doAnswer(invocation -> {
+            taggingStarted.countDown();
+            releaseTagging.await();
+            return Set.of("slowtopic");
+        }).when(contentTagger).tag(any());
+        contentDb.addContent("slow-content", "Content the LLM takes its time with", "author", NOW.toEpochMilli());
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        Future<?> slow = pool.submit(() -> userTopicScoringSystem.updateUserTopicScores("patient",
+                new UserInteractionsDb.UserInteractionRow("patient", "slow-content", UserInteractionsDb.Discovery.SEARCH,
+                        UserInteractionsDb.InteractionType.LIKE, NOW.toEpochMilli())));
+        try {
+            assertTrue(taggingStarted.await(5, TimeUnit.SECONDS));
+            // Would time out on the user's stripe if tagging ran under it
+            pool.submit(() -> userTopicScoringSystem.updateUserTopicScores("patient", like("patient"))).get(5, TimeUnit.SECONDS);
+            assertTrue(profile("patient").keySet().stream().noneMatch("slowtopic"::equals));
+        } finally {
+            releaseTagging.countDown();
+            slow.get(5, TimeUnit.SECONDS);
+            pool.shutdown();
+        }
+        assertTrue(profile("patient").containsKey("slowtopic"));
+    }
+}
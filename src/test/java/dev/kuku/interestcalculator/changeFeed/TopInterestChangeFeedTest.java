@@ -0,0 +1,133 @@
+package dev.kuku.interestcalculator.changeFeed;
+
+import dev.kuku.interestcalculator.fakeDatabase.UserTopicScoreDb;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TopInterestChangeFeedTest {
+    private final UserTopicScoreDb userTopicScoreDb = mock(UserTopicScoreDb.class);
+    private final TopInterestChangeFeed feed = new TopInterestChangeFeed(userTopicScoreDb, () -> Instant.ofEpochMilli(1_000), 3);
+    private final BlockingQueue<TopInterestChangeEvent> received = new LinkedBlockingQueue<>();
+
+    TopInterestChangeFeedTest() {
+        feed.subscribe(received::add);
+    }
+
+    @Test
+    void burstOfWritesIsCoalescedIntoOneEvent() throws InterruptedException {
+        setProfile("alice", Map.of("gaming", 5.0, "food", 2.0));
+        for (int i = 0; i < 20; i++) write("alice");
+
+        TopInterestChangeEvent event = next();
+        assertEquals("alice", event.userId());
+        assertEquals(List.of("gaming", "food"), event.topTopics().stream().map(TopInterestChangeEvent.TopicScore::topic).toList());
+        assertEquals(Set.of("gaming", "food"), event.enteredTopK());
+
+        awaitFlushesOfOtherUsers();
+        assertTrue(received.isEmpty());
+        verify(userTopicScoreDb, times(1)).getUserTopicScores("alice");
+    }
+
+    @Test
+    void onlyMembershipChangesAndMovesAboveTheThresholdAreEmitted() throws InterruptedException {
+        setProfile("alice", Map.of("gaming", 5.0, "food", 2.0));
+        write("alice");
+        next();
+
+        // Moves below the threshold are absorbed
+        setProfile("alice", Map.of("gaming", 5.3, "food", 2.2));
+        write("alice");
+        verify(userTopicScoreDb, timeout(2_000).times(2)).getUserTopicScores("alice");
+        awaitFlushesOfOtherUsers();
+        assertTrue(received.isEmpty());
+
+        // Compared against what was last emitted, not the last write, so small moves add up
+        setProfile("alice", Map.of("gaming", 5.6, "food", 2.2));
+        write("alice");
+        TopInterestChangeEvent moved = next();
+        assertEquals(5.6, moved.topTopics().get(0).score());
+        assertTrue(moved.enteredTopK().isEmpty());
+        assertTrue(moved.leftTopK().isEmpty());
+
+        setProfile("alice", Map.of("gaming", 5.6, "travel", 2.1));
+        write("alice");
+        TopInterestChangeEvent swapped = next();
+        assertEquals(Set.of("travel"), swapped.enteredTopK());
+        assertEquals(Set.of("food"), swapped.leftTopK());
+    }
+
+    @Test
+    void consumersResumeFromTheirOffset() throws InterruptedException {
+        for (String userId : List.of("alice", "bob", "carol")) {
+            setProfile(userId, Map.of("gaming", 1.0));
+            write(userId);
+            next();
+        }
+        assertEquals(3, feed.getNextOffset());
+
+        List<TopInterestChangeEvent> all = feed.read(0, 10);
+        assertEquals(List.of(0L, 1L, 2L), all.stream().map(TopInterestChangeEvent::offset).toList());
+        List<TopInterestChangeEvent> resumed = feed.read(all.get(0).offset() + 1, 1);
+        assertEquals(1, resumed.size());
+        assertEquals(1L, resumed.get(0).offset());
+        assertEquals("bob", resumed.get(0).userId());
+        assertTrue(feed.read(3, 10).isEmpty());
+    }
+
+    @Test
+    void usersBeyondTheTrackedOnesAreForgottenAndGetAFullEventAgain() throws InterruptedException {
+        for (String userId : List.of("alice", "bob", "carol", "dave")) {
+            setProfile(userId, Map.of("gaming", 1.0));
+            write(userId);
+            next();
+        }
+        // Still remembered, an unchanged profile emits nothing
+        write("dave");
+        verify(userTopicScoreDb, timeout(2_000).times(2)).getUserTopicScores("dave");
+        awaitFlushesOfOtherUsers();
+        assertTrue(received.isEmpty());
+
+        // Alice was the least recently changed of the four users and was dropped when dave came in
+        write("alice");
+        TopInterestChangeEvent forgotten = next();
+        assertEquals("alice", forgotten.userId());
+        assertEquals(Set.of("gaming"), forgotten.enteredTopK());
+    }
+
+    private void setProfile(String userId, Map<String, Double> scores) {
+        List<UserTopicScoreDb.UserTopicScoreRow> rows = new ArrayList<>();
+        scores.forEach((topic, score) -> rows.add(new UserTopicScoreDb.UserTopicScoreRow(userId, topic, score, 0)));
+        when(userTopicScoreDb.getUserTopicScores(userId)).thenReturn(rows);
+    }
+
+    private void write(String userId) {
+        feed.onTopicScoresUpdated(new UserTopicScoreDb.TopicScoresUpdatedEvent(userId));
+    }
+
+    private TopInterestChangeEvent next() throws InterruptedException {
+        TopInterestChangeEvent event = received.poll(2, TimeUnit.SECONDS);
+        assertNotNull(event, "expected a change event");
+        return event;
+    }
+
+    /**
+     * Flushes run one at a time on the feed's thread, so once a later user's event arrives every flush scheduled
+     * before it has finished.
+     */
+    private void awaitFlushesOfOtherUsers() throws InterruptedException {
+        setProfile("barrier", Map.of("barrier", 1.0));
+        write("barrier");
+        assertEquals("barrier", next().userId());
+    }
+}
@@ -0,0 +1,54 @@
+package dev.kuku.interestcalculator.codec;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kuku.interestcalculator.fakeDatabase.TopicDb;
+import dev.kuku.interestcalculator.fakeDatabase.UserTopicScoreDb;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serialization cost of a profile against JSON. Excluded from the normal build, run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class InterestProfileBinaryCodecBenchmark {
+    private static final String USER_ID = "user-4f1c2a7e";
+
+    @Test
+    void serializationCostAgainstJson() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper().configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+        TopicDb topicDb = new TopicDb();
+        List<UserTopicScoreDb.UserTopicScoreRow> rows = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            rows.add(new UserTopicScoreDb.UserTopicScoreRow(USER_ID, "topic-" + i, i * 0.037, 1718022000000L + i));
+        }
+        int knownTopics = InterestProfileBinaryCodec.prepare(USER_ID, rows, topicDb, 0).dictionaryVersion();
+
+        int jsonSize = objectMapper.writeValueAsBytes(rows).length;
+        int coldBinarySize = InterestProfileBinaryCodec.prepare(USER_ID, rows, topicDb, 0).size();
+        int warmBinarySize = InterestProfileBinaryCodec.prepare(USER_ID, rows, topicDb, knownTopics).size();
+
+        int iterations = 20_000;
+        OutputStream sink = OutputStream.nullOutputStream();
+        // First half warms up the JIT
+        long jsonNanos = 0;
+        long binaryNanos = 0;
+        for (int i = 0; i < iterations * 2; i++) {
+            long start = System.nanoTime();
+            objectMapper.writeValue(sink, rows);
+            long json = System.nanoTime();
+            InterestProfileBinaryCodec.prepare(USER_ID, rows, topicDb, knownTopics).writeTo(sink);
+            long binary = System.nanoTime();
+            if (i >= iterations) {
+                jsonNanos += json - start;
+                binaryNanos += binary - json;
+            }
+        }
+        System.out.printf("profile of %d topics: json %d bytes %.1f us/op, binary %d bytes (cold dictionary %d bytes) %.1f us/op%n",
+                rows.size(), jsonSize, jsonNanos / 1000.0 / iterations, warmBinarySize, coldBinarySize, binaryNanos / 1000.0 / iterations);
+    }
+}
@@ -0,0 +1,77 @@
+package dev.kuku.interestcalculator.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kuku.interestcalculator.fakeDatabase.TopicDb;
+import dev.kuku.interestcalculator.fakeDatabase.UserTopicScoreDb;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InterestProfileBinaryCodecTest {
+    private static final String USER_ID = "user-4f1c2a7e";
+
+    private static List<UserTopicScoreDb.UserTopicScoreRow> profile(int topics) {
+        List<UserTopicScoreDb.UserTopicScoreRow> rows = new ArrayList<>();
+        for (int i = 0; i < topics; i++) {
+            rows.add(new UserTopicScoreDb.UserTopicScoreRow(USER_ID, "topic-" + i, i * 0.037, 1718022000000L + i));
+        }
+        return rows;
+    }
+
+    @Test
+    void roundTripsScoresAndDictionaryDelta() throws Exception {
+        TopicDb topicDb = new TopicDb();
+        var rows = profile(50);
+        var encoded = InterestProfileBinaryCodec.prepare(USER_ID, rows, topicDb, 0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoded.writeTo(out);
+        assertEquals(encoded.size(), out.size());
+
+        var decoded = InterestProfileBinaryCodec.decode(out.toByteArray());
+        assertEquals(USER_ID, decoded.userId());
+        assertEquals(rows.size(), decoded.topicIds().length);
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(rows.get(i).topic, decoded.dictionary().get(decoded.topicIds()[i]));
+            assertEquals(rows.get(i).interestScore, decoded.scores()[i], 1e-6);
+        }
+
+        // A client that already knows every id gets no dictionary entries back
+        var warm = InterestProfileBinaryCodec.prepare(USER_ID, rows, topicDb, encoded.dictionaryVersion());
+        assertEquals(0, warm.dictionaryIds().length);
+        assertEquals(topicDb.getTopicIdCount(), warm.dictionaryVersion());
+    }
+
+    @Test
+    void dictionaryDeltaCoversEveryIdTheClientMissed() {
+        TopicDb topicDb = new TopicDb();
+        var rows = profile(10);
+        int knownTopicCount = InterestProfileBinaryCodec.prepare(USER_ID, rows, topicDb, 0).dictionaryVersion();
+        // New topics show up in other users' profiles, this one only gains the last of them
+        for (int i = 0; i < 5; i++) topicDb.getOrCreateTopicId("elsewhere-" + i);
+        rows.add(new UserTopicScoreDb.UserTopicScoreRow(USER_ID, "elsewhere-4", 1.0, 1718022000000L));
+
+        var delta = InterestProfileBinaryCodec.prepare(USER_ID, rows, topicDb, knownTopicCount);
+        assertEquals(15, delta.dictionaryVersion());
+        assertArrayEquals(new int[]{10, 11, 12, 13, 14}, delta.dictionaryIds());
+        // Sending the version back, the client is not told about anything twice and misses nothing
+        assertEquals(0, InterestProfileBinaryCodec.prepare(USER_ID, rows, topicDb, delta.dictionaryVersion()).dictionaryIds().length);
+    }
+
+    @Test
+    void payloadIsSmallerThanJson() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        TopicDb topicDb = new TopicDb();
+        var rows = profile(200);
+        int knownTopics = InterestProfileBinaryCodec.prepare(USER_ID, rows, topicDb, 0).dictionaryVersion();
+
+        int jsonSize = objectMapper.writeValueAsBytes(rows).length;
+        int coldBinarySize = InterestProfileBinaryCodec.prepare(USER_ID, rows, topicDb, 0).size();
+        int warmBinarySize = InterestProfileBinaryCodec.prepare(USER_ID, rows, topicDb, knownTopics).size();
+        assertTrue(coldBinarySize < jsonSize);
+        assertTrue(warmBinarySize * 5 < jsonSize);
+    }
+}
@@ -0,0 +1,49 @@
+package dev.kuku.interestcalculator.fakeDatabase;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ColdProfileStoreTest {
+    @TempDir
+    Path dataDir;
+
+    private static List<UserTopicScoreDb.UserTopicScoreRow> rows(String userId, int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new UserTopicScoreDb.UserTopicScoreRow(userId, "topic" + i, 1.0, 0))
+                .toList();
+    }
+
+    @Test
+    void rowCountsAreReadOnceAndKeptCurrentByWritesAndDeletes() throws Exception {
+        ColdProfileStore store = new ColdProfileStore(dataDir.resolve("cold").toString());
+        store.write("alice", rows("alice", 3));
+        store.write("bob", rows("bob", 1));
+        assertEquals(Map.of("alice", 3, "bob", 1), store.getRowCounts());
+
+        store.write("alice", rows("alice", 5));
+        store.write("carol", rows("carol", 2));
+        store.delete("bob");
+        assertEquals(Map.of("alice", 5, "carol", 2), store.getRowCounts());
+
+        // Served from the cache, the files are not opened again
+        try (Stream<Path> files = Files.list(store.getDirectory())) {
+            for (Path file : files.toList()) Files.delete(file);
+        }
+        assertEquals(Map.of("alice", 5, "carol", 2), store.getRowCounts());
+
+        // A swapped in store's counts are read from its files
+        ColdProfileStore rebuilt = store.sibling("rebuild");
+        rebuilt.write("dave", rows("dave", 4));
+        store.replaceWith(rebuilt);
+        assertEquals(Map.of("dave", 4), store.getRowCounts());
+    }
+}
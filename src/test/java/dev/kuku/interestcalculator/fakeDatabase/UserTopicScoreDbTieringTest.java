@@ -0,0 +1,108 @@
+package dev.kuku.interestcalculator.fakeDatabase;
+
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ProfileGovernor.ProfileSizeGovernor;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ScoringParameters.ScoringParameterRegistry;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.ScoringParameters.ScoringParameters;
+import dev.kuku.interestcalculator.UserTopicScoringSystem.TopicDecayer.subSystem.TopicScoreTemporalExponentialDecayer;
+import dev.kuku.interestcalculator.util.StripedUserLock;
+import dev.kuku.interestcalculator.util.TimeProvider;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserTopicScoreDbTieringTest {
+    private static final long MINUTE = 60_000;
+
+    @TempDir
+    Path coldDir;
+
+    private static void awaitHotUsers(UserTopicScoreDb db, int expected) throws InterruptedException {
+        for (int i = 0; i < 200 && db.getHotUserCount() != expected; i++) Thread.sleep(10);
+        assertEquals(expected, db.getHotUserCount());
+    }
+
+    @Test
+    void leastRecentlyActiveUsersMoveToDiskAndComeBackAsTheyWere() throws Exception {
+        AtomicLong now = new AtomicLong(1_700_000_000_000L);
+        TimeProvider timeProvider = () -> Instant.ofEpochMilli(now.get());
+        ColdProfileStore coldStore = new ColdProfileStore(coldDir.toString());
+        UserTopicScoreDb db = new UserTopicScoreDb(event -> {
+        }, timeProvider, new StripedUserLock(), coldStore,
+                new ProfileSizeGovernor(64, 0.001), 2, Long.MAX_VALUE);
+        TopicScoreTemporalExponentialDecayer decayer = new TopicScoreTemporalExponentialDecayer(ScoringParameterRegistry.fixed(ScoringParameters.DEFAULTS));
+        try {
+            long aliceWrite = now.get();
+            db.updateTopicScoresByValue("alice", Map.of("gaming", 8.0, "food", 2.0));
+            now.addAndGet(MINUTE);
+            db.updateTopicScoresByValue("bob", Map.of("tech", 5.0));
+            now.addAndGet(MINUTE);
+            db.updateTopicScoresByValue("carol", Map.of("music", 1.0));
+
+            awaitHotUsers(db, 2);
+            assertEquals(Set.of("alice"), coldStore.getUserIds());
+            assertEquals(Set.of("alice", "bob", "carol"), db.getUserIds());
+
+            // Faulted back in with the stored scores and times, the same a hot read of alice would have returned
+            Map<String, UserTopicScoreDb.UserTopicScoreRow> alice = db.getUserTopicScores("alice").stream()
+                    .collect(Collectors.toMap(row -> row.topic, row -> row));
+            assertEquals(8.0, alice.get("gaming").interestScore, 1e-9);
+            assertEquals(aliceWrite, alice.get("gaming").updatedAt);
+            assertEquals(2.0, alice.get("food").interestScore, 1e-9);
+            assertFalse(coldStore.contains("alice"));
+            // Scoring decays them over the two idle minutes, by 0.7^2, as it would a hot profile
+            assertEquals(8.0 * 0.49, decayer.decayedScore(alice.get("gaming"), now.get()), 1e-9);
+
+            // Reading alice made bob the least recently touched user
+            awaitHotUsers(db, 2);
+            assertEquals(Set.of("bob"), coldStore.getUserIds());
+            assertEquals(1, db.removeUserTopicScores("bob").size());
+            assertTrue(coldStore.getUserIds().isEmpty());
+        } finally {
+            db.shutdown();
+        }
+    }
+
+    @Test
+    void rebuildSwapKeepsProfilesWrittenAfterTheCopy() throws Exception {
+        AtomicLong now = new AtomicLong(1_700_000_000_000L);
+        ColdProfileStore coldStore = new ColdProfileStore(coldDir.resolve("live").toString());
+        UserTopicScoreDb db = new UserTopicScoreDb(event -> {
+        }, () -> Instant.ofEpochMilli(now.get()), new StripedUserLock(), coldStore,
+                new ProfileSizeGovernor(64, 0.001), 2, Long.MAX_VALUE);
+        try {
+            db.updateTopicScoresByValue("imported", Map.of("travel", 4.0));
+            db.updateTopicScoresByValue("replayed", Map.of("stale", 9.0));
+            db.updateTopicScoresByValue("moved", Map.of("food", 1.0));
+            ColdProfileStore rebuilt = coldStore.sibling("rebuild");
+            rebuilt.write("replayed", List.of(new UserTopicScoreDb.UserTopicScoreRow("replayed", "gaming", 3.0, now.get())));
+
+            db.startTrackingChanges();
+            assertEquals(Set.of("imported", "moved"), db.copyMissingProfiles(rebuilt));
+            // Written between the copy and the swap
+            db.updateTopicScoresByValue("imported", Map.of("travel", 6.0));
+            db.putUserTopicScores("late", List.of(new UserTopicScoreDb.UserTopicScoreRow("late", "music", 2.0, now.get())));
+            db.removeUserTopicScores("moved");
+            db.updateTopicScoresByValue("replayed", Map.of("stale", 9.5));
+
+            db.replaceAllProfiles(rebuilt, Set.of("imported", "moved"), () -> {
+            });
+            assertEquals(0, db.getHotUserCount());
+            assertEquals(Set.of("imported", "late", "replayed"), db.getUserIds());
+            assertEquals(6.0, db.getTopicScoreOfUser("imported", "travel"), 1e-9);
+            assertEquals(2.0, db.getTopicScoreOfUser("late", "music"), 1e-9);
+            assertEquals(3.0, db.getTopicScoreOfUser("replayed", "gaming"), 1e-9);
+            assertEquals(0.0, db.getTopicScoreOfUser("replayed", "stale"));
+        } finally {
+            db.shutdown();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package dev.kuku.interestcalculator.services;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.ai.ollama.api.OllamaOptions;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Local HTTP server answering {@code POST /api/chat} like Ollama does for non streaming calls. Tests switch it
+ * between answering, failing, answering slowly and hanging until released.
+ */
+public class OllamaStub implements AutoCloseable {
+    private final HttpServer server;
+    private final AtomicInteger chatRequests = new AtomicInteger();
+    private volatile Function<String, String> answer = request -> "general";
+    private volatile int status = 200;
+    private volatile long delayMillis;
+    private volatile CountDownLatch hold = new CountDownLatch(0);
+
+    public OllamaStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/chat", this::chat);
+        server.setExecutor(Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "ollama-stub");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public OllamaChatModel chatModel() {
+        return OllamaChatModel.builder()
+                .ollamaApi(OllamaApi.builder().baseUrl(getBaseUrl()).build())
+                .defaultOptions(OllamaOptions.builder().model("gemma3:1b").build())
+                .build();
+    }
+
+    /**
+     * Answers every chat with the topics the function picks for the request body.
+     */
+    public void answer(Function<String, String> topicsForRequest) {
+        this.answer = topicsForRequest;
+        this.status = 200;
+        this.delayMillis = 0;
+    }
+
+    public void fail() {
+        this.status = 500;
+    }
+
+    public void delay(long millis) {
+        this.delayMillis = millis;
+    }
+
+    /**
+     * Requests block until {@link #release()}.
+     */
+    public void hold() {
+        this.hold = new CountDownLatch(1);
+    }
+
+    public void release() {
+        hold.countDown();
+    }
+
+    public int getChatRequests() {
+        return chatRequests.get();
+    }
+
+    private void chat(HttpExchange exchange) throws IOException {
+        chatRequests.incrementAndGet();
+        String request = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        try {
+            hold.await(10, TimeUnit.SECONDS);
+            if (delayMillis > 0) Thread.sleep(delayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] body = status == 200
+                ? ("{\"model\":\"gemma3:1b\",\"created_at\":\"2026-01-01T00:00:00Z\",\"message\":{\"role\":\"assistant\",\"content\":\""
+                + answer.apply(request) + "\"},\"done_reason\":\"stop\",\"done\":true,\"prompt_eval_count\":10,\"eval_count\":5}")
+                .getBytes(StandardCharsets.UTF_8)
+                : "{\"error\":\"model unavailable\"}".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        try {
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (IOException e) {
+            // The client gave up on a slow answer
+        }
+    }
+
+    @Override
+    public void close() {
+        release();
+        server.stop(0);
+    }
+}
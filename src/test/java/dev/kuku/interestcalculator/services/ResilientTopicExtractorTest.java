@@ -0,0 +1,137 @@
+package dev.kuku.interestcalculator.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResilientTopicExtractorTest {
+    private static final long MAX_TIMEOUT_MILLIS = 300;
+    private static final long OPEN_MILLIS = 300;
+
+    private OllamaStub ollama;
+    private ResilientTopicExtractor extractor;
+
+    // The first call of the JVM loads the whole HTTP client, too slow for the short timeouts used here
+    @BeforeAll
+    static void warmUp() throws Exception {
+        try (OllamaStub stub = new OllamaStub()) {
+            new LLMService(stub.chatModel()).getTopics(Set.of(), "warm up");
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ollama = new OllamaStub();
+        extractor = extractor(4);
+    }
+
+    private ResilientTopicExtractor extractor(int maxConcurrentCalls) {
+        return new ResilientTopicExtractor(new LLMService(ollama.chatModel()), maxConcurrentCalls, 50, MAX_TIMEOUT_MILLIS, 2.0, 2, OPEN_MILLIS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        extractor.shutdown();
+        ollama.close();
+    }
+
+    private TopicExtractionException.Reason failureOf(String content) {
+        return assertThrows(TopicExtractionException.class, () -> extractor.getTopics(Set.of(), content)).getReason();
+    }
+
+    @Test
+    void timeoutsOpenTheCircuitAndATrialCallClosesIt() throws Exception {
+        ollama.answer(request -> "gaming, reviews");
+        assertEquals(Set.of("gaming", "reviews"), extractor.getTopics(Set.of("gaming"), "Just finished God of War"));
+
+        ollama.delay(MAX_TIMEOUT_MILLIS * 3);
+        assertEquals(TopicExtractionException.Reason.TIMEOUT, failureOf("slow one"));
+        assertEquals(ResilientTopicExtractor.CircuitState.CLOSED, extractor.getState());
+        assertEquals(TopicExtractionException.Reason.TIMEOUT, failureOf("slow two"));
+        assertEquals(ResilientTopicExtractor.CircuitState.OPEN, extractor.getState());
+
+        // Open: rejected without reaching the model
+        int requests = ollama.getChatRequests();
+        long start = System.nanoTime();
+        assertEquals(TopicExtractionException.Reason.CIRCUIT_OPEN, failureOf("fast fail"));
+        assertTrue(System.nanoTime() - start < 50_000_000L);
+        assertEquals(requests, ollama.getChatRequests());
+        assertFalse(extractor.isCallPermitted());
+
+        ollama.answer(request -> "music");
+        Thread.sleep(OPEN_MILLIS + 50);
+        assertTrue(extractor.isCallPermitted());
+        assertEquals(Set.of("music"), extractor.getTopics(Set.of(), "recovered"));
+        assertEquals(ResilientTopicExtractor.CircuitState.CLOSED, extractor.getState());
+    }
+
+    @Test
+    void failedTrialCallReopensTheCircuit() throws Exception {
+        ollama.fail();
+        assertEquals(TopicExtractionException.Reason.FAILED, failureOf("one"));
+        assertEquals(TopicExtractionException.Reason.FAILED, failureOf("two"));
+        assertEquals(ResilientTopicExtractor.CircuitState.OPEN, extractor.getState());
+
+        Thread.sleep(OPEN_MILLIS + 50);
+        assertEquals(TopicExtractionException.Reason.FAILED, failureOf("trial"));
+        assertEquals(ResilientTopicExtractor.CircuitState.OPEN, extractor.getState());
+        assertEquals(TopicExtractionException.Reason.CIRCUIT_OPEN, failureOf("still open"));
+    }
+
+    @Test
+    void callsBeyondTheBulkheadAreRejected() throws Exception {
+        extractor.shutdown();
+        extractor = extractor(1);
+        ollama.answer(request -> "food");
+        ollama.hold();
+        CompletableFuture<Set<String>> inFlight = CompletableFuture.supplyAsync(() -> extractor.getTopics(Set.of(), "first"));
+        for (int i = 0; i < 100 && ollama.getChatRequests() == 0; i++) Thread.sleep(10);
+
+        assertEquals(TopicExtractionException.Reason.BULKHEAD_FULL, failureOf("second"));
+        assertEquals(1, ollama.getChatRequests());
+
+        ollama.release();
+        assertEquals(Set.of("food"), inFlight.get());
+        assertEquals(1, extractor.getStatus().availableCalls());
+        // Rejections are not the model's fault
+        assertEquals(ResilientTopicExtractor.CircuitState.CLOSED, extractor.getState());
+    }
+
+    @Test
+    void timeoutFollowsObservedLatency() {
+        ResilientTopicExtractor latencyAware = new ResilientTopicExtractor(new LLMService(ollama.chatModel()), 4, 50, 1_000, 2.0, 2, OPEN_MILLIS);
+        try {
+            // Too few samples to trust, the ceiling is used
+            for (int i = 0; i < 15; i++) latencyAware.recordLatency(100);
+            assertEquals(1_000, latencyAware.currentTimeoutMillis());
+
+            // p99 of 16 samples is the largest one
+            latencyAware.recordLatency(300);
+            assertEquals(600, latencyAware.currentTimeoutMillis());
+
+            // Only the latest 128 samples count, and the result is clamped to the floor
+            for (int i = 0; i < 128; i++) latencyAware.recordLatency(10);
+            assertEquals(50, latencyAware.currentTimeoutMillis());
+
+            for (int i = 0; i < 126; i++) latencyAware.recordLatency(100);
+            latencyAware.recordLatency(250);
+            latencyAware.recordLatency(400);
+            // ceil(0.99 * 128) = 127th smallest of the window
+            assertEquals(500, latencyAware.currentTimeoutMillis());
+
+            // One slow call is the single sample above the p99, a second one sets it, clamped to the ceiling
+            latencyAware.recordLatency(900);
+            assertEquals(800, latencyAware.currentTimeoutMillis());
+            latencyAware.recordLatency(900);
+            assertEquals(1_000, latencyAware.currentTimeoutMillis());
+        } finally {
+            latencyAware.shutdown();
+        }
+    }
+}
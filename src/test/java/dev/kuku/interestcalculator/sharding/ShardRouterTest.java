@@ -0,0 +1,234 @@
+package dev.kuku.interestcalculator.sharding;
+
+import dev.kuku.interestcalculator.fakeDatabase.UserInteractionsDb;
+import dev.kuku.interestcalculator.fakeDatabase.UserTopicScoreDb;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardRouterTest {
+
+    /**
+     * In-process node that counts interactions as the score of a single topic.
+     */
+    private static final class InMemoryShardNode implements ShardNode {
+        private final String nodeId;
+        private final Map<String, List<UserTopicScoreDb.UserTopicScoreRow>> profiles = new ConcurrentHashMap<>();
+        private volatile boolean failImports;
+        // Calls for this user wait for the latch, like a slow LLM call on the owner
+        private volatile String slowUser;
+        private final CountDownLatch slowCallStarted = new CountDownLatch(1);
+        private final CountDownLatch releaseSlowCall = new CountDownLatch(1);
+
+        private InMemoryShardNode(String nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        @Override
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        @Override
+        public void updateUserTopicScores(String userId, UserInteractionsDb.UserInteractionRow interaction) {
+            if (userId.equals(slowUser)) {
+                slowCallStarted.countDown();
+                try {
+                    releaseSlowCall.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            var rows = profiles.computeIfAbsent(userId, id -> new ArrayList<>(List.of(new UserTopicScoreDb.UserTopicScoreRow(id, "interactions", 0, 0))));
+            rows.get(0).interestScore++;
+        }
+
+        @Override
+        public List<UserTopicScoreDb.UserTopicScoreRow> getUserTopicScores(String userId) {
+            return profiles.getOrDefault(userId, List.of());
+        }
+
+        @Override
+        public Set<String> getUserIds() {
+            return Set.copyOf(profiles.keySet());
+        }
+
+        @Override
+        public List<UserTopicScoreDb.UserTopicScoreRow> exportUser(String userId, Set<String> ringNodeIds) {
+            return getUserTopicScores(userId);
+        }
+
+        @Override
+        public void importUser(String userId, List<UserTopicScoreDb.UserTopicScoreRow> rows, Set<String> ringNodeIds) {
+            if (failImports) throw new IllegalStateException("node " + nodeId + " unreachable");
+            List<UserTopicScoreDb.UserTopicScoreRow> copy = new ArrayList<>();
+            rows.forEach(row -> copy.add(new UserTopicScoreDb.UserTopicScoreRow(userId, row.topic, row.interestScore, row.updatedAt)));
+            profiles.put(userId, copy);
+        }
+
+        @Override
+        public void deleteUser(String userId, Set<String> ringNodeIds) {
+            profiles.remove(userId);
+        }
+    }
+
+    private static UserInteractionsDb.UserInteractionRow like(String userId) {
+        return new UserInteractionsDb.UserInteractionRow(userId, "post001", UserInteractionsDb.Discovery.SEARCH, UserInteractionsDb.InteractionType.LIKE, 0);
+    }
+
+    @Test
+    void routesToOwnerAndRebalancesOnJoinAndLeave() {
+        InMemoryShardNode a = new InMemoryShardNode("a");
+        InMemoryShardNode b = new InMemoryShardNode("b");
+        InMemoryShardNode c = new InMemoryShardNode("c");
+        ShardRouter router = new ShardRouter(a, "");
+        router.addNode(b, true);
+
+        int users = 1_000;
+        for (int i = 0; i < users; i++) {
+            router.updateUserTopicScores("user" + i, like("user" + i));
+            router.updateUserTopicScores("user" + i, like("user" + i));
+        }
+        assertEquals(users, a.profiles.size() + b.profiles.size());
+        assertTrue(a.profiles.size() > users / 4 && b.profiles.size() > users / 4, "users should spread across nodes");
+
+        Map<String, String> ownerBeforeJoin = new HashMap<>();
+        for (int i = 0; i < users; i++) ownerBeforeJoin.put("user" + i, router.ownerOf("user" + i).getNodeId());
+
+        router.addNode(c, true);
+        assertEquals(users, a.profiles.size() + b.profiles.size() + c.profiles.size());
+        for (int i = 0; i < users; i++) {
+            String userId = "user" + i;
+            String owner = router.ownerOf(userId).getNodeId();
+            // A join only moves users onto the new node, never between existing nodes
+            assertTrue(owner.equals(ownerBeforeJoin.get(userId)) || owner.equals("c"));
+            assertEquals(2.0, router.getUserTopicScores(userId).get(0).interestScore);
+        }
+
+        router.removeNode("a", true);
+        assertTrue(a.profiles.isEmpty());
+        assertEquals(users, b.profiles.size() + c.profiles.size());
+        for (int i = 0; i < users; i++) {
+            router.updateUserTopicScores("user" + i, like("user" + i));
+            assertEquals(3.0, router.getUserTopicScores("user" + i).get(0).interestScore);
+        }
+    }
+
+    @Test
+    void failedImportKeepsTheProfileOnItsOldOwnerUntilResumed() {
+        InMemoryShardNode a = new InMemoryShardNode("a");
+        InMemoryShardNode b = new InMemoryShardNode("b");
+        ShardRouter router = new ShardRouter(a, "");
+        int users = 200;
+        for (int i = 0; i < users; i++) router.updateUserTopicScores("user" + i, like("user" + i));
+
+        b.failImports = true;
+        assertThrows(IllegalStateException.class, () -> router.addNode(b, true));
+        assertEquals(users, a.profiles.size(), "nothing is deleted before its import succeeded");
+        // Still routed to the node holding the profile, updates keep working
+        for (int i = 0; i < users; i++) {
+            router.updateUserTopicScores("user" + i, like("user" + i));
+            assertEquals(2.0, router.getUserTopicScores("user" + i).get(0).interestScore);
+        }
+
+        b.failImports = false;
+        router.resumeRebalance();
+        assertEquals(Set.of("a", "b"), router.getNodeIds());
+        assertTrue(b.profiles.size() > users / 4);
+        assertEquals(users, a.profiles.size() + b.profiles.size());
+        for (int i = 0; i < users; i++) {
+            assertEquals(2.0, router.getUserTopicScores("user" + i).get(0).interestScore);
+        }
+    }
+
+    @Test
+    void aSlowCallOnlyHoldsUpTheMoveOfItsOwnBatch() throws Exception {
+        InMemoryShardNode a = new InMemoryShardNode("a");
+        InMemoryShardNode b = new InMemoryShardNode("b");
+        ShardRouter router = new ShardRouter(a, "");
+        int users = 200;
+        for (int i = 0; i < users; i++) router.updateUserTopicScores("user" + i, like("user" + i));
+
+        a.slowUser = "user0";
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            Future<?> slow = pool.submit(() -> router.updateUserTopicScores("user0", like("user0")));
+            assertTrue(a.slowCallStarted.await(5, TimeUnit.SECONDS));
+            Future<?> join = pool.submit(() -> router.addNode(b, true));
+            // Users of other batches are routed, moved or not, while the join waits for the slow call
+            for (int i = 1; i < users; i++) {
+                String userId = "user" + i;
+                if (ShardRouter.batchOf(userId) == ShardRouter.batchOf("user0")) continue;
+                pool.submit(() -> router.updateUserTopicScores(userId, like(userId))).get(5, TimeUnit.SECONDS);
+            }
+            assertFalse(join.isDone());
+
+            a.releaseSlowCall.countDown();
+            slow.get(5, TimeUnit.SECONDS);
+            join.get(5, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(Set.of("a", "b"), router.getNodeIds());
+        assertEquals(users, a.profiles.size() + b.profiles.size());
+        assertTrue(b.profiles.size() > users / 4);
+        for (int i = 0; i < users; i++) {
+            String userId = "user" + i;
+            double expected = i == 0 || ShardRouter.batchOf(userId) != ShardRouter.batchOf("user0") ? 2.0 : 1.0;
+            assertEquals(expected, router.getUserTopicScores(userId).get(0).interestScore, userId);
+        }
+    }
+
+    private static String userOwnedBy(String before, ConsistentHashRing oldRing, String after, ConsistentHashRing newRing) {
+        for (int i = 0; ; i++) {
+            String userId = "user" + i;
+            if (oldRing.ownerOf(userId).equals(before) && newRing.ownerOf(userId).equals(after)) return userId;
+        }
+    }
+
+    @Test
+    void callsForUsersAnotherNodeMovedFollowTheMoveUntilTheRingCatchesUp() {
+        InMemoryShardNode a = new InMemoryShardNode("a");
+        ShardRouter router = new ShardRouter(a, "");
+        router.addNode(new InMemoryShardNode("b"), false);
+        ConsistentHashRing current = ConsistentHashRing.of(Set.of("a", "b"));
+
+        // Another node hands b's users to a as b leaves, this node has not been told yet
+        String arriving = userOwnedBy("b", current, "a", ConsistentHashRing.of(Set.of("a")));
+        assertTrue(router.ifLocalOwner(arriving, () -> true).isEmpty());
+        assertFalse(router.adoptUser(arriving, Set.of("a", "b"), () -> fail("not moving here")));
+        assertTrue(router.adoptUser(arriving, Set.of("a"), () -> a.importUser(arriving, List.of(), Set.of("a"))));
+        assertTrue(router.isLocalOwner(arriving));
+
+        // Another node moves users of a onto a joining c
+        Set<String> withC = Set.of("a", "b", "c");
+        String leaving = userOwnedBy("a", current, "c", ConsistentHashRing.of(withC));
+        router.updateUserTopicScores(leaving, like(leaving));
+        assertTrue(router.ifMovingAway(leaving, withC, () -> true).isPresent());
+        assertTrue(router.releaseUser(leaving, withC, () -> a.deleteUser(leaving, withC)));
+        // A caller with an old ring is refused instead of recreating the profile
+        assertTrue(router.ifLocalOwner(leaving, () -> fail("moved away")).isEmpty());
+        assertFalse(a.profiles.containsKey(leaving));
+        String staying = userOwnedBy("a", current, "a", ConsistentHashRing.of(withC));
+        assertFalse(router.releaseUser(staying, withC, () -> fail("not moving away")));
+        assertTrue(router.ifMovingAway(staying, withC, () -> true).isEmpty());
+
+        router.addNode(new InMemoryShardNode("c"), false);
+        router.removeNode("b", false);
+        assertTrue(router.isLocalOwner(arriving));
+        assertFalse(router.isLocalOwner(leaving));
+        assertTrue(router.isLocalOwner(staying));
+    }
+
+    @Test
+    void ringIsDeterministicAcrossInstances() {
+        ConsistentHashRing first = ConsistentHashRing.empty().withNode("a").withNode("b").withNode("c");
+        ConsistentHashRing second = ConsistentHashRing.empty().withNode("c").withNode("a").withNode("b");
+        for (int i = 0; i < 500; i++) {
+            assertEquals(first.ownerOf("user" + i), second.ownerOf("user" + i));
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package dev.kuku.interestcalculator.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Application context whose clock only moves when the test moves it, decay and deferred scoring then depend on
+ * nothing but the times a test sets. Everything else is the real application, the popularity dampener included.
+ */
+@SpringBootTest
+public abstract class ManualClockTest {
+    // Epoch millis every component reads as now
+    protected final AtomicLong clock = new AtomicLong();
+
+    @MockitoSpyBean
+    protected SystemTimeProvider systemTimeProvider;
+
+    @BeforeEach
+    protected void useManualClock() {
+        doAnswer(invocation -> Instant.ofEpochMilli(clock.get())).when(systemTimeProvider).now();
+    }
+}